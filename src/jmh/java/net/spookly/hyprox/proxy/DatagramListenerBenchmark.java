@@ -0,0 +1,152 @@
+package net.spookly.hyprox.proxy;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.EpollChannelOption;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loopback datagram echo throughput for the listener transports.
+ * <p>
+ * Eight client threads each keep a window of datagrams in flight against the listener. With NIO a single
+ * socket serves every client; with epoll {@code listenerThreads} SO_REUSEPORT sockets split them, so
+ * throughput should grow with the thread count. Each operation is one window of {@value #WINDOW} datagrams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class DatagramListenerBenchmark {
+    private static final int PAYLOAD_BYTES = 1200;
+    private static final int WINDOW = 16;
+
+    @Param({"nio", "epoll"})
+    public String transport;
+
+    @Param({"1", "2", "4"})
+    public int listenerThreads;
+
+    private EventLoopGroup group;
+    private final List<Channel> listeners = new ArrayList<>();
+    private InetSocketAddress listenAddress;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        ProxyTransport resolved = ProxyTransport.resolve(transport);
+        int sockets = resolved.isNative() ? listenerThreads : 1;
+        group = resolved.newEventLoopGroup(listenerThreads);
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(group)
+                .channel(resolved.datagramChannelClass())
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .handler(new EchoHandler());
+        if (resolved.isNative()) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true)
+                    .option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, PAYLOAD_BYTES)
+                    .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(PAYLOAD_BYTES * WINDOW));
+        }
+        Channel first = bootstrap.bind(InetAddress.getLoopbackAddress(), 0).sync().channel();
+        listeners.add(first);
+        listenAddress = (InetSocketAddress) first.localAddress();
+        for (int i = 1; i < sockets; i++) {
+            listeners.add(bootstrap.bind(listenAddress).sync().channel());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (Channel listener : listeners) {
+            listener.close().syncUninterruptibly();
+        }
+        listeners.clear();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Benchmark
+    public int echoWindow(Client client) throws IOException {
+        return client.roundTrip(listenAddress);
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private DatagramChannel channel;
+        private DatagramPacket sendPacket;
+        private DatagramPacket receivePacket;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            channel.socket().setSoTimeout(50);
+            sendPacket = new DatagramPacket(new byte[PAYLOAD_BYTES], PAYLOAD_BYTES);
+            receivePacket = new DatagramPacket(new byte[PAYLOAD_BYTES], PAYLOAD_BYTES);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            channel.close();
+        }
+
+        int roundTrip(InetSocketAddress target) throws IOException {
+            sendPacket.setSocketAddress(target);
+            for (int i = 0; i < WINDOW; i++) {
+                channel.socket().send(sendPacket);
+            }
+            int received = 0;
+            try {
+                while (received < WINDOW) {
+                    channel.socket().receive(receivePacket);
+                    received++;
+                }
+            } catch (SocketTimeoutException ignored) {
+                // Dropped datagrams end the window early.
+            }
+            return received;
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static final class EchoHandler extends SimpleChannelInboundHandler<io.netty.channel.socket.DatagramPacket> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, io.netty.channel.socket.DatagramPacket packet) {
+            ctx.write(new io.netty.channel.socket.DatagramPacket(packet.content().retain(), packet.sender()));
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.ReferenceCountUtil;
+import net.spookly.hyprox.routing.BackendSource;
+import net.spookly.hyprox.routing.BackendTarget;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round-trip latency through the forwarding handlers for the two backend event loop layouts.
+ * <p>
+ * A client peer sends a passthrough frame to the proxy's client-side channel. The frame is forwarded to the
+ * proxy's backend-side channel, echoed by a backend peer and forwarded back. With {@code separate} the
+ * backend-side channel runs on its own event loop; with {@code client} it shares the client-side loop, as
+ * with {@code proxy.transport.backendEventLoop: client}. Local channels stand in for QUIC streams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ForwardingAffinityBenchmark {
+    private static final int PACKET_ID = 400;
+    private static final int PAYLOAD_BYTES = 256;
+
+    @Param({"separate", "client"})
+    public String backendEventLoop;
+
+    private EventLoopGroup peerGroup;
+    private EventLoopGroup clientLoop;
+    private EventLoopGroup backendLoop;
+    private Channel clientServer;
+    private Channel backendServer;
+    private Channel clientPeer;
+    private Channel proxyBackend;
+    private ByteBuf frame;
+    private volatile CompletableFuture<Void> pending;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException, ExecutionException {
+        peerGroup = new DefaultEventLoopGroup(2);
+        clientLoop = new DefaultEventLoopGroup(1);
+        backendLoop = BackendAffinity.fromConfig(backendEventLoop) == BackendAffinity.CLIENT
+                ? clientLoop
+                : new DefaultEventLoopGroup(1);
+        frame = Unpooled.directBuffer(8 + PAYLOAD_BYTES)
+                .writeIntLE(PAYLOAD_BYTES)
+                .writeIntLE(PACKET_ID)
+                .writeZero(PAYLOAD_BYTES);
+
+        LocalAddress backendAddress = new LocalAddress(ForwardingAffinityBenchmark.class);
+        backendServer = new ServerBootstrap()
+                .group(peerGroup)
+                .channel(LocalServerChannel.class)
+                .childHandler(new EchoHandler())
+                .bind(backendAddress).sync().channel();
+        proxyBackend = new Bootstrap()
+                .group(backendLoop)
+                .channel(LocalChannel.class)
+                .handler(new PacketFrameDecoder(PacketFrameDecoder.DEFAULT_MAX_FRAME_BYTES))
+                .connect(backendAddress).sync().channel();
+
+        CompletableFuture<Channel> proxyClientFuture = new CompletableFuture<>();
+        LocalAddress clientAddress = new LocalAddress(ForwardingAffinityBenchmark.class);
+        clientServer = new ServerBootstrap()
+                .group(clientLoop)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    protected void initChannel(LocalChannel channel) {
+                        channel.pipeline().addLast(new PacketFrameDecoder(PacketFrameDecoder.DEFAULT_MAX_FRAME_BYTES));
+                        proxyClientFuture.complete(channel);
+                    }
+                })
+                .bind(clientAddress).sync().channel();
+        clientPeer = new Bootstrap()
+                .group(peerGroup)
+                .channel(LocalChannel.class)
+                .handler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        ReferenceCountUtil.release(msg);
+                        pending.complete(null);
+                    }
+                })
+                .connect(clientAddress).sync().channel();
+        Channel proxyClient = proxyClientFuture.get();
+
+        BackendConnection connection = new BackendConnection(backendTarget(), proxyBackend, proxyBackend);
+        ProxyBridgeSession session = new ProxyBridgeSession(proxyClient, connection, null);
+        ProxyDataPathMetrics metrics = new ProxyDataPathMetrics();
+        proxyClient.pipeline().addLast(new PacketForwardingHandler(proxyBackend, session, metrics,
+                PacketForwardingHandler.ForwardDirection.CLIENT_TO_BACKEND, null, false));
+        proxyBackend.pipeline().addLast(new PacketForwardingHandler(proxyClient, session, metrics,
+                PacketForwardingHandler.ForwardDirection.BACKEND_TO_CLIENT, null, false));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        clientPeer.close().syncUninterruptibly();
+        proxyBackend.close().syncUninterruptibly();
+        clientServer.close().syncUninterruptibly();
+        backendServer.close().syncUninterruptibly();
+        peerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        clientLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        backendLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        frame.release();
+    }
+
+    @Benchmark
+    public void roundTrip() throws ExecutionException, InterruptedException {
+        CompletableFuture<Void> response = new CompletableFuture<>();
+        pending = response;
+        clientPeer.writeAndFlush(frame.retainedDuplicate());
+        response.get();
+    }
+
+    private static BackendTarget backendTarget() {
+        return new BackendTarget("bench", "bench", "127.0.0.1", 1, 1, null, List.of(), BackendSource.STATIC, false);
+    }
+
+    @ChannelHandler.Sharable
+    private static final class EchoHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.writeAndFlush(msg);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package net.spookly.hyprox.proxy;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.handler.codec.quic.SegmentedDatagramPacketAllocator;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loopback send throughput for QUIC-sized datagram bursts with and without UDP GSO/GRO.
+ * <p>
+ * Each operation sends a burst of {@code burst} 1200-byte packets from the event loop, either as individual
+ * datagrams or as one segmented datagram built by the same allocator the QUIC codecs use. The receiver
+ * has GRO enabled in the offload case. {@code receivedPackets} reports how many packets/sec arrived. Without
+ * the native transport both cases fall back to individual datagrams, just as the proxy does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UdpSegmentationBenchmark {
+    private static final int PACKET_BYTES = 1200;
+
+    @Param({"false", "true"})
+    public boolean offload;
+
+    @Param({"16"})
+    public int burst;
+
+    private final LongAdder received = new LongAdder();
+    private EventLoopGroup group;
+    private Channel sender;
+    private Channel receiver;
+    private InetSocketAddress target;
+    private SegmentedDatagramPacketAllocator segmentedAllocator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        ProxyTransport transport = ProxyTransport.resolve("auto");
+        UdpOffload udpOffload = offload && UdpOffload.isSupported(transport)
+                ? new UdpOffload(true, true, burst)
+                : UdpOffload.DISABLED;
+        segmentedAllocator = udpOffload.segmentedAllocator();
+        group = transport.newEventLoopGroup(2);
+
+        Bootstrap receiverBootstrap = new Bootstrap();
+        receiverBootstrap.group(group)
+                .channel(transport.datagramChannelClass())
+                .handler(new CountingHandler(received));
+        udpOffload.applyReceive(receiverBootstrap);
+        receiver = receiverBootstrap.bind(InetAddress.getLoopbackAddress(), 0).sync().channel();
+        target = (InetSocketAddress) receiver.localAddress();
+
+        Bootstrap senderBootstrap = new Bootstrap();
+        senderBootstrap.group(group)
+                .channel(transport.datagramChannelClass())
+                .option(ChannelOption.SO_SNDBUF, 4 * 1024 * 1024)
+                .handler(new ChannelInboundHandlerAdapter());
+        sender = senderBootstrap.bind(InetAddress.getLoopbackAddress(), 0).sync().channel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sender.close().syncUninterruptibly();
+        receiver.close().syncUninterruptibly();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetReceived() {
+        received.reset();
+    }
+
+    @Benchmark
+    public void sendBurst(ReceivedCounter counter) throws ExecutionException, InterruptedException {
+        sender.eventLoop().submit(this::writeBurst).get();
+        counter.receivedPackets = received.sum();
+    }
+
+    private void writeBurst() {
+        if (segmentedAllocator != null) {
+            ByteBuf buffer = sender.alloc().directBuffer(PACKET_BYTES * burst);
+            buffer.writeZero(PACKET_BYTES * burst);
+            sender.write(segmentedAllocator.newPacket(buffer, PACKET_BYTES, target));
+        } else {
+            for (int i = 0; i < burst; i++) {
+                ByteBuf buffer = sender.alloc().directBuffer(PACKET_BYTES);
+                buffer.writeZero(PACKET_BYTES);
+                sender.write(new DatagramPacket(buffer, target));
+            }
+        }
+        sender.flush();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ReceivedCounter {
+        public long receivedPackets;
+
+    }
+
+    private static final class CountingHandler extends ChannelInboundHandlerAdapter {
+        private final LongAdder received;
+
+        private CountingHandler(LongAdder received) {
+            this.received = received;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof DatagramPacket packet) {
+                received.add(Math.max(1, packet.content().readableBytes() / PACKET_BYTES));
+            }
+            ReferenceCountUtil.release(msg);
+        }
+    }
+}
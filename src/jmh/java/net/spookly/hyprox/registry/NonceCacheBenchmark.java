@@ -0,0 +1,91 @@
+package net.spookly.hyprox.registry;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Nonce registration at a steady {@code liveNonces} per TTL window.
+ * <p>
+ * A synthetic clock advances one second every {@code liveNonces / ttl} registrations, so every operation
+ * pays its share of expiry and the cache stays at about {@code liveNonces} entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NonceCacheBenchmark {
+    private static final int TTL_SECONDS = 21;
+
+    @Param({"100000", "1000000"})
+    public int liveNonces;
+
+    private SteppingClock clock;
+    private NonceCache cache;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        clock = new SteppingClock(Math.max(1, liveNonces / TTL_SECONDS));
+        cache = new NonceCache(TTL_SECONDS, liveNonces * 2, clock);
+        for (int i = 0; i < liveNonces; i++) {
+            register();
+        }
+    }
+
+    @Benchmark
+    public boolean register() {
+        long id = next++;
+        clock.tick();
+        return cache.register("orch-1:" + id, clock.instant());
+    }
+
+    /**
+     * Clock that moves one second forward every {@code perSecond} ticks.
+     */
+    private static final class SteppingClock extends Clock {
+        private final long perSecond;
+        private final long start = Instant.now().getEpochSecond();
+        private long ticks;
+
+        private SteppingClock(long perSecond) {
+            this.perSecond = perSecond;
+        }
+
+        private void tick() {
+            ticks++;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochSecond(start + ticks / perSecond);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
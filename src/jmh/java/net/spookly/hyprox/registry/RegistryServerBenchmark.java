@@ -0,0 +1,146 @@
+package net.spookly.hyprox.registry;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import net.spookly.hyprox.config.HyproxConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Signed heartbeat requests against a local registry server from 32 concurrent keep-alive clients.
+ * <p>
+ * {@code workerThreads = 4} is the former fixed pool of four platform threads; {@code 0} runs every request
+ * on its own virtual thread. Throughput mode gives requests per second, sample mode the latency
+ * percentiles (p0.99 and up).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class RegistryServerBenchmark {
+    private static final String SHARED_KEY = "benchmark-shared-key";
+    private static final String PATH = "/v1/registry/heartbeat";
+    private static final int BACKENDS = 1000;
+
+    @Param({"4", "0"})
+    public int workerThreads;
+
+    private final AtomicLong nonces = new AtomicLong();
+    private RegistryServer server;
+    private HttpClient client;
+    private URI uri;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        HyproxConfig config = new HyproxConfig();
+        config.registry = new HyproxConfig.RegistryConfig();
+        config.registry.enabled = true;
+        config.registry.listen = "127.0.0.1:" + freePort();
+        config.registry.workerThreads = workerThreads;
+        config.registry.allowedNetworks = List.of("127.0.0.0/8");
+        config.registry.allowedPorts = List.of(9000);
+        config.registry.allowLoopback = true;
+        config.registry.auth = new HyproxConfig.RegistryAuthConfig();
+        config.registry.auth.mode = "hmac";
+        config.registry.auth.sharedKey = SHARED_KEY;
+        config.registry.auth.clockSkewSeconds = 1;
+        HyproxConfig.RegistryAllowlistEntry entry = new HyproxConfig.RegistryAllowlistEntry();
+        entry.orchestratorId = "orch-1";
+        entry.allowedPools = List.of("game");
+        entry.allowedBackendIdPrefixes = List.of("bench-");
+        config.registry.allowlist = new ArrayList<>(List.of(entry));
+
+        BackendRegistry registry = BackendRegistry.fromConfig(config);
+        Instant now = Instant.now();
+        for (int i = 0; i < BACKENDS; i++) {
+            registry.register(new RegisteredBackend("bench-" + i, "game", "127.0.0.1", 9000, 1, null,
+                    List.of(), "orch-1", now, now, false));
+        }
+        server = new RegistryServer(config, registry);
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.address().getPort() + PATH);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+        client.close();
+    }
+
+    @Benchmark
+    public int heartbeat(Signer signer) throws Exception {
+        int backend = ThreadLocalRandom.current().nextInt(BACKENDS);
+        String body = "{\"orchestratorId\":\"orch-1\",\"backendId\":\"bench-" + backend + "\",\"ttlSeconds\":30}";
+        long timestamp = Instant.now().getEpochSecond();
+        String nonce = Long.toHexString(nonces.incrementAndGet()) + "-" + Long.toHexString(System.nanoTime());
+        String signature = signer.sign("POST\n" + PATH + "\n" + timestamp + "\n" + nonce + "\n" + body);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .header("X-Hyprox-Orchestrator", "orch-1")
+                .header("X-Hyprox-Timestamp", Long.toString(timestamp))
+                .header("X-Hyprox-Nonce", nonce)
+                .header("X-Hyprox-Signature", signature)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("unexpected status " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Per-thread HMAC instance.
+     */
+    @State(Scope.Thread)
+    public static class Signer {
+        private Mac mac;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SHARED_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        }
+
+        String sign(String canonical) {
+            return Base64.getEncoder().encodeToString(mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
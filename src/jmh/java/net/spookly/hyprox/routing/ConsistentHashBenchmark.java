@@ -0,0 +1,121 @@
+package net.spookly.hyprox.routing;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.spookly.hyprox.config.HyproxConfig;
+import net.spookly.hyprox.registry.BackendRegistry;
+import net.spookly.hyprox.registry.RegisteredBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Keyed routing cost with rendezvous hashing versus a Maglev table, and the Maglev table build cost.
+ * <p>
+ * Setup prints the share of keys that move to a different surviving backend when one backend starts
+ * draining (the keys of the drained backend always move and are not counted); the measured pool then has
+ * one backend less.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsistentHashBenchmark {
+    private static final int KEYS = 1024;
+    private static final int DISRUPTION_KEYS = 20_000;
+
+    @Param({"100", "1000", "5000"})
+    public int dynamicBackends;
+
+    @Param({"rendezvous", "maglev"})
+    public String hashing;
+
+    private BackendRegistry registry;
+    private RoutingService service;
+    private RoutingRequest[] requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HyproxConfig config = new HyproxConfig();
+        config.routing = new HyproxConfig.RoutingConfig();
+        config.routing.defaultPool = "game";
+        config.routing.pools = new LinkedHashMap<>();
+        HyproxConfig.PoolConfig pool = new HyproxConfig.PoolConfig();
+        pool.policy = "weighted";
+        pool.hashing = hashing;
+        pool.backends = new ArrayList<>();
+        config.routing.pools.put("game", pool);
+
+        registry = BackendRegistry.fromConfig(config);
+        Instant now = Instant.now();
+        for (int i = 0; i < dynamicBackends; i++) {
+            registry.register(new RegisteredBackend(
+                    "game-" + i, "game", "10.0." + (i / 250) + "." + (i % 250), 9000, 1 + i % 3, null,
+                    List.of("dynamic"), "orch-1", now, now.plusSeconds(3600), false));
+        }
+        service = new RoutingService(config, registry, null, new BackendHealthTracker());
+        requests = new RoutingRequest[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            requests[i] = new RoutingRequest("game", null, "client-" + i, null);
+        }
+        printDisruption();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        registry.stop();
+    }
+
+    @Benchmark
+    public RoutingResult route() {
+        return service.route(requests[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public MaglevTable buildMaglev() {
+        RoutingSnapshot.Pool pool = service.snapshot().pool("game");
+        byte[][] keys = new byte[pool.size()][];
+        int[] weights = new int[pool.size()];
+        for (int i = 0; i < pool.size(); i++) {
+            keys[i] = pool.selectionKey(i);
+            weights[i] = pool.weight(i);
+        }
+        return MaglevTable.build(keys, weights);
+    }
+
+    private void printDisruption() {
+        String[] before = new String[DISRUPTION_KEYS];
+        for (int i = 0; i < DISRUPTION_KEYS; i++) {
+            before[i] = service.route(new RoutingRequest("game", null, "key-" + i, null)).backend().id();
+        }
+        registry.drain("game-0", "orch-1", null);
+        service.awaitRebuild();
+        service.snapshot().pool("game").maglevBuilt().join();
+        int moved = 0;
+        for (int i = 0; i < DISRUPTION_KEYS; i++) {
+            String after = service.route(new RoutingRequest("game", null, "key-" + i, null)).backend().id();
+            if (!before[i].equals("game-0") && !before[i].equals(after)) {
+                moved++;
+            }
+        }
+        System.out.printf("%n%s, %d backends: %.3f%% of keys moved after removing one backend%n",
+                hashing, dynamicBackends, 100D * moved / DISRUPTION_KEYS);
+    }
+}
@@ -18,6 +18,7 @@ import net.spookly.hyprox.registry.RegistryServer;
 import net.spookly.hyprox.routing.BackendCapacityTracker;
 import net.spookly.hyprox.routing.BackendHealthProbeService;
 import net.spookly.hyprox.routing.BackendHealthTracker;
+import net.spookly.hyprox.routing.BackendLatencyTracker;
 import net.spookly.hyprox.routing.PathSelector;
 import net.spookly.hyprox.routing.RoutingPlanner;
 import net.spookly.hyprox.routing.RoutingService;
@@ -27,6 +28,7 @@ import net.spookly.hyprox.routing.RoutingService;
  */
 public final class HyproxMain {
     private static final String DEFAULT_CONFIG = "config/hyprox.yaml";
+    private static final String HTTP_SERVER_NODELAY = "sun.net.httpserver.nodelay";
 
     private HyproxMain() {
     }
@@ -35,6 +37,7 @@ public final class HyproxMain {
      * Boot the proxy process and optional registry service.
      */
     public static void main(String[] args) {
+        enableRegistryNoDelay();
         CliOptions options = parseArgs(args);
         Path configPath = options.configPath;
         HyproxConfig config = ConfigLoader.load(configPath);
@@ -55,9 +58,15 @@ public final class HyproxMain {
             eventListener = RegistryAuditLogger.INSTANCE;
         }
         BackendRegistry registry = BackendRegistry.fromConfig(config, eventListener);
+        int restored = registry.restore();
+        if (restored > 0) {
+            System.out.println("Restored " + restored + " registry entries from disk.");
+        }
         BackendCapacityTracker capacityTracker = new BackendCapacityTracker();
         BackendHealthTracker healthTracker = new BackendHealthTracker();
-        RoutingService routingService = new RoutingService(config, registry, capacityTracker, healthTracker);
+        BackendLatencyTracker latencyTracker = new BackendLatencyTracker();
+        RoutingService routingService =
+                new RoutingService(config, registry, capacityTracker, healthTracker, latencyTracker);
         RoutingPlanner routingPlanner = new RoutingPlanner(routingService, new PathSelector(config));
         ReferralService referralService = new ReferralService(config, routingService);
         ProxyServer proxyServer = new ProxyServer(config, routingPlanner, referralService);
@@ -69,7 +78,8 @@ public final class HyproxMain {
                     config,
                     routingService,
                     healthTracker,
-                    new QuicBackendHealthProbe(config)
+                    new QuicBackendHealthProbe(config),
+                    latencyTracker
             );
             healthProbeService.start();
         }
@@ -104,6 +114,18 @@ public final class HyproxMain {
         }
     }
 
+    /**
+     * Enable TCP_NODELAY on the JDK HTTP server behind the registry unless the launcher already chose a value.
+     * Its small JSON responses are written as headers and body separately, so without it every keep-alive
+     * response waits for the client's delayed ACK. The JDK reads the property once, when the first server is
+     * created, so it has to be set before anything else starts.
+     */
+    private static void enableRegistryNoDelay() {
+        if (System.getProperty(HTTP_SERVER_NODELAY) == null) {
+            System.setProperty(HTTP_SERVER_NODELAY, "true");
+        }
+    }
+
     private static CliOptions parseArgs(String[] args) {
         Path configPath = Paths.get(DEFAULT_CONFIG);
         boolean dryRun = false;
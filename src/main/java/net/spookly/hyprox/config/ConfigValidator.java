@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import net.spookly.hyprox.util.CidrMatcher;
+
 public final class ConfigValidator {
     private ConfigValidator() {
     }
@@ -86,6 +88,18 @@ public final class ConfigValidator {
             if (quic.maxUnidirectionalStreams != null && quic.maxUnidirectionalStreams <= 0) {
                 errors.add("proxy.quic.maxUnidirectionalStreams must be greater than 0");
             }
+            if (quic.backendEndpointsPerEventLoop != null && quic.backendEndpointsPerEventLoop <= 0) {
+                errors.add("proxy.quic.backendEndpointsPerEventLoop must be greater than 0");
+            }
+            if (quic.gsoMaxSegments != null && (quic.gsoMaxSegments <= 0 || quic.gsoMaxSegments > 64)) {
+                errors.add("proxy.quic.gsoMaxSegments must be between 1 and 64");
+            }
+            if (quic.backendSessionCacheSize != null && quic.backendSessionCacheSize <= 0) {
+                errors.add("proxy.quic.backendSessionCacheSize must be greater than 0");
+            }
+            if (Boolean.TRUE.equals(quic.backendEarlyData) && Boolean.FALSE.equals(quic.backendSessionResumption)) {
+                errors.add("proxy.quic.backendEarlyData requires backendSessionResumption");
+            }
         }
 
         if (proxy.timeouts != null) {
@@ -95,6 +109,73 @@ public final class ConfigValidator {
         if (proxy.limits != null) {
             requirePositive(errors, proxy.limits.handshakesPerMinutePerIp, "proxy.limits.handshakesPerMinutePerIp");
             requirePositive(errors, proxy.limits.concurrentPerIp, "proxy.limits.concurrentPerIp");
+            if (proxy.limits.pendingBytesPerSession != null && proxy.limits.pendingBytesPerSession <= 0) {
+                errors.add("proxy.limits.pendingBytesPerSession must be greater than 0");
+            }
+            if (proxy.limits.pendingPacketsPerSession != null && proxy.limits.pendingPacketsPerSession <= 0) {
+                errors.add("proxy.limits.pendingPacketsPerSession must be greater than 0");
+            }
+            if (proxy.limits.pendingBytesTotal != null && proxy.limits.pendingBytesTotal <= 0) {
+                errors.add("proxy.limits.pendingBytesTotal must be greater than 0");
+            }
+            if (proxy.limits.pendingPacketsTotal != null && proxy.limits.pendingPacketsTotal <= 0) {
+                errors.add("proxy.limits.pendingPacketsTotal must be greater than 0");
+            }
+        }
+        if (proxy.transport != null) {
+            if (!isBlank(proxy.transport.mode) && !isOneOf(proxy.transport.mode, "nio", "epoll", "auto")) {
+                errors.add("proxy.transport.mode must be one of: nio, epoll, auto");
+            }
+            if (proxy.transport.listenerSockets != null && proxy.transport.listenerSockets <= 0) {
+                errors.add("proxy.transport.listenerSockets must be greater than 0");
+            }
+            if (proxy.transport.backendThreads != null && proxy.transport.backendThreads < 0) {
+                errors.add("proxy.transport.backendThreads must be 0 or greater");
+            }
+            if (!isBlank(proxy.transport.backendEventLoop)
+                    && !isOneOf(proxy.transport.backendEventLoop, "separate", "client")) {
+                errors.add("proxy.transport.backendEventLoop must be one of: separate, client");
+            }
+        }
+        if (proxy.warmPool != null) {
+            if (proxy.warmPool.maxPerBackend != null && proxy.warmPool.maxPerBackend <= 0) {
+                errors.add("proxy.warmPool.maxPerBackend must be greater than 0");
+            }
+            if (proxy.warmPool.targetSeconds != null && proxy.warmPool.targetSeconds <= 0) {
+                errors.add("proxy.warmPool.targetSeconds must be greater than 0");
+            }
+            if (proxy.warmPool.refillIntervalMs != null && proxy.warmPool.refillIntervalMs <= 0) {
+                errors.add("proxy.warmPool.refillIntervalMs must be greater than 0");
+            }
+        }
+        if (proxy.connectRetry != null) {
+            if (proxy.connectRetry.maxAttempts != null && proxy.connectRetry.maxAttempts <= 0) {
+                errors.add("proxy.connectRetry.maxAttempts must be greater than 0");
+            }
+            if (proxy.connectRetry.attemptTimeoutMs != null && proxy.connectRetry.attemptTimeoutMs <= 0) {
+                errors.add("proxy.connectRetry.attemptTimeoutMs must be greater than 0");
+            }
+            if (proxy.connectRetry.hedgePercentile != null
+                    && (proxy.connectRetry.hedgePercentile < 1 || proxy.connectRetry.hedgePercentile > 99)) {
+                errors.add("proxy.connectRetry.hedgePercentile must be between 1 and 99");
+            }
+            if (proxy.connectRetry.hedgeMinDelayMs != null && proxy.connectRetry.hedgeMinDelayMs < 0) {
+                errors.add("proxy.connectRetry.hedgeMinDelayMs must be 0 or greater");
+            }
+        }
+        if (proxy.forwarding != null) {
+            if (!isBlank(proxy.forwarding.mode) && !isOneOf(proxy.forwarding.mode, "decode", "passthrough")) {
+                errors.add("proxy.forwarding.mode must be one of: decode, passthrough");
+            }
+            if (proxy.forwarding.maxFrameBytes != null && proxy.forwarding.maxFrameBytes <= 8) {
+                errors.add("proxy.forwarding.maxFrameBytes must be greater than 8");
+            }
+            if (proxy.forwarding.flushMaxBytes != null && proxy.forwarding.flushMaxBytes <= 0) {
+                errors.add("proxy.forwarding.flushMaxBytes must be greater than 0");
+            }
+            if (proxy.forwarding.flushMaxDelayMs != null && proxy.forwarding.flushMaxDelayMs < 0) {
+                errors.add("proxy.forwarding.flushMaxDelayMs must be 0 or greater");
+            }
         }
     }
 
@@ -182,6 +263,8 @@ public final class ConfigValidator {
                 if (!isBlank(rule.pool) && !routing.pools.containsKey(rule.pool)) {
                     errors.add("routing.rules.pool must reference an existing pool");
                 }
+                validateRuleMatch(rule.match, errors);
+                validateRuleSplits(rule.splits, errors);
             }
         }
 
@@ -194,8 +277,16 @@ public final class ConfigValidator {
                 continue;
             }
             requireNonBlank(errors, pool.policy, "routing.pools." + poolName + ".policy");
-            if (!isBlank(pool.policy) && !isOneOf(pool.policy, "weighted", "round_robin")) {
-                errors.add("routing.pools." + poolName + ".policy must be weighted or round_robin");
+            if (!isBlank(pool.policy) && !isOneOf(pool.policy,
+                    "weighted", "round_robin", "least_connections", "p2c", "latency_weighted")) {
+                errors.add("routing.pools." + poolName
+                        + ".policy must be weighted, round_robin, least_connections, p2c or latency_weighted");
+            }
+            if (!isBlank(pool.hashing) && !isOneOf(pool.hashing, "rendezvous", "maglev")) {
+                errors.add("routing.pools." + poolName + ".hashing must be rendezvous or maglev");
+            }
+            if (pool.boundedLoad != null && pool.boundedLoad <= 0) {
+                errors.add("routing.pools." + poolName + ".boundedLoad must be greater than 0");
             }
             if (pool.backends == null || pool.backends.isEmpty()) {
                 errors.add("routing.pools." + poolName + ".backends must include at least one backend");
@@ -346,6 +437,45 @@ public final class ConfigValidator {
         }
     }
 
+    private static void validateRuleSplits(List<HyproxConfig.SplitConfig> splits, List<String> errors) {
+        if (splits == null) {
+            return;
+        }
+        int total = 0;
+        for (HyproxConfig.SplitConfig split : splits) {
+            if (split == null) {
+                continue;
+            }
+            if (split.tags == null || split.tags.isEmpty()) {
+                errors.add("routing.rules.splits.tags must include at least one tag");
+            }
+            if (split.percent == null || split.percent < 0 || split.percent > 100) {
+                errors.add("routing.rules.splits.percent must be between 0 and 100");
+            } else {
+                total += split.percent;
+            }
+        }
+        if (total > 100) {
+            errors.add("routing.rules.splits percents must not add up to more than 100");
+        }
+    }
+
+    private static void validateRuleMatch(HyproxConfig.MatchConfig match, List<String> errors) {
+        if (match == null) {
+            return;
+        }
+        if (match.uuidPercent != null && (match.uuidPercent < 0 || match.uuidPercent > 100)) {
+            errors.add("routing.rules.match.uuidPercent must be between 0 and 100");
+        }
+        if (match.sourceCidrs != null) {
+            try {
+                CidrMatcher.from(match.sourceCidrs);
+            } catch (IllegalArgumentException e) {
+                errors.add("routing.rules.match.sourceCidrs must contain valid CIDRs: " + e.getMessage());
+            }
+        }
+    }
+
     private static void validateRegistry(HyproxConfig config, List<String> errors) {
         HyproxConfig.RegistryConfig registry = config.registry;
         if (registry == null || !isTrue(registry.enabled)) {
@@ -361,6 +491,24 @@ public final class ConfigValidator {
         if (registry.maxListResults != null && registry.maxListResults <= 0) {
             errors.add("registry.maxListResults must be greater than 0");
         }
+        if (registry.maxBatchOperations != null && registry.maxBatchOperations <= 0) {
+            errors.add("registry.maxBatchOperations must be greater than 0");
+        }
+        if (registry.workerThreads != null && registry.workerThreads < 0) {
+            errors.add("registry.workerThreads must be 0 or greater");
+        }
+        if (registry.maxConcurrentRequests != null && registry.maxConcurrentRequests <= 0) {
+            errors.add("registry.maxConcurrentRequests must be greater than 0");
+        }
+        if (registry.watchMaxClients != null && registry.watchMaxClients < 0) {
+            errors.add("registry.watchMaxClients must be 0 or greater");
+        }
+        if (registry.watchTimeoutSeconds != null && registry.watchTimeoutSeconds <= 0) {
+            errors.add("registry.watchTimeoutSeconds must be greater than 0");
+        }
+        if (registry.eventLogSize != null && registry.eventLogSize <= 0) {
+            errors.add("registry.eventLogSize must be greater than 0");
+        }
         if (registry.rateLimitPerMinute != null && registry.rateLimitPerMinute <= 0) {
             errors.add("registry.rateLimitPerMinute must be greater than 0");
         }
@@ -420,6 +568,16 @@ public final class ConfigValidator {
             requirePositive(errors, registry.defaults.heartbeatGraceSeconds, "registry.defaults.heartbeatGraceSeconds");
             requirePositive(errors, registry.defaults.drainTimeoutSeconds, "registry.defaults.drainTimeoutSeconds");
         }
+        if (registry.persistence != null && Boolean.TRUE.equals(registry.persistence.enabled)) {
+            requireNonBlank(errors, registry.persistence.path, "registry.persistence.path");
+            if (registry.persistence.flushIntervalMillis != null && registry.persistence.flushIntervalMillis <= 0) {
+                errors.add("registry.persistence.flushIntervalMillis must be greater than 0");
+            }
+            if (registry.persistence.snapshotIntervalSeconds != null
+                    && registry.persistence.snapshotIntervalSeconds <= 0) {
+                errors.add("registry.persistence.snapshotIntervalSeconds must be greater than 0");
+            }
+        }
     }
 
     private static boolean usesFullProxy(HyproxConfig config) {
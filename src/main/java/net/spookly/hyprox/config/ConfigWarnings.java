@@ -30,6 +30,10 @@ public final class ConfigWarnings {
             warnIfWorldReadable(warnings, "proxy.quic.key", quic.key, baseDir, true);
             warnIfWorldReadable(warnings, "proxy.quic.clientCa", quic.clientCa, baseDir, true);
             warnIfWorldReadable(warnings, "proxy.quic.backendCa", quic.backendCa, baseDir, true);
+            if (Boolean.TRUE.equals(quic.backendEarlyData)
+                    && (proxy.transport == null || !"client".equalsIgnoreCase(trim(proxy.transport.backendEventLoop)))) {
+                warnings.add("proxy.quic.backendEarlyData only applies with proxy.transport.backendEventLoop: client");
+            }
         }
         HyproxConfig.AgentConfig agent = config.agent;
         if (agent != null && agent.auth != null) {
@@ -69,6 +73,10 @@ public final class ConfigWarnings {
         }
     }
 
+    private static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+
     private static Path resolvePath(Path baseDir, String rawValue) {
         try {
             Path path = Paths.get(rawValue);
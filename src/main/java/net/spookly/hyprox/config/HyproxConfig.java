@@ -20,6 +20,14 @@ public class HyproxConfig {
         public QuicConfig quic;
         public TimeoutsConfig timeouts;
         public LimitsConfig limits;
+        public ForwardingConfig forwarding;
+        public TransportConfig transport;
+        public WarmPoolConfig warmPool;
+        /**
+         * Start the backend connect at QUIC handshake time from a predicted route (full proxy only).
+         */
+        public Boolean speculativeConnect;
+        public ConnectRetryConfig connectRetry;
     }
 
     public static class ListenConfig {
@@ -42,6 +50,28 @@ public class HyproxConfig {
         public Integer maxBidirectionalStreams;
         public Integer maxUnidirectionalStreams;
         public Integer mtu;
+        /**
+         * Shared UDP sockets per backend event loop that backend QUIC connections are multiplexed over.
+         */
+        public Integer backendEndpointsPerEventLoop;
+        /**
+         * UDP generic segmentation offload on QUIC sends (native transport only).
+         */
+        public Boolean gso;
+        public Integer gsoMaxSegments;
+        /**
+         * UDP generic receive offload on QUIC reads (native transport only).
+         */
+        public Boolean gro;
+        /**
+         * Resume TLS sessions to backends from cached session tickets (default true).
+         */
+        public Boolean backendSessionResumption;
+        public Integer backendSessionCacheSize;
+        /**
+         * Send the first packets as 0-RTT data on resumed backend sessions when the backend accepts it.
+         */
+        public Boolean backendEarlyData;
     }
 
     public static class TimeoutsConfig {
@@ -52,6 +82,72 @@ public class HyproxConfig {
     public static class LimitsConfig {
         public Integer handshakesPerMinutePerIp;
         public Integer concurrentPerIp;
+        /**
+         * Caps on client data buffered per session while its backend connect is in flight.
+         */
+        public Integer pendingBytesPerSession;
+        public Integer pendingPacketsPerSession;
+        /**
+         * Node-wide caps on buffered pre-connect data across all sessions.
+         */
+        public Long pendingBytesTotal;
+        public Long pendingPacketsTotal;
+    }
+
+    public static class TransportConfig {
+        /**
+         * Datagram transport: nio (default), epoll or auto. Native modes fall back to NIO when unavailable.
+         */
+        public String mode;
+        /**
+         * SO_REUSEPORT listener sockets (one per event loop) when the native transport is active.
+         */
+        public Integer listenerSockets;
+        public Integer backendThreads;
+        /**
+         * Where backend connections run: separate (own event loops) or client (the client channel's event loop).
+         */
+        public String backendEventLoop;
+    }
+
+    public static class WarmPoolConfig {
+        public Boolean enabled;
+        public Integer maxPerBackend;
+        /**
+         * Seconds of recent connect demand kept as idle handshaken connections per backend.
+         */
+        public Integer targetSeconds;
+        public Integer refillIntervalMs;
+    }
+
+    public static class ConnectRetryConfig {
+        /**
+         * Backend connect attempts per session, including the first one and any hedged attempt.
+         */
+        public Integer maxAttempts;
+        public Integer attemptTimeoutMs;
+        /**
+         * Race a second backend when the first connect is slower than {@code hedgePercentile} of recent connects.
+         */
+        public Boolean hedge;
+        public Integer hedgePercentile;
+        public Integer hedgeMinDelayMs;
+    }
+
+    public static class ForwardingConfig {
+        /**
+         * Full proxy packet handling: decode (default) or passthrough once the handshake is done.
+         */
+        public String mode;
+        public Integer maxFrameBytes;
+        /**
+         * Pending bytes that force an immediate flush.
+         */
+        public Integer flushMaxBytes;
+        /**
+         * How long writes may be held across read bursts before a flush; 0 flushes at the end of every burst.
+         */
+        public Integer flushMaxDelayMs;
     }
 
     public static class AuthConfig {
@@ -91,15 +187,30 @@ public class HyproxConfig {
     public static class RuleConfig {
         public MatchConfig match;
         public String pool;
+        public List<String> requireTags;
+        public List<String> excludeTags;
+        public List<SplitConfig> splits;
+    }
+
+    public static class SplitConfig {
+        public List<String> tags;
+        public Integer percent;
     }
 
     public static class MatchConfig {
         public String clientType;
         public String referralSource;
+        public String language;
+        public String usernamePrefix;
+        public String clientCertSubject;
+        public List<String> sourceCidrs;
+        public Integer uuidPercent;
     }
 
     public static class PoolConfig {
         public String policy;
+        public String hashing;
+        public Double boundedLoad;
         public List<BackendConfig> backends;
     }
 
@@ -177,6 +288,16 @@ public class HyproxConfig {
         public String listen;
         public Integer maxRequestBytes;
         public Integer maxListResults;
+        public Integer maxBatchOperations;
+        public Integer workerThreads;
+        public Integer maxConcurrentRequests;
+        public Integer watchMaxClients;
+        public Integer watchTimeoutSeconds;
+        public Integer eventLogSize;
+        /**
+         * Whether heartbeats are logged for watchers (default false); with them the event log covers far less time.
+         */
+        public Boolean watchHeartbeats;
         public Integer rateLimitPerMinute;
         public List<Integer> allowedPorts;
         public Boolean allowLoopback;
@@ -184,9 +305,17 @@ public class HyproxConfig {
         public RegistryAuthConfig auth;
         public List<RegistryAllowlistEntry> allowlist;
         public RegistryDefaults defaults;
+        public RegistryPersistenceConfig persistence;
         public List<String> allowedNetworks;
     }
 
+    public static class RegistryPersistenceConfig {
+        public Boolean enabled;
+        public String path;
+        public Integer flushIntervalMillis;
+        public Integer snapshotIntervalSeconds;
+    }
+
     public static class RegistryAuthConfig {
         public String mode;
         public String clientCa;
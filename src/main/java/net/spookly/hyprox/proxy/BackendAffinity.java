@@ -0,0 +1,37 @@
+package net.spookly.hyprox.proxy;
+
+import net.spookly.hyprox.config.HyproxConfig;
+
+/**
+ * Event loop placement for backend connections.
+ * <p>
+ * {@code separate} runs backend connections on a dedicated event loop group. {@code client} registers
+ * them on the event loop of the client QUIC channel, so forwarding never crosses threads.
+ */
+public enum BackendAffinity {
+    SEPARATE("separate"),
+    CLIENT("client");
+
+    private final String configValue;
+
+    BackendAffinity(String configValue) {
+        this.configValue = configValue;
+    }
+
+    public static BackendAffinity fromConfig(HyproxConfig config) {
+        HyproxConfig.TransportConfig transport = config.proxy == null ? null : config.proxy.transport;
+        return fromConfig(transport == null ? null : transport.backendEventLoop);
+    }
+
+    public static BackendAffinity fromConfig(String value) {
+        if (value == null) {
+            return SEPARATE;
+        }
+        for (BackendAffinity affinity : values()) {
+            if (affinity.configValue.equalsIgnoreCase(value)) {
+                return affinity;
+            }
+        }
+        return SEPARATE;
+    }
+}
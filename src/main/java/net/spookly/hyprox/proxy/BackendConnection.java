@@ -8,23 +8,21 @@ import net.spookly.hyprox.routing.BackendTarget;
 
 /**
  * Wraps the QUIC connection and stream to a backend server.
+ * <p>
+ * The UDP endpoint underneath is shared with other connections and is not closed here.
  */
 public final class BackendConnection {
     private final BackendTarget backend;
-    private final Channel datagramChannel;
     private final Channel quicChannel;
     private final Channel streamChannel;
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
     public BackendConnection(BackendTarget backend,
-                             Channel datagramChannel,
                              Channel quicChannel,
                              Channel streamChannel) {
         this.backend = Objects.requireNonNull(backend, "backend");
-        this.datagramChannel = Objects.requireNonNull(datagramChannel, "datagramChannel");
         this.quicChannel = Objects.requireNonNull(quicChannel, "quicChannel");
         this.streamChannel = Objects.requireNonNull(streamChannel, "streamChannel");
-        this.quicChannel.closeFuture().addListener(future -> datagramChannel.close());
     }
 
     public BackendTarget backend() {
@@ -45,8 +43,5 @@ public final class BackendConnection {
         if (quicChannel.isActive()) {
             quicChannel.close();
         }
-        if (datagramChannel.isActive()) {
-            datagramChannel.close();
-        }
     }
 }
@@ -4,24 +4,29 @@ import java.io.File;
 import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
-import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
-import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.codec.quic.QuicChannel;
 import io.netty.handler.codec.quic.QuicChannelBootstrap;
+import io.netty.handler.codec.quic.QuicChannelOption;
 import io.netty.handler.codec.quic.QuicClientCodecBuilder;
 import io.netty.handler.codec.quic.QuicSslContext;
 import io.netty.handler.codec.quic.QuicSslContextBuilder;
+import io.netty.handler.codec.quic.QuicSslEngine;
 import io.netty.handler.codec.quic.QuicStreamChannel;
 import io.netty.handler.codec.quic.QuicStreamType;
+import io.netty.handler.codec.quic.SegmentedDatagramPacketAllocator;
+import io.netty.handler.codec.quic.SslEarlyDataReadyEvent;
+import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.Promise;
 import net.spookly.hyprox.config.HyproxConfig;
@@ -29,103 +34,279 @@ import net.spookly.hyprox.routing.BackendTarget;
 
 /**
  * Establishes QUIC connections from the proxy to backend servers.
+ * <p>
+ * Connections are multiplexed over a small set of shared UDP endpoints per event loop instead of
+ * binding a new socket for every session. When {@code proxy.warmPool} is enabled, sessions take an
+ * already-handshaken connection from a {@link BackendWarmPool} and only open a stream.
  */
 public final class BackendConnector {
+    private static final AttributeKey<InetSocketAddress> BACKEND_PEER =
+            AttributeKey.valueOf(BackendConnector.class, "backendPeer");
+
     private final HyproxConfig config;
     private final EventLoopGroup workerGroup;
     private final QuicSslContext sslContext;
+    private final UdpOffload udpOffload;
+    private final BackendEndpointPool endpointPool;
+    private final VerifiedIdentityCache identityCache = new VerifiedIdentityCache();
+    private final Set<InetSocketAddress> verifiedPeers = ConcurrentHashMap.newKeySet();
+    private final ConnectLatencyTracker connectLatency = new ConnectLatencyTracker();
+    private final boolean sessionResumption;
+    private final boolean earlyData;
+    private volatile BackendWarmPool warmPool;
 
     public BackendConnector(HyproxConfig config, EventLoopGroup workerGroup) {
+        this(config, workerGroup, ProxyTransport.NIO);
+    }
+
+    /**
+     * Create a connector whose event loops were created by the given transport.
+     */
+    public BackendConnector(HyproxConfig config, EventLoopGroup workerGroup, ProxyTransport transport) {
         this.config = Objects.requireNonNull(config, "config");
         this.workerGroup = Objects.requireNonNull(workerGroup, "workerGroup");
+        Objects.requireNonNull(transport, "transport");
+        HyproxConfig.QuicConfig quic = config.proxy == null ? null : config.proxy.quic;
+        this.sessionResumption = quic == null || !Boolean.FALSE.equals(quic.backendSessionResumption);
+        this.earlyData = sessionResumption && quic != null && Boolean.TRUE.equals(quic.backendEarlyData);
         this.sslContext = buildSslContext(config.proxy == null ? null : config.proxy.quic);
+        this.udpOffload = UdpOffload.fromConfig(config, transport);
+        this.endpointPool = new BackendEndpointPool(
+                resolveEndpointsPerEventLoop(),
+                transport.datagramChannelClass(),
+                udpOffload,
+                this::buildClientCodec
+        );
     }
 
     public BackendConnector(HyproxConfig config) {
-        this(config, new NioEventLoopGroup());
+        this(config, ProxyTransport.fromConfig(config));
+    }
+
+    private BackendConnector(HyproxConfig config, ProxyTransport transport) {
+        this(config, transport.newEventLoopGroup(0), transport);
     }
 
     public EventLoopGroup workerGroup() {
         return workerGroup;
     }
 
+    /**
+     * Recent successful connect latencies shared by all sessions, used for hedging.
+     */
+    public ConnectLatencyTracker connectLatency() {
+        return connectLatency;
+    }
+
+    /**
+     * UDP offload settings resolved for this connector's transport.
+     */
+    public UdpOffload udpOffload() {
+        return udpOffload;
+    }
+
     public Future<BackendConnection> connect(BackendTarget backend) {
         Objects.requireNonNull(backend, "backend");
-        Promise<BackendConnection> promise = workerGroup.next().newPromise();
+        QuicChannel warm = warmPool == null ? null : warmPool.take(backend, null);
+        if (warm != null) {
+            return connectWarm(backend, warm);
+        }
+        return connect(workerGroup.next(), backend, false);
+    }
+
+    /**
+     * Connect on a specific event loop of this connector's group, for example the client channel's loop
+     * so both sides of a session are served by the same thread.
+     * <p>
+     * With {@code proxy.quic.backendEarlyData} the returned future may complete during a resumed handshake
+     * so the first write goes out as 0-RTT data. Such writes must be issued from the completion listener
+     * on {@code eventLoop}; writes queued as later tasks are held until the handshake completes.
+     */
+    public Future<BackendConnection> connect(BackendTarget backend, EventLoop eventLoop) {
+        Objects.requireNonNull(backend, "backend");
+        Objects.requireNonNull(eventLoop, "eventLoop");
+        QuicChannel warm = warmPool == null ? null : warmPool.take(backend, eventLoop);
+        if (warm != null) {
+            return connectWarm(backend, warm);
+        }
+        return connect(eventLoop, backend, earlyData);
+    }
+
+    /**
+     * Keep handshaken backend connections warm, sized by recent connect demand. Backends for which
+     * {@code eligibility} returns false (draining, unhealthy, removed) are evicted from the pool.
+     * Does nothing when {@code proxy.warmPool} is disabled.
+     */
+    public void enableWarmPool(Predicate<BackendTarget> eligibility) {
+        if (warmPool != null) {
+            return;
+        }
+        warmPool = BackendWarmPool.fromConfig(config, workerGroup, this::connectQuic, eligibility);
+        if (warmPool != null) {
+            warmPool.start();
+        }
+    }
+
+    /**
+     * Close the warm pool and the shared backend endpoints. Open backend connections are closed with them.
+     */
+    public void close() {
+        if (warmPool != null) {
+            warmPool.close();
+        }
+        endpointPool.close();
+    }
+
+    private Future<BackendConnection> connect(EventLoop eventLoop, BackendTarget backend, boolean allowEarlyData) {
+        Promise<BackendConnection> promise = eventLoop.newPromise();
         ConnectionAttempt attempt = new ConnectionAttempt();
         promise.addListener(future -> {
             if (future.isCancelled()) {
                 attempt.close();
             }
         });
-        Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(workerGroup)
-                .channel(NioDatagramChannel.class)
-                .option(ChannelOption.SO_REUSEADDR, true)
-                .handler(buildClientCodec());
-
-        ChannelFuture bindFuture = bootstrap.bind(0);
-        bindFuture.addListener(future -> {
+        Promise<QuicChannel> quicPromise = eventLoop.newPromise();
+        quicPromise.addListener(future -> {
             if (!future.isSuccess()) {
-                promise.setFailure(future.cause());
+                promise.tryFailure(future.cause());
+                return;
+            }
+            QuicChannel quicChannel = (QuicChannel) future.getNow();
+            attempt.setQuic(quicChannel);
+            openStream(backend, quicChannel, promise, attempt);
+        });
+        promise.addListener(future -> {
+            if (future.isCancelled()) {
+                quicPromise.cancel(false);
+            }
+        });
+        if (eventLoop.inEventLoop()) {
+            connectQuic(eventLoop, backend, quicPromise, allowEarlyData);
+        } else {
+            eventLoop.execute(() -> connectQuic(eventLoop, backend, quicPromise, allowEarlyData));
+        }
+        return promise;
+    }
+
+    private Future<BackendConnection> connectWarm(BackendTarget backend, QuicChannel quicChannel) {
+        EventLoop eventLoop = quicChannel.eventLoop();
+        Promise<BackendConnection> promise = eventLoop.newPromise();
+        ConnectionAttempt attempt = new ConnectionAttempt();
+        attempt.setQuic(quicChannel);
+        promise.addListener(future -> {
+            if (future.isCancelled()) {
+                attempt.close();
+            }
+        });
+        openStream(backend, quicChannel, promise, attempt);
+        return promise;
+    }
+
+    private Future<QuicChannel> connectQuic(BackendTarget backend, EventLoop eventLoop) {
+        Promise<QuicChannel> promise = eventLoop.newPromise();
+        if (eventLoop.inEventLoop()) {
+            connectQuic(eventLoop, backend, promise, false);
+        } else {
+            eventLoop.execute(() -> connectQuic(eventLoop, backend, promise, false));
+        }
+        return promise;
+    }
+
+    /**
+     * Connect and verify a backend QUIC connection. With {@code allowEarlyData} the promise may complete
+     * before the handshake finishes, once a resumed session is ready for 0-RTT data to a peer whose last
+     * full verification succeeded. Peer certificates are not available until the handshake completes,
+     * so the check still runs then and closes the connection on failure.
+     */
+    private void connectQuic(EventLoop eventLoop,
+                             BackendTarget backend,
+                             Promise<QuicChannel> promise,
+                             boolean allowEarlyData) {
+        if (promise.isDone()) {
+            return;
+        }
+        ChannelFuture endpointFuture;
+        try {
+            endpointFuture = endpointPool.acquire(eventLoop);
+        } catch (IllegalStateException e) {
+            promise.tryFailure(e);
+            return;
+        }
+        endpointFuture.addListener(future -> {
+            if (!future.isSuccess()) {
+                promise.tryFailure(future.cause());
                 return;
             }
-            Channel datagramChannel = (Channel) future.getNow();
-            attempt.setDatagram(datagramChannel);
             if (promise.isCancelled()) {
-                datagramChannel.close();
                 return;
             }
             InetSocketAddress remoteAddress = new InetSocketAddress(backend.host(), backend.port());
-            QuicChannelBootstrap quicBootstrap = QuicChannel.newBootstrap(datagramChannel)
-                    .handler(new BackendQuicChannelHandler())
+            QuicChannelBootstrap quicBootstrap = QuicChannel.newBootstrap(endpointFuture.channel())
+                    .handler(new BackendQuicChannelHandler(remoteAddress, allowEarlyData ? promise : null))
                     .streamHandler(new BackendStreamHandler())
+                    .attr(BACKEND_PEER, remoteAddress)
                     .remoteAddress(remoteAddress);
+            SegmentedDatagramPacketAllocator segmentedAllocator = udpOffload.segmentedAllocator();
+            if (segmentedAllocator != null) {
+                quicBootstrap.option(QuicChannelOption.SEGMENTED_DATAGRAM_PACKET_ALLOCATOR, segmentedAllocator);
+            }
             quicBootstrap.connect().addListener(connectFuture -> {
                 if (!connectFuture.isSuccess()) {
-                    datagramChannel.close();
-                    promise.setFailure(connectFuture.cause());
+                    promise.tryFailure(connectFuture.cause());
                     return;
                 }
                 QuicChannel quicChannel = (QuicChannel) connectFuture.getNow();
-                attempt.setQuic(quicChannel);
                 if (promise.isCancelled()) {
                     quicChannel.close();
-                    datagramChannel.close();
                     return;
                 }
                 BackendIdentityVerifier.VerificationResult result = BackendIdentityVerifier.verify(
                         quicChannel,
                         backend.host(),
-                        config.proxy == null || config.proxy.quic == null ? null : config.proxy.quic.backendSanAllowlist
+                        config.proxy == null || config.proxy.quic == null ? null : config.proxy.quic.backendSanAllowlist,
+                        identityCache
                 );
                 if (!result.isOk()) {
+                    verifiedPeers.remove(remoteAddress);
                     quicChannel.close();
-                    datagramChannel.close();
-                    promise.setFailure(new IllegalStateException(result.reason()));
+                    promise.tryFailure(new IllegalStateException(result.reason()));
                     return;
                 }
-                quicChannel.createStream(QuicStreamType.BIDIRECTIONAL, new BackendStreamHandler())
-                        .addListener(streamFuture -> {
-                            if (!streamFuture.isSuccess()) {
-                                quicChannel.close();
-                                datagramChannel.close();
-                            promise.setFailure(streamFuture.cause());
-                            return;
-                        }
-                        QuicStreamChannel streamChannel = (QuicStreamChannel) streamFuture.getNow();
-                        attempt.setStream(streamChannel);
-                        if (promise.isCancelled()) {
-                            streamChannel.close();
-                            quicChannel.close();
-                            datagramChannel.close();
-                            return;
-                        }
-                        promise.setSuccess(new BackendConnection(backend, datagramChannel, quicChannel, streamChannel));
-                    });
+                verifiedPeers.add(remoteAddress);
+                if (promise.isSuccess() && promise.getNow() == quicChannel) {
+                    return;
+                }
+                if (!promise.trySuccess(quicChannel)) {
+                    quicChannel.close();
+                }
             });
         });
-        return promise;
+    }
+
+    private void openStream(BackendTarget backend,
+                            QuicChannel quicChannel,
+                            Promise<BackendConnection> promise,
+                            ConnectionAttempt attempt) {
+        if (promise.isCancelled()) {
+            quicChannel.close();
+            return;
+        }
+        quicChannel.createStream(QuicStreamType.BIDIRECTIONAL, new BackendStreamHandler())
+                .addListener(streamFuture -> {
+                    if (!streamFuture.isSuccess()) {
+                        quicChannel.close();
+                        promise.tryFailure(streamFuture.cause());
+                        return;
+                    }
+                    QuicStreamChannel streamChannel = (QuicStreamChannel) streamFuture.getNow();
+                    attempt.setStream(streamChannel);
+                    if (promise.isCancelled()) {
+                        streamChannel.close();
+                        quicChannel.close();
+                        return;
+                    }
+                    promise.setSuccess(new BackendConnection(backend, quicChannel, streamChannel));
+                });
     }
 
     private QuicSslContext buildSslContext(HyproxConfig.QuicConfig quic) {
@@ -143,14 +324,32 @@ public final class BackendConnector {
         if (alpn != null && !alpn.isEmpty()) {
             builder.applicationProtocols(alpn.toArray(new String[0]));
         }
+        if (sessionResumption && quic.backendSessionCacheSize != null) {
+            builder.sessionCacheSize(quic.backendSessionCacheSize);
+        }
+        if (earlyData) {
+            builder.earlyData(true);
+        }
         QuicSslConfigurer.applyCipherSuites(builder, quic.cipherSuites);
         return builder.build();
     }
 
+    private int resolveEndpointsPerEventLoop() {
+        HyproxConfig.QuicConfig quic = config.proxy == null ? null : config.proxy.quic;
+        if (quic == null || quic.backendEndpointsPerEventLoop == null) {
+            return BackendEndpointPool.DEFAULT_ENDPOINTS_PER_EVENT_LOOP;
+        }
+        return quic.backendEndpointsPerEventLoop;
+    }
+
     private ChannelHandler buildClientCodec() {
         HyproxConfig.ProxyConfig proxy = config.proxy;
         HyproxConfig.QuicConfig quic = proxy == null ? null : proxy.quic;
         QuicClientCodecBuilder builder = new QuicClientCodecBuilder().sslContext(sslContext);
+        if (sessionResumption) {
+            // Session tickets are cached by peer host and port, so engines must know their backend.
+            builder.sslEngineProvider(this::newSslEngine);
+        }
         if (proxy != null && proxy.timeouts != null && proxy.timeouts.idleMs != null) {
             builder.maxIdleTimeout(proxy.timeouts.idleMs, TimeUnit.MILLISECONDS);
         }
@@ -169,21 +368,42 @@ public final class BackendConnector {
         return builder.build();
     }
 
-    private static final class BackendQuicChannelHandler extends io.netty.channel.ChannelInboundHandlerAdapter {
+    private QuicSslEngine newSslEngine(QuicChannel channel) {
+        InetSocketAddress peer = channel.attr(BACKEND_PEER).get();
+        if (peer == null) {
+            return sslContext.newEngine(channel.alloc());
+        }
+        return sslContext.newEngine(channel.alloc(), peer.getHostString(), peer.getPort());
+    }
+
+    private final class BackendQuicChannelHandler extends io.netty.channel.ChannelInboundHandlerAdapter {
+        private final InetSocketAddress peer;
+        private final Promise<QuicChannel> earlyDataPromise;
+
+        private BackendQuicChannelHandler(InetSocketAddress peer, Promise<QuicChannel> earlyDataPromise) {
+            this.peer = peer;
+            this.earlyDataPromise = earlyDataPromise;
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof SslEarlyDataReadyEvent && earlyDataPromise != null && !earlyDataPromise.isDone()) {
+                // Only resumed sessions reach early data, and tickets come from earlier handshakes with this peer.
+                if (verifiedPeers.contains(peer)) {
+                    earlyDataPromise.trySuccess((QuicChannel) ctx.channel());
+                }
+            }
+            super.userEventTriggered(ctx, evt);
+        }
     }
 
     private static final class BackendStreamHandler extends io.netty.channel.ChannelInboundHandlerAdapter {
     }
 
     private static final class ConnectionAttempt {
-        private final AtomicReference<Channel> datagram = new AtomicReference<>();
         private final AtomicReference<QuicChannel> quic = new AtomicReference<>();
         private final AtomicReference<QuicStreamChannel> stream = new AtomicReference<>();
 
-        private void setDatagram(Channel channel) {
-            datagram.set(channel);
-        }
-
         private void setQuic(QuicChannel channel) {
             quic.set(channel);
         }
@@ -201,10 +421,6 @@ public final class BackendConnector {
             if (quicChannel != null && quicChannel.isActive()) {
                 quicChannel.close();
             }
-            Channel datagramChannel = datagram.get();
-            if (datagramChannel != null && datagramChannel.isActive()) {
-                datagramChannel.close();
-            }
         }
     }
 }
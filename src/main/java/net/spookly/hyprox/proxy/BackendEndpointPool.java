@@ -0,0 +1,107 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+
+/**
+ * Shared UDP endpoints that backend QUIC connections are multiplexed over.
+ * <p>
+ * Each event loop owns a fixed number of datagram channels. Endpoints are bound lazily, handed out
+ * round-robin and rebound on the next acquire if they failed to bind or were closed.
+ */
+public final class BackendEndpointPool {
+    public static final int DEFAULT_ENDPOINTS_PER_EVENT_LOOP = 2;
+
+    private final int endpointsPerEventLoop;
+    private final Class<? extends DatagramChannel> channelClass;
+    private final UdpOffload udpOffload;
+    private final Supplier<ChannelHandler> codecFactory;
+    private final Map<EventLoop, Slots> slotsByEventLoop = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public BackendEndpointPool(int endpointsPerEventLoop, Supplier<ChannelHandler> codecFactory) {
+        this(endpointsPerEventLoop, NioDatagramChannel.class, UdpOffload.DISABLED, codecFactory);
+    }
+
+    public BackendEndpointPool(int endpointsPerEventLoop,
+                               Class<? extends DatagramChannel> channelClass,
+                               UdpOffload udpOffload,
+                               Supplier<ChannelHandler> codecFactory) {
+        if (endpointsPerEventLoop <= 0) {
+            throw new IllegalArgumentException("endpointsPerEventLoop must be greater than 0");
+        }
+        this.endpointsPerEventLoop = endpointsPerEventLoop;
+        this.channelClass = Objects.requireNonNull(channelClass, "channelClass");
+        this.udpOffload = Objects.requireNonNull(udpOffload, "udpOffload");
+        this.codecFactory = Objects.requireNonNull(codecFactory, "codecFactory");
+    }
+
+    /**
+     * Return a bound endpoint owned by the given event loop. Must be called from that event loop.
+     */
+    public ChannelFuture acquire(EventLoop eventLoop) {
+        if (closed) {
+            throw new IllegalStateException("backend endpoints are closed");
+        }
+        Slots slots = slotsByEventLoop.computeIfAbsent(eventLoop, loop -> new Slots(endpointsPerEventLoop));
+        int index = slots.nextIndex();
+        ChannelFuture endpoint = slots.endpoints.get(index);
+        if (endpoint == null || (endpoint.isDone() && !endpoint.channel().isActive())) {
+            endpoint = bind(eventLoop);
+            slots.endpoints.set(index, endpoint);
+        }
+        return endpoint;
+    }
+
+    /**
+     * Close every shared endpoint. QUIC connections multiplexed over them are closed as well.
+     */
+    public void close() {
+        closed = true;
+        for (Slots slots : slotsByEventLoop.values()) {
+            for (int i = 0; i < slots.endpoints.length(); i++) {
+                ChannelFuture endpoint = slots.endpoints.getAndSet(i, null);
+                if (endpoint != null) {
+                    endpoint.channel().close();
+                }
+            }
+        }
+        slotsByEventLoop.clear();
+    }
+
+    private ChannelFuture bind(EventLoop eventLoop) {
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(eventLoop)
+                .channel(channelClass)
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .handler(codecFactory.get());
+        udpOffload.applyReceive(bootstrap);
+        return bootstrap.bind(0);
+    }
+
+    private static final class Slots {
+        private final AtomicReferenceArray<ChannelFuture> endpoints;
+        private int next;
+
+        private Slots(int size) {
+            this.endpoints = new AtomicReferenceArray<>(size);
+        }
+
+        private int nextIndex() {
+            int index = next;
+            next = index + 1 == endpoints.length() ? 0 : index + 1;
+            return index;
+        }
+    }
+}
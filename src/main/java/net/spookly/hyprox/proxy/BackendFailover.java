@@ -0,0 +1,267 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
+import net.spookly.hyprox.routing.BackendReservation;
+import net.spookly.hyprox.routing.BackendTarget;
+import net.spookly.hyprox.routing.DataPath;
+import net.spookly.hyprox.routing.RoutingDecision;
+import net.spookly.hyprox.routing.RoutingPlanner;
+import net.spookly.hyprox.routing.RoutingRequest;
+
+/**
+ * Drives the backend connect of one full-proxy session within a {@link ConnectRetryPolicy}.
+ * <p>
+ * A failed or timed out attempt is recorded as a passive health failure, its reservation is released and
+ * the session is re-routed with every backend tried so far excluded. With hedging enabled a second
+ * candidate is raced once the first connect is slower than recent connects; the first success wins and the
+ * other attempt is closed. All state is confined to the client event loop.
+ */
+final class BackendFailover {
+    /**
+     * Starts a connect to a backend.
+     */
+    @FunctionalInterface
+    interface Connector {
+        Future<BackendConnection> connect(BackendTarget backend);
+    }
+
+    /**
+     * Receives the outcome on the client event loop. The reservation of the winning attempt is handed over.
+     */
+    interface Listener {
+        void connected(BackendConnection connection, BackendReservation reservation);
+
+        void failed();
+    }
+
+    private final RoutingPlanner routingPlanner;
+    private final ConnectRetryPolicy policy;
+    private final ConnectLatencyTracker latency;
+    private final EventExecutor executor;
+    private final Connector connector;
+    private final Listener listener;
+    private final List<Attempt> inFlight = new ArrayList<>(2);
+    private RoutingRequest request;
+    private int attempts;
+    private boolean done;
+
+    BackendFailover(RoutingPlanner routingPlanner,
+                    ConnectRetryPolicy policy,
+                    ConnectLatencyTracker latency,
+                    EventExecutor executor,
+                    Connector connector,
+                    Listener listener) {
+        this.routingPlanner = Objects.requireNonNull(routingPlanner, "routingPlanner");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.latency = Objects.requireNonNull(latency, "latency");
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.connector = Objects.requireNonNull(connector, "connector");
+        this.listener = Objects.requireNonNull(listener, "listener");
+    }
+
+    /**
+     * Start with the backend picked by the initial routing decision. {@code pending} is an already started
+     * connect to that backend (for example a speculative one), or null to start a new one. Its latency,
+     * attempt timeout and hedge delay count from when it was started, not from this call.
+     */
+    void start(RoutingRequest request,
+               BackendTarget backend,
+               BackendReservation reservation,
+               SpeculativeConnectHandler.PendingConnect pending) {
+        this.request = Objects.requireNonNull(request, "request");
+        launch(backend, reservation, pending);
+    }
+
+    /**
+     * Abandon every pending attempt and release its reservation.
+     */
+    void cancel() {
+        done = true;
+        for (Attempt attempt : inFlight) {
+            abandon(attempt);
+        }
+        inFlight.clear();
+    }
+
+    int attempts() {
+        return attempts;
+    }
+
+    private void launch(BackendTarget backend,
+                        BackendReservation reservation,
+                        SpeculativeConnectHandler.PendingConnect pending) {
+        attempts++;
+        request = request.excluding(backend.id());
+        long startNanos = pending != null ? pending.startNanos() : System.nanoTime();
+        Future<BackendConnection> future = pending != null ? pending.future() : connector.connect(backend);
+        Attempt attempt = new Attempt(backend, reservation, future, startNanos);
+        inFlight.add(attempt);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(policy.attemptTimeoutMs()) - elapsedNanos;
+        attempt.timeout = executor.schedule(() -> onTimeout(attempt), Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+        long hedgeDelayNanos = hedgeDelayNanos();
+        if (hedgeDelayNanos >= 0) {
+            attempt.hedge = executor.schedule(
+                    () -> hedge(attempt), Math.max(0, hedgeDelayNanos - elapsedNanos), TimeUnit.NANOSECONDS);
+        }
+        future.addListener(completed -> runOnExecutor(() -> onComplete(attempt)));
+    }
+
+    private long hedgeDelayNanos() {
+        if (!policy.hedge() || attempts >= policy.maxAttempts()) {
+            return -1;
+        }
+        long percentile = latency.percentileNanos(policy.hedgePercentile());
+        if (percentile < 0) {
+            return -1;
+        }
+        return Math.max(percentile, TimeUnit.MILLISECONDS.toNanos(policy.hedgeMinDelayMs()));
+    }
+
+    private void onComplete(Attempt attempt) {
+        if (attempt.finished) {
+            return;
+        }
+        attempt.finish();
+        inFlight.remove(attempt);
+        Future<BackendConnection> future = attempt.future;
+        if (done) {
+            abandon(attempt);
+            return;
+        }
+        if (!future.isSuccess()) {
+            fail(attempt);
+            return;
+        }
+        done = true;
+        long latencyNanos = System.nanoTime() - attempt.startNanos;
+        latency.record(latencyNanos);
+        routingPlanner.recordConnectLatency(attempt.backend, latencyNanos);
+        routingPlanner.recordConnectResult(attempt.backend, true);
+        for (Attempt other : inFlight) {
+            abandon(other);
+        }
+        inFlight.clear();
+        listener.connected(future.getNow(), attempt.reservation);
+    }
+
+    private void onTimeout(Attempt attempt) {
+        if (attempt.finished || done) {
+            return;
+        }
+        if (attempt.future.isSuccess()) {
+            // A pending connect can complete before its completion listener got to run.
+            onComplete(attempt);
+            return;
+        }
+        attempt.finish();
+        inFlight.remove(attempt);
+        discard(attempt.future);
+        fail(attempt);
+    }
+
+    private void hedge(Attempt attempt) {
+        if (attempt.finished || attempt.future.isDone() || done || attempts >= policy.maxAttempts()) {
+            return;
+        }
+        RoutingDecision next = route();
+        if (next != null) {
+            launch(next.backend(), next.reservation(), null);
+        }
+    }
+
+    private void fail(Attempt attempt) {
+        routingPlanner.recordConnectResult(attempt.backend, false);
+        release(attempt.reservation);
+        if (!inFlight.isEmpty()) {
+            return;
+        }
+        RoutingDecision next = attempts < policy.maxAttempts() ? route() : null;
+        if (next == null) {
+            done = true;
+            listener.failed();
+            return;
+        }
+        launch(next.backend(), next.reservation(), null);
+    }
+
+    private RoutingDecision route() {
+        RoutingDecision decision = routingPlanner.decide(request);
+        if (decision.backend() == null) {
+            return null;
+        }
+        if (decision.dataPath() != DataPath.FULL_PROXY) {
+            release(decision.reservation());
+            return null;
+        }
+        return decision;
+    }
+
+    private void abandon(Attempt attempt) {
+        attempt.finish();
+        discard(attempt.future);
+        release(attempt.reservation);
+    }
+
+    private void runOnExecutor(Runnable task) {
+        if (executor.inEventLoop()) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    private static void discard(Future<BackendConnection> future) {
+        if (future.cancel(false)) {
+            return;
+        }
+        future.addListener(completed -> {
+            if (completed.isSuccess()) {
+                ((BackendConnection) completed.getNow()).close();
+            }
+        });
+    }
+
+    private static void release(BackendReservation reservation) {
+        if (reservation != null) {
+            reservation.release();
+        }
+    }
+
+    private static final class Attempt {
+        private final BackendTarget backend;
+        private final BackendReservation reservation;
+        private final Future<BackendConnection> future;
+        private final long startNanos;
+        private ScheduledFuture<?> timeout;
+        private ScheduledFuture<?> hedge;
+        private boolean finished;
+
+        private Attempt(BackendTarget backend,
+                        BackendReservation reservation,
+                        Future<BackendConnection> future,
+                        long startNanos) {
+            this.backend = backend;
+            this.reservation = reservation;
+            this.future = future;
+            this.startNanos = startNanos;
+        }
+
+        private void finish() {
+            finished = true;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (hedge != null) {
+                hedge.cancel(false);
+            }
+        }
+    }
+}
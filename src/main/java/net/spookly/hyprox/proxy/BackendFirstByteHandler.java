@@ -0,0 +1,26 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.Objects;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * Records time-to-first-backend-byte for a session and removes itself after the first read.
+ */
+public final class BackendFirstByteHandler extends ChannelInboundHandlerAdapter {
+    private final ProxyDataPathMetrics metrics;
+    private final long connectStartNanos;
+
+    public BackendFirstByteHandler(ProxyDataPathMetrics metrics, long connectStartNanos) {
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.connectStartNanos = connectStartNanos;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        metrics.recordBackendFirstByteLatencyNanos(System.nanoTime() - connectStartNanos);
+        ctx.pipeline().remove(this);
+        ctx.fireChannelRead(msg);
+    }
+}
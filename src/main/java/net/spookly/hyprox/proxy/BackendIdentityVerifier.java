@@ -31,6 +31,30 @@ public final class BackendIdentityVerifier {
         return verifyCertificate(certificate, backendHost, allowlist);
     }
 
+    /**
+     * Verify like {@link #verify(QuicChannel, String, List)}, accepting certificates whose fingerprint is
+     * already in {@code cache} for this host without re-checking SANs. Successful checks are cached.
+     */
+    public static VerificationResult verify(QuicChannel channel,
+                                            String backendHost,
+                                            List<String> allowlist,
+                                            VerifiedIdentityCache cache) {
+        Objects.requireNonNull(channel, "channel");
+        X509Certificate certificate = extractCertificate(channel);
+        if (certificate == null) {
+            return VerificationResult.failed("backend certificate missing");
+        }
+        String fingerprint = cache == null ? null : VerifiedIdentityCache.fingerprint(certificate);
+        if (fingerprint != null && cache.contains(backendHost, fingerprint)) {
+            return VerificationResult.success();
+        }
+        VerificationResult result = verifyCertificate(certificate, backendHost, allowlist);
+        if (result.isOk() && fingerprint != null) {
+            cache.add(backendHost, fingerprint);
+        }
+        return result;
+    }
+
     public static VerificationResult verifyCertificate(X509Certificate certificate,
                                                        String backendHost,
                                                        List<String> allowlist) {
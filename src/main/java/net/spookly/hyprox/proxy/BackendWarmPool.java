@@ -0,0 +1,304 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.quic.QuicChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
+import net.spookly.hyprox.config.HyproxConfig;
+import net.spookly.hyprox.routing.BackendTarget;
+
+/**
+ * Keeps a small number of handshaken, identity-verified QUIC connections open per backend so a new
+ * session only has to open a stream.
+ * <p>
+ * The pool size per backend follows the recent connect rate: a maintenance task smooths the number of
+ * connects per interval and keeps roughly {@code targetSeconds} worth of demand warm, capped at
+ * {@code maxPerBackend}. Backends that drain or lose health are evicted on the next tick.
+ * <p>
+ * Demand and idle connections are tracked per event loop. A take that asks for a specific loop (client
+ * affinity) records demand on that loop, and the refill opens connections on it, so warm connections are
+ * not spread over loops that never ask for them. When the per-loop targets exceed {@code maxPerBackend},
+ * the busiest loops are served first.
+ */
+public final class BackendWarmPool {
+    public static final int DEFAULT_MAX_PER_BACKEND = 4;
+    public static final int DEFAULT_TARGET_SECONDS = 2;
+    public static final int DEFAULT_REFILL_INTERVAL_MS = 1000;
+    private static final double RATE_ALPHA = 0.3;
+    private static final double IDLE_RATE = 0.01;
+    private static final Object ANY_LOOP = new Object();
+
+    /**
+     * Opens a verified QUIC connection to a backend on the given event loop.
+     */
+    @FunctionalInterface
+    public interface Connector {
+        Future<QuicChannel> connect(BackendTarget backend, EventLoop eventLoop);
+    }
+
+    private final EventLoopGroup group;
+    private final Connector connector;
+    private final Predicate<BackendTarget> eligibility;
+    private final int maxPerBackend;
+    private final int targetSeconds;
+    private final long refillIntervalMs;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile ScheduledFuture<?> maintenance;
+    private volatile boolean closed;
+
+    public BackendWarmPool(EventLoopGroup group,
+                           Connector connector,
+                           Predicate<BackendTarget> eligibility,
+                           int maxPerBackend,
+                           int targetSeconds,
+                           long refillIntervalMs) {
+        this.group = Objects.requireNonNull(group, "group");
+        this.connector = Objects.requireNonNull(connector, "connector");
+        this.eligibility = Objects.requireNonNull(eligibility, "eligibility");
+        if (maxPerBackend <= 0) {
+            throw new IllegalArgumentException("maxPerBackend must be greater than 0");
+        }
+        if (targetSeconds <= 0) {
+            throw new IllegalArgumentException("targetSeconds must be greater than 0");
+        }
+        if (refillIntervalMs <= 0) {
+            throw new IllegalArgumentException("refillIntervalMs must be greater than 0");
+        }
+        this.maxPerBackend = maxPerBackend;
+        this.targetSeconds = targetSeconds;
+        this.refillIntervalMs = refillIntervalMs;
+    }
+
+    /**
+     * Build a warm pool from {@code proxy.warmPool}, or return null when it is disabled.
+     */
+    public static BackendWarmPool fromConfig(HyproxConfig config,
+                                             EventLoopGroup group,
+                                             Connector connector,
+                                             Predicate<BackendTarget> eligibility) {
+        HyproxConfig.WarmPoolConfig warmPool = config == null || config.proxy == null ? null : config.proxy.warmPool;
+        if (warmPool == null || !Boolean.TRUE.equals(warmPool.enabled)) {
+            return null;
+        }
+        return new BackendWarmPool(
+                group,
+                connector,
+                eligibility,
+                warmPool.maxPerBackend == null ? DEFAULT_MAX_PER_BACKEND : warmPool.maxPerBackend,
+                warmPool.targetSeconds == null ? DEFAULT_TARGET_SECONDS : warmPool.targetSeconds,
+                warmPool.refillIntervalMs == null ? DEFAULT_REFILL_INTERVAL_MS : warmPool.refillIntervalMs
+        );
+    }
+
+    /**
+     * Start the periodic refill and eviction task.
+     */
+    public void start() {
+        if (maintenance != null || closed) {
+            return;
+        }
+        maintenance = group.next().scheduleAtFixedRate(
+                this::maintain, refillIntervalMs, refillIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take a warm connection for a backend and record the connect demand. When {@code eventLoop} is
+     * non-null only connections served by that loop are returned, and the demand is recorded for that loop.
+     * Returns null when none is available.
+     */
+    public QuicChannel take(BackendTarget backend, EventLoop eventLoop) {
+        Objects.requireNonNull(backend, "backend");
+        if (closed) {
+            return null;
+        }
+        Entry entry = entries.computeIfAbsent(key(backend), key -> new Entry(backend));
+        entry.backend = backend;
+        Slot slot = entry.slot(eventLoop);
+        slot.demand.increment();
+        QuicChannel channel = poll(slot, null);
+        if (channel == null && eventLoop != null) {
+            Slot shared = entry.slots.get(ANY_LOOP);
+            channel = shared == null ? null : poll(shared, eventLoop);
+        }
+        return channel;
+    }
+
+    private static QuicChannel poll(Slot slot, EventLoop eventLoop) {
+        Iterator<QuicChannel> iterator = slot.idle.iterator();
+        while (iterator.hasNext()) {
+            QuicChannel channel = iterator.next();
+            if (!channel.isActive()) {
+                slot.idle.remove(channel);
+                continue;
+            }
+            if (eventLoop != null && channel.eventLoop() != eventLoop) {
+                continue;
+            }
+            if (slot.idle.remove(channel)) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Number of idle warm connections currently held for a backend.
+     */
+    public int idleCount(BackendTarget backend) {
+        Entry entry = entries.get(key(backend));
+        if (entry == null) {
+            return 0;
+        }
+        int idle = 0;
+        for (Slot slot : entry.slots.values()) {
+            idle += slot.idle.size();
+        }
+        return idle;
+    }
+
+    /**
+     * Stop maintenance and close every idle connection.
+     */
+    public void close() {
+        closed = true;
+        ScheduledFuture<?> task = maintenance;
+        if (task != null) {
+            task.cancel(false);
+        }
+        for (Entry entry : entries.values()) {
+            evict(entry);
+        }
+        entries.clear();
+    }
+
+    void maintain() {
+        if (closed) {
+            return;
+        }
+        double intervalSeconds = refillIntervalMs / 1000.0;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            List<Slot> slots = new ArrayList<>(entry.slots.values());
+            for (Slot slot : slots) {
+                double observed = slot.demand.sumThenReset() / intervalSeconds;
+                slot.rate = RATE_ALPHA * observed + (1 - RATE_ALPHA) * slot.rate;
+            }
+            if (!eligibility.test(entry.backend)) {
+                evict(entry);
+                iterator.remove();
+                continue;
+            }
+            slots.sort(Comparator.comparingDouble((Slot slot) -> slot.rate).reversed());
+            int remaining = maxPerBackend;
+            for (Slot slot : slots) {
+                int target = Math.min(remaining, targetSize(slot.rate));
+                remaining -= target;
+                if (target == 0 && slot.idle.isEmpty() && slot.pending.get() == 0) {
+                    entry.slots.remove(slot.key, slot);
+                    continue;
+                }
+                trim(slot, target);
+                refill(entry, slot, target);
+            }
+            if (entry.slots.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    int targetSize(double connectsPerSecond) {
+        if (connectsPerSecond < IDLE_RATE) {
+            return 0;
+        }
+        return (int) Math.min(maxPerBackend, Math.ceil(connectsPerSecond * targetSeconds));
+    }
+
+    private void trim(Slot slot, int target) {
+        while (slot.idle.size() > target) {
+            QuicChannel channel = slot.idle.pollLast();
+            if (channel == null) {
+                return;
+            }
+            channel.close();
+        }
+    }
+
+    private void refill(Entry entry, Slot slot, int target) {
+        int missing = target - slot.idle.size() - slot.pending.get();
+        for (int i = 0; i < missing; i++) {
+            slot.pending.incrementAndGet();
+            BackendTarget backend = entry.backend;
+            EventLoop eventLoop = slot.key instanceof EventLoop loop ? loop : group.next();
+            connector.connect(backend, eventLoop).addListener(future -> {
+                slot.pending.decrementAndGet();
+                if (!future.isSuccess()) {
+                    return;
+                }
+                QuicChannel channel = (QuicChannel) future.getNow();
+                if (closed || entries.get(key(backend)) != entry || entry.slots.get(slot.key) != slot
+                        || !channel.isActive()) {
+                    channel.close();
+                    return;
+                }
+                slot.idle.offerLast(channel);
+                channel.closeFuture().addListener(closeFuture -> slot.idle.remove(channel));
+            });
+        }
+    }
+
+    private static void evict(Entry entry) {
+        for (Slot slot : entry.slots.values()) {
+            QuicChannel channel;
+            while ((channel = slot.idle.pollFirst()) != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private static String key(BackendTarget backend) {
+        return backend.id() + "@" + backend.host() + ":" + backend.port();
+    }
+
+    private static final class Entry {
+        private final Map<Object, Slot> slots = new ConcurrentHashMap<>();
+        private volatile BackendTarget backend;
+
+        private Entry(BackendTarget backend) {
+            this.backend = backend;
+        }
+
+        private Slot slot(EventLoop eventLoop) {
+            return slots.computeIfAbsent(eventLoop == null ? ANY_LOOP : eventLoop, Slot::new);
+        }
+    }
+
+    /**
+     * Demand and idle connections of one backend on one event loop, or on any loop for takes without one.
+     */
+    private static final class Slot {
+        private final Object key;
+        private final ConcurrentLinkedDeque<QuicChannel> idle = new ConcurrentLinkedDeque<>();
+        private final LongAdder demand = new LongAdder();
+        private final AtomicInteger pending = new AtomicInteger();
+        private double rate;
+
+        private Slot(Object key) {
+            this.key = key;
+        }
+    }
+}
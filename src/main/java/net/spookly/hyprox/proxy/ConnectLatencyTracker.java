@@ -0,0 +1,63 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Window of recent successful backend connect latencies used to pick the hedging delay.
+ * <p>
+ * Samples go into a fixed ring without locking. Percentiles are computed from a sorted copy of the ring and
+ * cached until enough new samples arrive, so the per-session cost is a couple of volatile reads.
+ */
+public final class ConnectLatencyTracker {
+    static final int WINDOW = 256;
+    static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final AtomicLongArray samples = new AtomicLongArray(WINDOW);
+    private final AtomicLong recorded = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(0, new long[0]);
+
+    public void record(long latencyNanos) {
+        if (latencyNanos < 0) {
+            return;
+        }
+        long index = recorded.getAndIncrement();
+        samples.set((int) (index % WINDOW), latencyNanos);
+    }
+
+    /**
+     * Latency at {@code percentile} (1-99) of the recent window, or -1 until {@link #MIN_SAMPLES} connects
+     * have been recorded.
+     */
+    public long percentileNanos(int percentile) {
+        long count = recorded.get();
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        Snapshot current = snapshot;
+        if (count - current.recorded >= RECOMPUTE_EVERY || current.sorted.length == 0) {
+            int size = (int) Math.min(count, WINDOW);
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            current = new Snapshot(count, sorted);
+            snapshot = current;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * current.sorted.length) - 1;
+        return current.sorted[Math.max(0, Math.min(rank, current.sorted.length - 1))];
+    }
+
+    private static final class Snapshot {
+        private final long recorded;
+        private final long[] sorted;
+
+        private Snapshot(long recorded, long[] sorted) {
+            this.recorded = recorded;
+            this.sorted = sorted;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package net.spookly.hyprox.proxy;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import net.spookly.hyprox.config.HyproxConfig;
+
+/**
+ * Bounds how often a session may try another backend when its backend connect fails or stalls.
+ * <p>
+ * Each attempt gets {@code attemptTimeoutMs}. With {@code hedge} enabled, a second candidate is raced once
+ * the first connect has been pending longer than {@code hedgePercentile} of recent connects (and at least
+ * {@code hedgeMinDelayMs}). Hedged attempts count against {@code maxAttempts}.
+ */
+@Getter
+@Accessors(fluent = true)
+public final class ConnectRetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 2;
+    public static final int DEFAULT_ATTEMPT_TIMEOUT_MS = 5000;
+    public static final int DEFAULT_HEDGE_PERCENTILE = 95;
+    public static final int DEFAULT_HEDGE_MIN_DELAY_MS = 20;
+    public static final ConnectRetryPolicy DEFAULT = new ConnectRetryPolicy(
+            DEFAULT_MAX_ATTEMPTS, DEFAULT_ATTEMPT_TIMEOUT_MS, false, DEFAULT_HEDGE_PERCENTILE, DEFAULT_HEDGE_MIN_DELAY_MS);
+
+    private final int maxAttempts;
+    private final int attemptTimeoutMs;
+    private final boolean hedge;
+    private final int hedgePercentile;
+    private final int hedgeMinDelayMs;
+
+    public ConnectRetryPolicy(int maxAttempts,
+                              int attemptTimeoutMs,
+                              boolean hedge,
+                              int hedgePercentile,
+                              int hedgeMinDelayMs) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be greater than 0");
+        }
+        if (attemptTimeoutMs <= 0) {
+            throw new IllegalArgumentException("attemptTimeoutMs must be greater than 0");
+        }
+        if (hedgePercentile < 1 || hedgePercentile > 99) {
+            throw new IllegalArgumentException("hedgePercentile must be between 1 and 99");
+        }
+        if (hedgeMinDelayMs < 0) {
+            throw new IllegalArgumentException("hedgeMinDelayMs must not be negative");
+        }
+        this.maxAttempts = maxAttempts;
+        this.attemptTimeoutMs = attemptTimeoutMs;
+        this.hedge = hedge;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinDelayMs = hedgeMinDelayMs;
+    }
+
+    public static ConnectRetryPolicy fromConfig(HyproxConfig config) {
+        HyproxConfig.ConnectRetryConfig retry = config.proxy == null ? null : config.proxy.connectRetry;
+        if (retry == null) {
+            return DEFAULT;
+        }
+        return new ConnectRetryPolicy(
+                retry.maxAttempts == null ? DEFAULT_MAX_ATTEMPTS : retry.maxAttempts,
+                retry.attemptTimeoutMs == null ? DEFAULT_ATTEMPT_TIMEOUT_MS : retry.attemptTimeoutMs,
+                Boolean.TRUE.equals(retry.hedge),
+                retry.hedgePercentile == null ? DEFAULT_HEDGE_PERCENTILE : retry.hedgePercentile,
+                retry.hedgeMinDelayMs == null ? DEFAULT_HEDGE_MIN_DELAY_MS : retry.hedgeMinDelayMs
+        );
+    }
+}
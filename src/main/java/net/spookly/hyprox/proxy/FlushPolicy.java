@@ -0,0 +1,49 @@
+package net.spookly.hyprox.proxy;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import net.spookly.hyprox.config.HyproxConfig;
+
+/**
+ * Controls how forwarded writes are consolidated into flushes.
+ * <p>
+ * With {@code maxDelayMs} 0 (the default) writes are flushed at the end of every read burst. A positive
+ * {@code maxDelayMs} holds pending writes across read bursts until the oldest has waited that long. Either way a
+ * flush is issued as soon as {@code maxBytes} are pending.
+ * <p>
+ * Passthrough frames count their readable bytes. Decoded packets count their encoded size, taken from the
+ * outbound channel's buffer after the write; when that channel runs on another event loop only Netty's size
+ * estimate is known at write time.
+ */
+@Getter
+@Accessors(fluent = true)
+public final class FlushPolicy {
+    public static final int DEFAULT_MAX_BYTES = 64 * 1024;
+    public static final int DEFAULT_MAX_DELAY_MS = 0;
+    public static final FlushPolicy DEFAULT = new FlushPolicy(DEFAULT_MAX_BYTES, DEFAULT_MAX_DELAY_MS);
+
+    private final int maxBytes;
+    private final int maxDelayMs;
+
+    public FlushPolicy(int maxBytes, int maxDelayMs) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be greater than 0");
+        }
+        if (maxDelayMs < 0) {
+            throw new IllegalArgumentException("maxDelayMs must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    public static FlushPolicy fromConfig(HyproxConfig config) {
+        HyproxConfig.ForwardingConfig forwarding = config.proxy == null ? null : config.proxy.forwarding;
+        if (forwarding == null || (forwarding.flushMaxBytes == null && forwarding.flushMaxDelayMs == null)) {
+            return DEFAULT;
+        }
+        return new FlushPolicy(
+                forwarding.flushMaxBytes == null ? DEFAULT_MAX_BYTES : forwarding.flushMaxBytes,
+                forwarding.flushMaxDelayMs == null ? DEFAULT_MAX_DELAY_MS : forwarding.flushMaxDelayMs
+        );
+    }
+}
@@ -0,0 +1,27 @@
+package net.spookly.hyprox.proxy;
+
+/**
+ * Packet handling mode for the full proxy data path.
+ */
+public enum ForwardingMode {
+    DECODE("decode"),
+    PASSTHROUGH("passthrough");
+
+    private final String configValue;
+
+    ForwardingMode(String configValue) {
+        this.configValue = configValue;
+    }
+
+    public static ForwardingMode fromConfig(String value) {
+        if (value == null) {
+            return DECODE;
+        }
+        for (ForwardingMode mode : values()) {
+            if (mode.configValue.equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        return DECODE;
+    }
+}
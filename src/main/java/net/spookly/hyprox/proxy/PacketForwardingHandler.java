@@ -1,26 +1,42 @@
 package net.spookly.hyprox.proxy;
 
 import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.hypixel.hytale.protocol.Packet;
 import com.hypixel.hytale.protocol.packets.auth.AuthToken;
 import com.hypixel.hytale.protocol.packets.auth.ServerAuthToken;
 import com.hypixel.hytale.protocol.packets.connection.Disconnect;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.util.ReferenceCountUtil;
 
 /**
- * Forwards decoded packets between paired streams.
+ * Forwards decoded packets and passthrough frames between paired streams.
+ * <p>
+ * Packets read in one burst are written without flushing. With no flush delay configured they are flushed
+ * together on read complete; with a delay, pending writes are held across bursts until the delay expires. Either
+ * way the {@link FlushPolicy} byte limit flushes early. Pending bytes are read from the outbound stream's
+ * {@link UnflushedBytesHandler} when it has one, so decoded packets count at their encoded size; otherwise only
+ * passthrough frames are counted.
  */
-public final class PacketForwardingHandler extends SimpleChannelInboundHandler<Packet> {
+public final class PacketForwardingHandler extends SimpleChannelInboundHandler<Object> {
     private final Channel outboundChannel;
     private final ProxyBridgeSession session;
     private final ProxyDataPathMetrics metrics;
     private final ForwardDirection direction;
     private final ProxyAuthSession authSession;
     private final boolean captureTokens;
+    private final FlushPolicy flushPolicy;
+    private final ChannelFutureListener closeOnFailure;
+    private final UnflushedBytesHandler outboundBytes;
+    private int pendingWrites;
+    private long pendingBytes;
+    private ScheduledFuture<?> flushTimeout;
 
     public PacketForwardingHandler(Channel outboundChannel,
                                    ProxyBridgeSession session,
@@ -28,36 +44,74 @@ public final class PacketForwardingHandler extends SimpleChannelInboundHandler<P
                                    ForwardDirection direction,
                                    ProxyAuthSession authSession,
                                    boolean captureTokens) {
+        this(outboundChannel, session, metrics, direction, authSession, captureTokens, FlushPolicy.DEFAULT);
+    }
+
+    public PacketForwardingHandler(Channel outboundChannel,
+                                   ProxyBridgeSession session,
+                                   ProxyDataPathMetrics metrics,
+                                   ForwardDirection direction,
+                                   ProxyAuthSession authSession,
+                                   boolean captureTokens,
+                                   FlushPolicy flushPolicy) {
         this.outboundChannel = Objects.requireNonNull(outboundChannel, "outboundChannel");
         this.session = Objects.requireNonNull(session, "session");
         this.metrics = Objects.requireNonNull(metrics, "metrics");
         this.direction = Objects.requireNonNull(direction, "direction");
         this.authSession = authSession;
         this.captureTokens = captureTokens;
+        this.flushPolicy = Objects.requireNonNull(flushPolicy, "flushPolicy");
+        this.outboundBytes = outboundChannel.pipeline().get(UnflushedBytesHandler.class);
+        this.closeOnFailure = future -> {
+            if (!future.isSuccess()) {
+                session.close();
+            }
+        };
     }
 
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, Packet msg) {
+    public boolean acceptInboundMessage(Object msg) {
+        return msg instanceof Packet || msg instanceof PacketFrame;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
         if (!outboundChannel.isActive()) {
             session.close();
             return;
         }
-        captureAuthPacket(msg);
-        if (msg instanceof Disconnect) {
-            forwardDisconnect(msg);
+        if (msg instanceof PacketFrame frame) {
+            forwardFrame(ctx, frame);
+            return;
+        }
+        Packet packet = (Packet) msg;
+        captureAuthPacket(packet);
+        if (packet instanceof Disconnect) {
+            forwardDisconnect(packet);
             return;
         }
         recordPacket();
-        ReferenceCountUtil.retain(msg);
-        outboundChannel.writeAndFlush(msg).addListener(future -> {
-            if (!future.isSuccess()) {
-                session.close();
-            }
-        });
+        ReferenceCountUtil.retain(packet);
+        // Encoded size is only known to the outbound stream's UnflushedBytesHandler.
+        write(ctx, packet, 0);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        if (flushPolicy.maxDelayMs() == 0) {
+            flushPending();
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        cancelFlushTimeout();
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
+        cancelFlushTimeout();
         session.close();
     }
 
@@ -66,9 +120,60 @@ public final class PacketForwardingHandler extends SimpleChannelInboundHandler<P
         session.close();
     }
 
+    private void forwardFrame(ChannelHandlerContext ctx, PacketFrame frame) {
+        ByteBuf content = frame.content().retain();
+        if (frame.packetId() == Disconnect.PACKET_ID) {
+            outboundChannel.write(content).addListener(future -> session.close());
+            flushNow();
+            return;
+        }
+        recordPacket();
+        write(ctx, content, content.readableBytes());
+    }
+
     private void forwardDisconnect(Packet disconnect) {
         ReferenceCountUtil.retain(disconnect);
-        outboundChannel.writeAndFlush(disconnect).addListener(future -> session.close());
+        outboundChannel.write(disconnect).addListener(future -> session.close());
+        flushNow();
+    }
+
+    private void write(ChannelHandlerContext ctx, Object msg, int bytes) {
+        outboundChannel.write(msg).addListener(closeOnFailure);
+        pendingWrites++;
+        pendingBytes += bytes;
+        if (unflushedBytes() >= flushPolicy.maxBytes()) {
+            flushPending();
+            return;
+        }
+        if (flushTimeout == null && flushPolicy.maxDelayMs() > 0) {
+            flushTimeout = ctx.executor().schedule(this::flushPending, flushPolicy.maxDelayMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushPending() {
+        if (pendingWrites > 0) {
+            flushNow();
+        } else {
+            cancelFlushTimeout();
+        }
+    }
+
+    private void flushNow() {
+        cancelFlushTimeout();
+        pendingWrites = 0;
+        pendingBytes = 0;
+        outboundChannel.flush();
+    }
+
+    private long unflushedBytes() {
+        return outboundBytes != null ? outboundBytes.unflushedBytes() : pendingBytes;
+    }
+
+    private void cancelFlushTimeout() {
+        if (flushTimeout != null) {
+            flushTimeout.cancel(false);
+            flushTimeout = null;
+        }
     }
 
     private void recordPacket() {
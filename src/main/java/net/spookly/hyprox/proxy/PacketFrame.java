@@ -0,0 +1,40 @@
+package net.spookly.hyprox.proxy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+
+/**
+ * Raw length-prefixed packet frame relayed without decoding the payload.
+ * <p>
+ * The content holds the full frame including the 8-byte header, so it can be written to the
+ * paired stream as-is.
+ */
+public final class PacketFrame extends DefaultByteBufHolder {
+    private final int packetId;
+
+    public PacketFrame(int packetId, ByteBuf frame) {
+        super(frame);
+        this.packetId = packetId;
+    }
+
+    public int packetId() {
+        return packetId;
+    }
+
+    @Override
+    public PacketFrame replace(ByteBuf content) {
+        return new PacketFrame(packetId, content);
+    }
+
+    @Override
+    public PacketFrame retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public PacketFrame touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+}
@@ -0,0 +1,92 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.List;
+
+import com.hypixel.hytale.protocol.packets.auth.AuthGrant;
+import com.hypixel.hytale.protocol.packets.auth.AuthToken;
+import com.hypixel.hytale.protocol.packets.auth.ServerAuthToken;
+import com.hypixel.hytale.protocol.packets.connection.Connect;
+import com.hypixel.hytale.protocol.packets.connection.Disconnect;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import net.spookly.hyprox.config.HyproxConfig;
+
+/**
+ * Splits a stream into length-prefixed packet frames and stops decoding once the handshake is over.
+ * <p>
+ * Handshake and auth frames are emitted as plain {@link ByteBuf}s so the {@code PacketDecoder} behind
+ * this handler still turns them into packets. The first frame with any other packet id switches the
+ * stream to passthrough, after which every frame is emitted as a {@link PacketFrame} that the decoder
+ * forwards untouched. Only the 8-byte header is read in passthrough mode.
+ */
+public final class PacketFrameDecoder extends ByteToMessageDecoder {
+    static final int HEADER_BYTES = 8;
+    public static final int DEFAULT_MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private final int maxFrameBytes;
+    private boolean passthrough;
+
+    public PacketFrameDecoder(int maxFrameBytes) {
+        if (maxFrameBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("maxFrameBytes must be greater than " + HEADER_BYTES);
+        }
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /**
+     * Returns true when the config enables frame-level passthrough for full proxy sessions.
+     */
+    public static boolean enabled(HyproxConfig config) {
+        return config.proxy != null
+                && config.proxy.forwarding != null
+                && ForwardingMode.fromConfig(config.proxy.forwarding.mode) == ForwardingMode.PASSTHROUGH;
+    }
+
+    public static PacketFrameDecoder fromConfig(HyproxConfig config) {
+        Integer maxFrameBytes = config.proxy == null || config.proxy.forwarding == null
+                ? null
+                : config.proxy.forwarding.maxFrameBytes;
+        return new PacketFrameDecoder(maxFrameBytes == null ? DEFAULT_MAX_FRAME_BYTES : maxFrameBytes);
+    }
+
+    public boolean passthrough() {
+        return passthrough;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        while (in.readableBytes() >= HEADER_BYTES) {
+            int readerIndex = in.readerIndex();
+            int payloadLength = in.getIntLE(readerIndex);
+            if (payloadLength < 0) {
+                in.skipBytes(in.readableBytes());
+                throw new CorruptedFrameException("negative packet length: " + payloadLength);
+            }
+            if (payloadLength > maxFrameBytes - HEADER_BYTES) {
+                in.skipBytes(in.readableBytes());
+                throw new TooLongFrameException("packet length exceeds " + maxFrameBytes + " bytes: " + payloadLength);
+            }
+            int frameLength = HEADER_BYTES + payloadLength;
+            if (in.readableBytes() < frameLength) {
+                return;
+            }
+            int packetId = in.getIntLE(readerIndex + 4);
+            if (!passthrough && !isHandshakePacket(packetId)) {
+                passthrough = true;
+            }
+            ByteBuf frame = in.readRetainedSlice(frameLength);
+            out.add(passthrough ? new PacketFrame(packetId, frame) : frame);
+        }
+    }
+
+    static boolean isHandshakePacket(int packetId) {
+        return packetId == Connect.PACKET_ID
+                || packetId == AuthGrant.PACKET_ID
+                || packetId == AuthToken.PACKET_ID
+                || packetId == ServerAuthToken.PACKET_ID
+                || packetId == Disconnect.PACKET_ID;
+    }
+}
@@ -0,0 +1,118 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.spookly.hyprox.config.HyproxConfig;
+
+/**
+ * Node-wide budget for client packets buffered while backend connects are in flight.
+ * <p>
+ * Reservations are lock-free compare-and-set loops on shared byte and packet counters, so sessions on every
+ * event loop draw from the same budget without contention on a lock. The counters double as gauges for the
+ * memory currently pinned by pre-connect buffering.
+ */
+public final class PendingBufferBudget {
+    public static final int DEFAULT_BYTES_PER_SESSION = 1024 * 1024;
+    public static final int DEFAULT_PACKETS_PER_SESSION = 1024;
+    public static final long DEFAULT_BYTES_TOTAL = 256L * 1024 * 1024;
+    public static final long DEFAULT_PACKETS_TOTAL = 262_144;
+
+    private final int bytesPerSession;
+    private final int packetsPerSession;
+    private final long bytesTotal;
+    private final long packetsTotal;
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicLong bufferedPackets = new AtomicLong();
+    private final LongAdder overflows = new LongAdder();
+
+    public PendingBufferBudget(int bytesPerSession, int packetsPerSession, long bytesTotal, long packetsTotal) {
+        if (bytesPerSession <= 0 || packetsPerSession <= 0 || bytesTotal <= 0 || packetsTotal <= 0) {
+            throw new IllegalArgumentException("pending buffer limits must be greater than 0");
+        }
+        this.bytesPerSession = bytesPerSession;
+        this.packetsPerSession = packetsPerSession;
+        this.bytesTotal = bytesTotal;
+        this.packetsTotal = packetsTotal;
+    }
+
+    /**
+     * Build the budget from the {@code proxy.limits.pending*} settings, falling back to defaults.
+     */
+    public static PendingBufferBudget fromConfig(HyproxConfig config) {
+        HyproxConfig.LimitsConfig limits = config == null || config.proxy == null ? null : config.proxy.limits;
+        if (limits == null) {
+            return new PendingBufferBudget(
+                    DEFAULT_BYTES_PER_SESSION, DEFAULT_PACKETS_PER_SESSION, DEFAULT_BYTES_TOTAL, DEFAULT_PACKETS_TOTAL);
+        }
+        return new PendingBufferBudget(
+                limits.pendingBytesPerSession == null ? DEFAULT_BYTES_PER_SESSION : limits.pendingBytesPerSession,
+                limits.pendingPacketsPerSession == null ? DEFAULT_PACKETS_PER_SESSION : limits.pendingPacketsPerSession,
+                limits.pendingBytesTotal == null ? DEFAULT_BYTES_TOTAL : limits.pendingBytesTotal,
+                limits.pendingPacketsTotal == null ? DEFAULT_PACKETS_TOTAL : limits.pendingPacketsTotal
+        );
+    }
+
+    public int bytesPerSession() {
+        return bytesPerSession;
+    }
+
+    public int packetsPerSession() {
+        return packetsPerSession;
+    }
+
+    /**
+     * Bytes currently buffered across all sessions.
+     */
+    public long bufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    /**
+     * Packets currently buffered across all sessions.
+     */
+    public long bufferedPackets() {
+        return bufferedPackets.get();
+    }
+
+    /**
+     * Number of sessions shed because a pending buffer cap was hit.
+     */
+    public long overflows() {
+        return overflows.sum();
+    }
+
+    boolean tryAcquireBytes(long bytes) {
+        return tryAcquire(bufferedBytes, bytesTotal, bytes);
+    }
+
+    boolean tryAcquirePacket() {
+        return tryAcquire(bufferedPackets, packetsTotal, 1);
+    }
+
+    void release(long bytes, long packets) {
+        if (bytes > 0) {
+            bufferedBytes.addAndGet(-bytes);
+        }
+        if (packets > 0) {
+            bufferedPackets.addAndGet(-packets);
+        }
+    }
+
+    void recordOverflow() {
+        overflows.increment();
+    }
+
+    private static boolean tryAcquire(AtomicLong counter, long limit, long amount) {
+        while (true) {
+            long current = counter.get();
+            long next = current + amount;
+            if (next > limit) {
+                return false;
+            }
+            if (counter.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Per-session queue of client packets received while the backend connect is in flight.
+ * <p>
+ * Bytes are charged as they arrive on the wire through {@link #meter(Runnable)}, which covers both decoded
+ * packets and raw frames as well as partial frames held by the decoder. Packets are charged as they are
+ * queued. Every charge is taken from the session cap and the shared {@link PendingBufferBudget}; when either
+ * is exhausted the charge fails and the caller sheds the session. Not thread-safe: use it from the client
+ * stream event loop only.
+ */
+final class PendingPacketBuffer {
+    static final String METER_NAME = "pendingBufferMeter";
+
+    private final PendingBufferBudget budget;
+    private final Deque<Object> pending = new ArrayDeque<>();
+    private long chargedBytes;
+    private long chargedPackets;
+
+    PendingPacketBuffer(PendingBufferBudget budget) {
+        this.budget = Objects.requireNonNull(budget, "budget");
+    }
+
+    /**
+     * Charge wire bytes to this session. Returns false when the session or node-wide byte cap is hit.
+     */
+    boolean chargeBytes(long bytes) {
+        if (bytes <= 0) {
+            return true;
+        }
+        if (chargedBytes + bytes > budget.bytesPerSession() || !budget.tryAcquireBytes(bytes)) {
+            return false;
+        }
+        chargedBytes += bytes;
+        return true;
+    }
+
+    /**
+     * Queue a retained packet or frame. Returns false, without queueing, when a packet cap is hit; the caller
+     * still owns the message in that case.
+     */
+    boolean offer(Object message) {
+        if (chargedPackets + 1 > budget.packetsPerSession() || !budget.tryAcquirePacket()) {
+            return false;
+        }
+        chargedPackets++;
+        pending.add(message);
+        return true;
+    }
+
+    Object poll() {
+        return pending.poll();
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    long chargedBytes() {
+        return chargedBytes;
+    }
+
+    long chargedPackets() {
+        return chargedPackets;
+    }
+
+    /**
+     * Release every queued message and return all charges to the shared budget.
+     */
+    void clear() {
+        Object message;
+        while ((message = pending.poll()) != null) {
+            ReferenceCountUtil.release(message);
+        }
+        budget.release(chargedBytes, chargedPackets);
+        chargedBytes = 0;
+        chargedPackets = 0;
+    }
+
+    void recordOverflow() {
+        budget.recordOverflow();
+    }
+
+    /**
+     * Handler for the head of the client stream pipeline that charges inbound bytes to this buffer and runs
+     * {@code onOverflow} once when a byte cap is hit.
+     */
+    ChannelInboundHandlerAdapter meter(Runnable onOverflow) {
+        return new Meter(onOverflow);
+    }
+
+    private final class Meter extends ChannelInboundHandlerAdapter {
+        private final Runnable onOverflow;
+        private boolean overflowed;
+
+        private Meter(Runnable onOverflow) {
+            this.onOverflow = Objects.requireNonNull(onOverflow, "onOverflow");
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (!overflowed && !chargeBytes(readableBytes(msg))) {
+                overflowed = true;
+                onOverflow.run();
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        private long readableBytes(Object msg) {
+            if (msg instanceof ByteBuf buf) {
+                return buf.readableBytes();
+            }
+            if (msg instanceof ByteBufHolder holder) {
+                return holder.content().readableBytes();
+            }
+            return 0;
+        }
+    }
+}
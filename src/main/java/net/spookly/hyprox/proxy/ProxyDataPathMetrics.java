@@ -11,6 +11,7 @@ public final class ProxyDataPathMetrics {
     private final AtomicLong clientToBackendBytes = new AtomicLong();
     private final AtomicLong backendToClientBytes = new AtomicLong();
     private final AtomicLong backendConnectLatencyNanos = new AtomicLong();
+    private final AtomicLong backendFirstByteLatencyNanos = new AtomicLong();
 
     public void recordClientToBackendPacket() {
         clientToBackendPackets.incrementAndGet();
@@ -38,6 +39,15 @@ public final class ProxyDataPathMetrics {
         }
     }
 
+    /**
+     * Time from starting the backend connect to the first byte read from the backend stream.
+     */
+    public void recordBackendFirstByteLatencyNanos(long latencyNanos) {
+        if (latencyNanos > 0) {
+            backendFirstByteLatencyNanos.compareAndSet(0, latencyNanos);
+        }
+    }
+
     public long clientToBackendPackets() {
         return clientToBackendPackets.get();
     }
@@ -57,4 +67,8 @@ public final class ProxyDataPathMetrics {
     public long backendConnectLatencyNanos() {
         return backendConnectLatencyNanos.get();
     }
+
+    public long backendFirstByteLatencyNanos() {
+        return backendFirstByteLatencyNanos.get();
+    }
 }
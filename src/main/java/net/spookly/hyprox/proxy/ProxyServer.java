@@ -2,7 +2,9 @@ package net.spookly.hyprox.proxy;
 
 import java.io.File;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
@@ -10,11 +12,15 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.handler.codec.quic.QuicChannelOption;
+import io.netty.handler.codec.quic.QuicCodecDispatcher;
+import io.netty.handler.codec.quic.QuicConnectionIdGenerator;
 import io.netty.handler.codec.quic.QuicServerCodecBuilder;
 import io.netty.handler.codec.quic.QuicSslContext;
 import io.netty.handler.codec.quic.QuicSslContextBuilder;
+import io.netty.handler.codec.quic.SegmentedDatagramPacketAllocator;
 import io.netty.handler.ssl.ClientAuth;
 import net.spookly.hyprox.auth.ReferralService;
 import net.spookly.hyprox.config.HyproxConfig;
@@ -24,14 +30,18 @@ import net.spookly.hyprox.routing.RoutingPlanner;
  * QUIC proxy listener that accepts client sessions and routes them to backends.
  */
 public final class ProxyServer {
+    private static final int DEFAULT_MAX_DATAGRAM_SIZE = 1350;
+    private static final int DATAGRAMS_PER_READ = 16;
+
     private final HyproxConfig config;
     private final RoutingPlanner routingPlanner;
     private final ProxySessionLimiter sessionLimiter;
+    private final PendingBufferBudget pendingBudget;
     private final ReferralService referralService;
     private EventLoopGroup workerGroup;
     private EventLoopGroup backendGroup;
     private BackendConnector backendConnector;
-    private Channel channel;
+    private final List<Channel> channels = new ArrayList<>();
 
     public ProxyServer(HyproxConfig config, RoutingPlanner routingPlanner, ReferralService referralService) {
         this.config = Objects.requireNonNull(config, "config");
@@ -43,62 +53,100 @@ public final class ProxyServer {
                 limits == null ? null : limits.concurrentPerIp,
                 null
         );
+        this.pendingBudget = PendingBufferBudget.fromConfig(config);
     }
 
     /**
      * Start the QUIC listener for incoming client connections.
+     * <p>
+     * With the native transport, one socket per event loop is bound to the listen port with SO_REUSEPORT
+     * and a {@link QuicCodecDispatcher} keeps each connection on the socket that owns it.
      */
     public void start() {
-        if (channel != null) {
+        if (!channels.isEmpty()) {
             return;
         }
         HyproxConfig.ProxyConfig proxy = config.proxy;
         HyproxConfig.QuicConfig quic = proxy.quic;
         QuicSslContext sslContext = buildSslContext(quic);
-        backendGroup = new NioEventLoopGroup();
-        backendConnector = new BackendConnector(config, backendGroup);
-        QuicServerCodecBuilder codecBuilder = new QuicServerCodecBuilder()
-                .sslContext(sslContext)
-                .streamHandler(new ProxyStreamInitializer(config, routingPlanner, sessionLimiter, referralService, backendConnector));
-
-        if (proxy.timeouts != null && proxy.timeouts.idleMs != null) {
-            codecBuilder.maxIdleTimeout(proxy.timeouts.idleMs, TimeUnit.MILLISECONDS);
-        }
-        if (quic.maxBidirectionalStreams != null && quic.maxBidirectionalStreams > 0) {
-            codecBuilder.initialMaxStreamsBidirectional(quic.maxBidirectionalStreams);
-        }
-        if (quic.maxUnidirectionalStreams != null && quic.maxUnidirectionalStreams > 0) {
-            codecBuilder.initialMaxStreamsUnidirectional(quic.maxUnidirectionalStreams);
-        }
-        if (quic.mtu != null && quic.mtu > 0) {
-            codecBuilder.maxRecvUdpPayloadSize(quic.mtu);
-            codecBuilder.maxSendUdpPayloadSize(quic.mtu);
+        ProxyTransport transport = ProxyTransport.fromConfig(config);
+        int listenerSockets = resolveListenerSockets(transport, proxy.transport);
+        workerGroup = transport.newEventLoopGroup(listenerSockets);
+        if (BackendAffinity.fromConfig(config) == BackendAffinity.CLIENT) {
+            backendConnector = new BackendConnector(config, workerGroup, transport);
+        } else {
+            backendGroup = transport.newEventLoopGroup(resolveBackendThreads(proxy.transport));
+            backendConnector = new BackendConnector(config, backendGroup, transport);
         }
+        backendConnector.enableWarmPool(routingPlanner::isServiceable);
+        ProxyStreamInitializer streamInitializer =
+                new ProxyStreamInitializer(
+                        config, routingPlanner, sessionLimiter, referralService, backendConnector, pendingBudget);
+        UdpOffload udpOffload = backendConnector.udpOffload();
 
-        workerGroup = new NioEventLoopGroup();
         Bootstrap bootstrap = new Bootstrap();
         bootstrap.group(workerGroup)
-                .channel(NioDatagramChannel.class)
-                .option(ChannelOption.SO_REUSEADDR, true)
-                .handler(codecBuilder.build());
+                .channel(transport.datagramChannelClass())
+                .option(ChannelOption.SO_REUSEADDR, true);
+        if (listenerSockets > 1) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true)
+                    .handler(new QuicCodecDispatcher() {
+                        @Override
+                        protected void initChannel(Channel channel,
+                                                   int localConnectionIdLength,
+                                                   QuicConnectionIdGenerator idGenerator) {
+                            channel.pipeline().addLast(buildServerCodec(sslContext, streamInitializer, udpOffload)
+                                    .localConnectionIdLength(localConnectionIdLength)
+                                    .connectionIdAddressGenerator(idGenerator)
+                                    .build());
+                        }
+                    });
+        } else {
+            bootstrap.handler(buildServerCodec(sslContext, streamInitializer, udpOffload).build());
+        }
+        if (udpOffload.gro()) {
+            udpOffload.applyReceive(bootstrap);
+        } else if (transport.isNative()) {
+            int maxDatagramSize = quic.mtu != null && quic.mtu > 0 ? quic.mtu : DEFAULT_MAX_DATAGRAM_SIZE;
+            bootstrap.option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, maxDatagramSize)
+                    .option(ChannelOption.RCVBUF_ALLOCATOR,
+                            new FixedRecvByteBufAllocator(maxDatagramSize * DATAGRAMS_PER_READ));
+        }
 
         InetSocketAddress address = new InetSocketAddress(proxy.listen.host, proxy.listen.port);
         try {
-            channel = bootstrap.bind(address).sync().channel();
+            for (int i = 0; i < listenerSockets; i++) {
+                Channel channel = bootstrap.bind(address).sync().channel();
+                if (!udpOffload.verifyReceive(channel)) {
+                    System.err.println("UDP GRO was not enabled by the kernel on " + address + ", reads stay unbatched.");
+                }
+                channels.add(channel);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new IllegalStateException("Proxy bind interrupted", e);
         }
-        System.out.println("Proxy listening on " + address.getHostString() + ":" + address.getPort());
+        System.out.println("Proxy listening on " + address.getHostString() + ":" + address.getPort()
+                + " (" + transport.name().toLowerCase(Locale.ROOT) + ", sockets=" + listenerSockets + ")");
+    }
+
+    /**
+     * Node-wide gauges for client data buffered while backend connects are in flight.
+     */
+    public PendingBufferBudget pendingBufferBudget() {
+        return pendingBudget;
     }
 
     /**
      * Stop the QUIC listener and event loops.
      */
     public void stop() {
-        if (channel != null) {
+        for (Channel channel : channels) {
             channel.close();
-            channel = null;
+        }
+        channels.clear();
+        if (backendConnector != null) {
+            backendConnector.close();
         }
         if (workerGroup != null) {
             workerGroup.shutdownGracefully();
@@ -111,6 +159,55 @@ public final class ProxyServer {
         backendConnector = null;
     }
 
+    private QuicServerCodecBuilder buildServerCodec(QuicSslContext sslContext,
+                                                    ProxyStreamInitializer streamInitializer,
+                                                    UdpOffload udpOffload) {
+        HyproxConfig.ProxyConfig proxy = config.proxy;
+        HyproxConfig.QuicConfig quic = proxy.quic;
+        QuicServerCodecBuilder codecBuilder = new QuicServerCodecBuilder()
+                .sslContext(sslContext)
+                .streamHandler(streamInitializer);
+        if (SpeculativeConnectHandler.enabled(config)) {
+            codecBuilder.handler(new SpeculativeConnectHandler(config, routingPlanner, sessionLimiter, backendConnector));
+        }
+
+        if (proxy.timeouts != null && proxy.timeouts.idleMs != null) {
+            codecBuilder.maxIdleTimeout(proxy.timeouts.idleMs, TimeUnit.MILLISECONDS);
+        }
+        if (quic.maxBidirectionalStreams != null && quic.maxBidirectionalStreams > 0) {
+            codecBuilder.initialMaxStreamsBidirectional(quic.maxBidirectionalStreams);
+        }
+        if (quic.maxUnidirectionalStreams != null && quic.maxUnidirectionalStreams > 0) {
+            codecBuilder.initialMaxStreamsUnidirectional(quic.maxUnidirectionalStreams);
+        }
+        if (quic.mtu != null && quic.mtu > 0) {
+            codecBuilder.maxRecvUdpPayloadSize(quic.mtu);
+            codecBuilder.maxSendUdpPayloadSize(quic.mtu);
+        }
+        SegmentedDatagramPacketAllocator segmentedAllocator = udpOffload.segmentedAllocator();
+        if (segmentedAllocator != null) {
+            codecBuilder.option(QuicChannelOption.SEGMENTED_DATAGRAM_PACKET_ALLOCATOR, segmentedAllocator);
+        }
+        return codecBuilder;
+    }
+
+    private int resolveListenerSockets(ProxyTransport transport, HyproxConfig.TransportConfig transportConfig) {
+        if (!transport.isNative()) {
+            return 1;
+        }
+        if (transportConfig != null && transportConfig.listenerSockets != null) {
+            return transportConfig.listenerSockets;
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private int resolveBackendThreads(HyproxConfig.TransportConfig transportConfig) {
+        if (transportConfig == null || transportConfig.backendThreads == null) {
+            return 0;
+        }
+        return transportConfig.backendThreads;
+    }
+
     private QuicSslContext buildSslContext(HyproxConfig.QuicConfig quic) {
         File certFile = new File(quic.cert);
         File keyFile = new File(quic.key);
@@ -1,8 +1,14 @@
 package net.spookly.hyprox.proxy;
 
 import java.security.MessageDigest;
+import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+
+import io.netty.handler.codec.quic.QuicChannel;
 import io.netty.util.AttributeKey;
 import lombok.Getter;
 import lombok.experimental.Accessors;
@@ -45,6 +51,47 @@ public final class ProxySessionContext {
         return new ProxySessionContext(remoteAddress, subject, fingerprint, certificate);
     }
 
+    /**
+     * Stable routing key: the client certificate fingerprint, else the remote address.
+     */
+    public String selectionKey() {
+        if (clientCertificateSha256 != null && !clientCertificateSha256.trim().isEmpty()) {
+            return clientCertificateSha256;
+        }
+        if (remoteAddress != null && !remoteAddress.trim().isEmpty()) {
+            return remoteAddress;
+        }
+        return null;
+    }
+
+    /**
+     * First X.509 certificate presented by the peer of a QUIC connection, if any.
+     */
+    public static X509Certificate peerCertificate(QuicChannel channel) {
+        SSLEngine sslEngine = channel == null ? null : channel.sslEngine();
+        if (sslEngine == null) {
+            return null;
+        }
+        SSLSession session = sslEngine.getSession();
+        if (session == null) {
+            return null;
+        }
+        try {
+            Certificate[] certificates = session.getPeerCertificates();
+            if (certificates == null) {
+                return null;
+            }
+            for (Certificate certificate : certificates) {
+                if (certificate instanceof X509Certificate) {
+                    return (X509Certificate) certificate;
+                }
+            }
+        } catch (SSLPeerUnverifiedException ignored) {
+            return null;
+        }
+        return null;
+    }
+
     private static String fingerprintSha256(X509Certificate certificate) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
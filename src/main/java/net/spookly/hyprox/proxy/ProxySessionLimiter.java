@@ -58,6 +58,17 @@ public final class ProxySessionLimiter {
         return true;
     }
 
+    /**
+     * Whether {@code ipAddress} is below its concurrent session cap, without opening a session.
+     */
+    public boolean hasSessionCapacity(String ipAddress) {
+        if (maxConcurrentSessions == null || ipAddress == null) {
+            return true;
+        }
+        AtomicInteger count = concurrentSessionsByIp.get(ipAddress);
+        return count == null || count.get() < maxConcurrentSessions;
+    }
+
     public void releaseSession(String ipAddress) {
         if (maxConcurrentSessions == null || ipAddress == null) {
             return;
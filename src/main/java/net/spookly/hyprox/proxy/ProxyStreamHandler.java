@@ -1,17 +1,12 @@
 package net.spookly.hyprox.proxy;
 
 import java.net.InetSocketAddress;
-import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 
-import javax.net.ssl.SSLEngine;
-import javax.net.ssl.SSLPeerUnverifiedException;
-import javax.net.ssl.SSLSession;
-
 import com.hypixel.hytale.protocol.HostAddress;
 import com.hypixel.hytale.protocol.Packet;
 import com.hypixel.hytale.protocol.io.netty.PacketDecoder;
@@ -54,6 +49,7 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
     private final ProxySessionLimiter sessionLimiter;
     private final ReferralService referralService;
     private final BackendConnector backendConnector;
+    private final PendingPacketBuffer pendingPackets;
     private boolean handled;
     private boolean sessionTracked;
     private String remoteAddress;
@@ -62,19 +58,31 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
     private ProxyDataPathMetrics dataPathMetrics;
     private boolean forwardingEnabled;
     private boolean bufferingEnabled;
-    private final Deque<Packet> pendingPackets = new ArrayDeque<>();
+    private boolean pendingOverflow;
     private ProxyAuthSession authSession;
+    private BackendFailover failover;
 
     public ProxyStreamHandler(HyproxConfig config,
                               RoutingPlanner routingPlanner,
                               ProxySessionLimiter sessionLimiter,
                               ReferralService referralService,
-                              BackendConnector backendConnector) {
+                              BackendConnector backendConnector,
+                              PendingBufferBudget pendingBudget) {
         this.config = Objects.requireNonNull(config, "config");
         this.routingPlanner = Objects.requireNonNull(routingPlanner, "routingPlanner");
         this.sessionLimiter = Objects.requireNonNull(sessionLimiter, "sessionLimiter");
         this.referralService = Objects.requireNonNull(referralService, "referralService");
         this.backendConnector = Objects.requireNonNull(backendConnector, "backendConnector");
+        this.pendingPackets = new PendingPacketBuffer(Objects.requireNonNull(pendingBudget, "pendingBudget"));
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof PacketFrame frame) {
+            handleFrame(ctx, frame);
+            return;
+        }
+        super.channelRead(ctx, msg);
     }
 
     @Override
@@ -84,7 +92,7 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
                 ReferenceCountUtil.retain(msg);
                 ctx.fireChannelRead(msg);
             } else if (bufferingEnabled) {
-                queuePendingPacket(msg);
+                queuePendingPacket(ctx.channel(), msg);
             }
             return;
         }
@@ -94,7 +102,9 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
         }
         handled = true;
         clearHandshakeTimeout(ctx);
-        if (remoteAddress != null && !sessionLimiter.tryAcquireHandshake(remoteAddress)) {
+        if (remoteAddress != null
+                && !SpeculativeConnectHandler.takeAdmittedHandshake(resolveContextChannel(ctx))
+                && !sessionLimiter.tryAcquireHandshake(remoteAddress)) {
             sendDisconnect(ctx, "rate limited", DisconnectType.Disconnect);
             return;
         }
@@ -106,22 +116,44 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
         if (authSession != null) {
             authSession.captureIdentityToken(connect.identityToken);
         }
-        RoutingDecision decision = routingPlanner.decide(toRequest(ctx, connect));
+        RoutingRequest request = toRequest(ctx, connect);
+        RoutingDecision decision = routingPlanner.decide(request);
         storeRoutingContext(ctx, decision);
         backendReservation = decision.reservation();
         BackendTarget backend = decision.backend();
+        if (backend == null || decision.dataPath() != DataPath.FULL_PROXY) {
+            SpeculativeConnectHandler.discard(resolveContextChannel(ctx));
+        }
         if (backend == null) {
             String reason = decision.reason() == null ? "no backend available" : "routing failed: " + decision.reason();
             sendDisconnect(ctx, reason, DisconnectType.Disconnect);
             return;
         }
         if (decision.dataPath() == DataPath.FULL_PROXY) {
-            startFullProxy(ctx, backend, connect);
+            startFullProxy(ctx, request, backend, connect);
             return;
         }
         sendReferral(ctx, backend, connect);
     }
 
+    private void handleFrame(ChannelHandlerContext ctx, PacketFrame frame) {
+        if (!handled) {
+            frame.release();
+            sendDisconnect(ctx, "unexpected packet", DisconnectType.Disconnect);
+            return;
+        }
+        if (forwardingEnabled) {
+            ctx.fireChannelRead(frame);
+        } else if (bufferingEnabled) {
+            if (!pendingPackets.offer(frame)) {
+                frame.release();
+                shedPendingSession(ctx.channel());
+            }
+        } else {
+            frame.release();
+        }
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         if (cause instanceof ReadTimeoutException) {
@@ -155,6 +187,7 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
         if (bridgeSession != null) {
             bridgeSession.close();
         }
+        cancelFailover();
         clearPendingPackets();
         clearAuthSession(ctx);
         releaseReservation();
@@ -175,7 +208,10 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
             targetBackendId = referralResult.targetBackendId();
         }
         String selectionKey = resolveSelectionKey(ctx);
-        return new RoutingRequest(clientType, referralSource, selectionKey, targetBackendId);
+        ProxySessionContext context = resolveSessionContext(ctx);
+        return new RoutingRequest(clientType, referralSource, selectionKey, targetBackendId)
+                .withClientDetails(connect.language, connect.username, connect.uuid,
+                        context == null ? null : context.clientCertificateSubject(), remoteAddress);
     }
 
     private String mapClientType(ClientType clientType) {
@@ -212,7 +248,7 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
         channel.writeAndFlush(disconnect).addListener(ProtocolUtil.CLOSE_ON_COMPLETE);
     }
 
-    private void startFullProxy(ChannelHandlerContext ctx, BackendTarget backend, Connect connect) {
+    private void startFullProxy(ChannelHandlerContext ctx, RoutingRequest request, BackendTarget backend, Connect connect) {
         if (backend.port() <= 0 || backend.port() > 65535) {
             releaseReservation();
             sendDisconnect(ctx, "invalid backend port", DisconnectType.Disconnect);
@@ -221,21 +257,43 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
         Channel clientChannel = ctx.channel();
         clientChannel.config().setAutoRead(false);
         bufferingEnabled = true;
+        clientChannel.pipeline().addFirst(
+                PendingPacketBuffer.METER_NAME, pendingPackets.meter(() -> shedPendingSession(clientChannel)));
         long startNanos = System.nanoTime();
-        Future<BackendConnection> future = backendConnector.connect(backend);
-        future.addListener(connectFuture -> {
-            Channel channel = ctx.channel();
-            if (!connectFuture.isSuccess()) {
-                channel.eventLoop().execute(() -> handleBackendConnectFailure(channel));
-                return;
-            }
-            BackendConnection connection = (BackendConnection) connectFuture.getNow();
-            long latencyNanos = System.nanoTime() - startNanos;
-            channel.eventLoop().execute(() -> attachFullProxy(ctx, connection, connect, latencyNanos));
-        });
+        boolean clientAffinity = BackendAffinity.fromConfig(config) == BackendAffinity.CLIENT;
+        failover = new BackendFailover(
+                routingPlanner,
+                ConnectRetryPolicy.fromConfig(config),
+                backendConnector.connectLatency(),
+                clientChannel.eventLoop(),
+                target -> clientAffinity
+                        ? backendConnector.connect(target, clientChannel.eventLoop())
+                        : backendConnector.connect(target),
+                new BackendFailover.Listener() {
+                    @Override
+                    public void connected(BackendConnection connection, BackendReservation reservation) {
+                        failover = null;
+                        backendReservation = reservation;
+                        attachFullProxy(ctx, connection, connect, startNanos, System.nanoTime() - startNanos);
+                    }
+
+                    @Override
+                    public void failed() {
+                        failover = null;
+                        handleBackendConnectFailure(clientChannel);
+                    }
+                });
+        BackendReservation reservation = backendReservation;
+        backendReservation = null;
+        failover.start(request, backend, reservation,
+                SpeculativeConnectHandler.claim(resolveContextChannel(ctx), backend));
     }
 
     private void handleBackendConnectFailure(Channel channel) {
+        removePendingMeter(channel);
+        if (pendingOverflow) {
+            return;
+        }
         if (!channel.isActive()) {
             bufferingEnabled = false;
             clearPendingPackets();
@@ -248,9 +306,14 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
         sendDisconnect(channel, "backend connection failed", DisconnectType.Disconnect);
     }
 
-    private void attachFullProxy(ChannelHandlerContext ctx, BackendConnection connection, Connect connect, long latencyNanos) {
+    private void attachFullProxy(ChannelHandlerContext ctx,
+                                 BackendConnection connection,
+                                 Connect connect,
+                                 long connectStartNanos,
+                                 long latencyNanos) {
         Channel clientChannel = ctx.channel();
-        if (!clientChannel.isActive()) {
+        removePendingMeter(clientChannel);
+        if (!clientChannel.isActive() || pendingOverflow) {
             bufferingEnabled = false;
             clearPendingPackets();
             connection.close();
@@ -263,7 +326,13 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
         forwardingEnabled = true;
         bufferingEnabled = false;
         addTrafficMetrics(clientChannel);
+        addUnflushedBytes(clientChannel);
+        addUnflushedBytes(connection.streamChannel());
         setupBackendPipeline(connection, clientChannel);
+        if (connection.streamChannel().pipeline().get("firstByteTimer") == null) {
+            connection.streamChannel().pipeline().addFirst(
+                    "firstByteTimer", new BackendFirstByteHandler(dataPathMetrics, connectStartNanos));
+        }
         addClientForwarder(ctx, connection);
         installBackpressure(clientChannel, connection.streamChannel());
         connection.streamChannel().writeAndFlush(connect).addListener(future -> {
@@ -284,8 +353,18 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
         }
     }
 
+    private void addUnflushedBytes(Channel channel) {
+        ChannelPipeline pipeline = channel.pipeline();
+        if (pipeline.get(UnflushedBytesHandler.NAME) == null) {
+            pipeline.addFirst(UnflushedBytesHandler.NAME, new UnflushedBytesHandler());
+        }
+    }
+
     private void setupBackendPipeline(BackendConnection connection, Channel clientChannel) {
         ChannelPipeline pipeline = connection.streamChannel().pipeline();
+        if (PacketFrameDecoder.enabled(config) && pipeline.get("packetFrameDecoder") == null) {
+            pipeline.addLast("packetFrameDecoder", PacketFrameDecoder.fromConfig(config));
+        }
         if (pipeline.get("packetDecoder") == null) {
             pipeline.addLast("packetDecoder", new PacketDecoder());
         }
@@ -302,7 +381,8 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
                     dataPathMetrics,
                     PacketForwardingHandler.ForwardDirection.BACKEND_TO_CLIENT,
                     authSession,
-                    isTerminateAuth()
+                    isTerminateAuth(),
+                    FlushPolicy.fromConfig(config)
             ));
         }
     }
@@ -316,7 +396,8 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
                     dataPathMetrics,
                     PacketForwardingHandler.ForwardDirection.CLIENT_TO_BACKEND,
                     authSession,
-                    isTerminateAuth()
+                    isTerminateAuth(),
+                    FlushPolicy.fromConfig(config)
             ));
         }
     }
@@ -330,29 +411,87 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
         }
     }
 
-    private void queuePendingPacket(Packet packet) {
+    private void queuePendingPacket(Channel clientChannel, Packet packet) {
         captureAuthPacket(packet);
         ReferenceCountUtil.retain(packet);
-        pendingPackets.add(packet);
+        if (!pendingPackets.offer(packet)) {
+            ReferenceCountUtil.release(packet);
+            shedPendingSession(clientChannel);
+        }
+    }
+
+    /**
+     * Disconnect a session whose pre-connect buffer hit a per-session or node-wide cap. A backend connection
+     * that completes afterwards is closed instead of attached.
+     */
+    private void shedPendingSession(Channel clientChannel) {
+        if (!bufferingEnabled) {
+            return;
+        }
+        bufferingEnabled = false;
+        pendingOverflow = true;
+        pendingPackets.recordOverflow();
+        removePendingMeter(clientChannel);
+        cancelFailover();
+        clearPendingPackets();
+        releaseReservation();
+        sendDisconnect(clientChannel, "too much data before backend connect", DisconnectType.Disconnect);
+    }
+
+    private void cancelFailover() {
+        if (failover != null) {
+            failover.cancel();
+            failover = null;
+        }
+    }
+
+    private void removePendingMeter(Channel clientChannel) {
+        ChannelPipeline pipeline = clientChannel.pipeline();
+        if (pipeline.get(PendingPacketBuffer.METER_NAME) != null) {
+            pipeline.remove(PendingPacketBuffer.METER_NAME);
+        }
     }
 
     private void flushPendingPackets(Channel backendChannel) {
+        List<Packet> run = new ArrayList<>();
         while (!pendingPackets.isEmpty()) {
-            Packet packet = pendingPackets.poll();
-            backendChannel.write(packet).addListener(future -> {
-                ReferenceCountUtil.release(packet);
-                if (!future.isSuccess() && bridgeSession != null) {
-                    bridgeSession.close();
-                }
-            });
+            Object pending = pendingPackets.poll();
+            if (pending instanceof Packet packet) {
+                run.add(packet);
+                continue;
+            }
+            writePacketRun(backendChannel, run);
+            PacketFrame frame = (PacketFrame) pending;
+            backendChannel.write(frame.content()).addListener(this::closeOnWriteFailure);
         }
+        writePacketRun(backendChannel, run);
         backendChannel.flush();
+        pendingPackets.clear();
     }
 
-    private void clearPendingPackets() {
-        while (!pendingPackets.isEmpty()) {
-            ReferenceCountUtil.release(pendingPackets.poll());
+    private void writePacketRun(Channel backendChannel, List<Packet> run) {
+        if (run.isEmpty()) {
+            return;
         }
+        Packet[] packets = run.toArray(new Packet[0]);
+        run.clear();
+        Object batch = packets.length == 1 ? packets[0] : packets;
+        backendChannel.write(batch).addListener(future -> {
+            for (Packet packet : packets) {
+                ReferenceCountUtil.release(packet);
+            }
+            closeOnWriteFailure(future);
+        });
+    }
+
+    private void closeOnWriteFailure(Future<? super Void> future) {
+        if (!future.isSuccess() && bridgeSession != null) {
+            bridgeSession.close();
+        }
+    }
+
+    private void clearPendingPackets() {
+        pendingPackets.clear();
     }
 
     private void ensureSessionContext(ChannelHandlerContext ctx) {
@@ -366,21 +505,18 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
     }
 
     private String resolveSelectionKey(ChannelHandlerContext ctx) {
-        Channel contextChannel = resolveContextChannel(ctx);
-        if (contextChannel != null) {
-            ProxySessionContext context = contextChannel.attr(ProxySessionContext.SESSION_CONTEXT).get();
-            if (context != null) {
-                if (!isBlank(context.clientCertificateSha256())) {
-                    return context.clientCertificateSha256();
-                }
-                if (!isBlank(context.remoteAddress())) {
-                    return context.remoteAddress();
-                }
-            }
+        ProxySessionContext context = resolveSessionContext(ctx);
+        if (context != null && context.selectionKey() != null) {
+            return context.selectionKey();
         }
         return isBlank(remoteAddress) ? null : remoteAddress;
     }
 
+    private ProxySessionContext resolveSessionContext(ChannelHandlerContext ctx) {
+        Channel contextChannel = resolveContextChannel(ctx);
+        return contextChannel == null ? null : contextChannel.attr(ProxySessionContext.SESSION_CONTEXT).get();
+    }
+
     private X509Certificate resolveClientCertificate(Channel contextChannel) {
         Channel channel = contextChannel;
         if (!(channel instanceof QuicChannel) && channel.parent() != null) {
@@ -389,28 +525,7 @@ public final class ProxyStreamHandler extends SimpleChannelInboundHandler<Packet
         if (!(channel instanceof QuicChannel)) {
             return null;
         }
-        SSLEngine sslEngine = ((QuicChannel) channel).sslEngine();
-        if (sslEngine == null) {
-            return null;
-        }
-        SSLSession session = sslEngine.getSession();
-        if (session == null) {
-            return null;
-        }
-        try {
-            Certificate[] certificates = session.getPeerCertificates();
-            if (certificates == null || certificates.length == 0) {
-                return null;
-            }
-            for (Certificate certificate : certificates) {
-                if (certificate instanceof X509Certificate) {
-                    return (X509Certificate) certificate;
-                }
-            }
-        } catch (SSLPeerUnverifiedException ignored) {
-            return null;
-        }
-        return null;
+        return ProxySessionContext.peerCertificate((QuicChannel) channel);
     }
 
     private String resolveRemoteAddress(ChannelHandlerContext ctx) {
@@ -23,17 +23,20 @@ public final class ProxyStreamInitializer extends ChannelInitializer<QuicStreamC
     private final ProxySessionLimiter sessionLimiter;
     private final ReferralService referralService;
     private final BackendConnector backendConnector;
+    private final PendingBufferBudget pendingBudget;
 
     public ProxyStreamInitializer(HyproxConfig config,
                                   RoutingPlanner routingPlanner,
                                   ProxySessionLimiter sessionLimiter,
                                   ReferralService referralService,
-                                  BackendConnector backendConnector) {
+                                  BackendConnector backendConnector,
+                                  PendingBufferBudget pendingBudget) {
         this.config = Objects.requireNonNull(config, "config");
         this.routingPlanner = Objects.requireNonNull(routingPlanner, "routingPlanner");
         this.sessionLimiter = Objects.requireNonNull(sessionLimiter, "sessionLimiter");
         this.referralService = Objects.requireNonNull(referralService, "referralService");
         this.backendConnector = Objects.requireNonNull(backendConnector, "backendConnector");
+        this.pendingBudget = Objects.requireNonNull(pendingBudget, "pendingBudget");
     }
 
     @Override
@@ -42,9 +45,13 @@ public final class ProxyStreamInitializer extends ChannelInitializer<QuicStreamC
         if (config.proxy != null && config.proxy.timeouts != null && config.proxy.timeouts.handshakeMs != null) {
             pipeline.addLast("handshakeTimeout", new ReadTimeoutHandler(config.proxy.timeouts.handshakeMs, TimeUnit.MILLISECONDS));
         }
+        if (PacketFrameDecoder.enabled(config)) {
+            pipeline.addLast("packetFrameDecoder", PacketFrameDecoder.fromConfig(config));
+        }
         pipeline.addLast("packetDecoder", new PacketDecoder());
         pipeline.addLast("packetEncoder", new PacketEncoder());
         pipeline.addLast("packetArrayEncoder", new PacketArrayEncoder());
-        pipeline.addLast("handler", new ProxyStreamHandler(config, routingPlanner, sessionLimiter, referralService, backendConnector));
+        pipeline.addLast("handler", new ProxyStreamHandler(
+                config, routingPlanner, sessionLimiter, referralService, backendConnector, pendingBudget));
     }
 }
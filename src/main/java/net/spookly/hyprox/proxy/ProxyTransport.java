@@ -0,0 +1,63 @@
+package net.spookly.hyprox.proxy;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import net.spookly.hyprox.config.HyproxConfig;
+
+/**
+ * Datagram transport used for the QUIC listener and backend connections.
+ * <p>
+ * {@code epoll} and {@code auto} resolve to the native Linux transport when it can be loaded and fall
+ * back to NIO otherwise.
+ */
+public enum ProxyTransport {
+    NIO,
+    EPOLL;
+
+    public static ProxyTransport fromConfig(HyproxConfig config) {
+        HyproxConfig.TransportConfig transport = config.proxy == null ? null : config.proxy.transport;
+        return resolve(transport == null ? null : transport.mode);
+    }
+
+    public static ProxyTransport resolve(String mode) {
+        if (mode == null || "nio".equalsIgnoreCase(mode)) {
+            return NIO;
+        }
+        if ("epoll".equalsIgnoreCase(mode) || "auto".equalsIgnoreCase(mode)) {
+            if (Epoll.isAvailable()) {
+                return EPOLL;
+            }
+            if ("epoll".equalsIgnoreCase(mode)) {
+                System.err.println("Native epoll transport unavailable, falling back to NIO: "
+                        + Epoll.unavailabilityCause());
+            }
+        }
+        return NIO;
+    }
+
+    public boolean isNative() {
+        return this == EPOLL;
+    }
+
+    /**
+     * Create an event loop group for this transport. A thread count of 0 uses Netty's default.
+     */
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        if (this == EPOLL) {
+            return new EpollEventLoopGroup(threads);
+        }
+        return new NioEventLoopGroup(threads);
+    }
+
+    public Class<? extends DatagramChannel> datagramChannelClass() {
+        if (this == EPOLL) {
+            return EpollDatagramChannel.class;
+        }
+        return NioDatagramChannel.class;
+    }
+}
@@ -73,6 +73,7 @@ public final class QuicBackendHealthProbe implements BackendHealthProbe {
         if (!ownsConnector) {
             return;
         }
+        connector.close();
         connector.workerGroup().shutdownGracefully();
     }
 }
@@ -0,0 +1,211 @@
+package net.spookly.hyprox.proxy;
+
+import java.net.InetSocketAddress;
+import java.util.Objects;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.quic.QuicChannel;
+import io.netty.handler.ssl.SslHandshakeCompletionEvent;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import net.spookly.hyprox.config.HyproxConfig;
+import net.spookly.hyprox.routing.BackendTarget;
+import net.spookly.hyprox.routing.RoutingPlanner;
+import net.spookly.hyprox.routing.RoutingRequest;
+
+/**
+ * Starts the backend connect for a client QUIC connection as soon as its handshake completes, in parallel
+ * with the client sending {@code Connect}.
+ * <p>
+ * The backend is predicted from the session selection key alone. When the routing decision made on
+ * {@code Connect} picks the same backend, {@link ProxyStreamHandler} claims the pending connection;
+ * otherwise it is discarded.
+ * <p>
+ * Speculation is subject to the same {@link ProxySessionLimiter} as sessions: a client already at its
+ * concurrent session cap gets no speculative connect, and starting one takes the connection's slot of the
+ * per-IP handshake rate limit. {@code Connect} on that connection then uses the slot taken here instead of
+ * taking a second one, so unauthenticated clients cannot open more backend handshakes than the limiter admits.
+ */
+@ChannelHandler.Sharable
+public final class SpeculativeConnectHandler extends ChannelInboundHandlerAdapter {
+    private static final AttributeKey<Speculation> SPECULATION =
+            AttributeKey.valueOf("hyprox.speculative.connect");
+    private static final AttributeKey<Boolean> HANDSHAKE_ADMITTED =
+            AttributeKey.valueOf("hyprox.speculative.handshake");
+
+    private final RoutingPlanner routingPlanner;
+    private final ProxySessionLimiter sessionLimiter;
+    private final Connector connector;
+    private final BackendAffinity affinity;
+
+    public SpeculativeConnectHandler(HyproxConfig config,
+                                     RoutingPlanner routingPlanner,
+                                     ProxySessionLimiter sessionLimiter,
+                                     BackendConnector backendConnector) {
+        this(config, routingPlanner, sessionLimiter, connector(backendConnector));
+    }
+
+    SpeculativeConnectHandler(HyproxConfig config,
+                              RoutingPlanner routingPlanner,
+                              ProxySessionLimiter sessionLimiter,
+                              Connector connector) {
+        Objects.requireNonNull(config, "config");
+        this.routingPlanner = Objects.requireNonNull(routingPlanner, "routingPlanner");
+        this.sessionLimiter = Objects.requireNonNull(sessionLimiter, "sessionLimiter");
+        this.connector = Objects.requireNonNull(connector, "connector");
+        this.affinity = BackendAffinity.fromConfig(config);
+    }
+
+    /**
+     * Whether speculative backend connects are enabled ({@code proxy.speculativeConnect}).
+     */
+    public static boolean enabled(HyproxConfig config) {
+        return config != null && config.proxy != null && Boolean.TRUE.equals(config.proxy.speculativeConnect);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof SslHandshakeCompletionEvent event
+                && event.isSuccess()
+                && ctx.channel() instanceof QuicChannel channel) {
+            start(channel);
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        discard(ctx.channel());
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * Take the speculative connection for {@code backend} if one was started for it. A speculation for a
+     * different backend is discarded. Returns null when there is nothing to reuse.
+     */
+    public static PendingConnect claim(Channel quicChannel, BackendTarget backend) {
+        Speculation speculation = take(quicChannel);
+        if (speculation == null) {
+            return null;
+        }
+        if (backend != null && sameBackend(speculation.backend, backend)) {
+            return new PendingConnect(speculation.future, speculation.startNanos);
+        }
+        speculation.discard();
+        return null;
+    }
+
+    /**
+     * Drop any pending speculative connection, for example when the session is redirected instead.
+     */
+    public static void discard(Channel quicChannel) {
+        Speculation speculation = take(quicChannel);
+        if (speculation != null) {
+            speculation.discard();
+        }
+    }
+
+    /**
+     * Whether a speculative connect already took the handshake slot of {@code quicChannel}. Returns true at most
+     * once per connection, so only the first {@code Connect} skips its own handshake limit check.
+     */
+    public static boolean takeAdmittedHandshake(Channel quicChannel) {
+        if (quicChannel == null || !quicChannel.hasAttr(HANDSHAKE_ADMITTED)) {
+            return false;
+        }
+        return Boolean.TRUE.equals(quicChannel.attr(HANDSHAKE_ADMITTED).getAndSet(null));
+    }
+
+    void start(QuicChannel channel) {
+        if (channel.hasAttr(SPECULATION) || channel.hasAttr(HANDSHAKE_ADMITTED)) {
+            return;
+        }
+        ProxySessionContext context = channel.attr(ProxySessionContext.SESSION_CONTEXT).get();
+        if (context == null) {
+            context = ProxySessionContext.from(remoteAddress(channel), ProxySessionContext.peerCertificate(channel));
+            channel.attr(ProxySessionContext.SESSION_CONTEXT).setIfAbsent(context);
+        }
+        String ipAddress = context.remoteAddress();
+        if (!sessionLimiter.hasSessionCapacity(ipAddress) || !sessionLimiter.tryAcquireHandshake(ipAddress)) {
+            return;
+        }
+        channel.attr(HANDSHAKE_ADMITTED).set(Boolean.TRUE);
+        RoutingRequest request = new RoutingRequest(null, null, context.selectionKey(), null)
+                .withClientDetails(null, null, null, context.clientCertificateSubject(), context.remoteAddress());
+        BackendTarget backend = routingPlanner.predictFullProxyBackend(request);
+        if (backend == null) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        Future<BackendConnection> future =
+                connector.connect(backend, affinity == BackendAffinity.CLIENT ? channel.eventLoop() : null);
+        channel.attr(SPECULATION).set(new Speculation(backend, future, startNanos));
+    }
+
+    private static Connector connector(BackendConnector backendConnector) {
+        Objects.requireNonNull(backendConnector, "backendConnector");
+        return (backend, eventLoop) -> eventLoop == null
+                ? backendConnector.connect(backend)
+                : backendConnector.connect(backend, eventLoop);
+    }
+
+    private static Speculation take(Channel quicChannel) {
+        if (quicChannel == null || !quicChannel.hasAttr(SPECULATION)) {
+            return null;
+        }
+        return quicChannel.attr(SPECULATION).getAndSet(null);
+    }
+
+    private static String remoteAddress(QuicChannel channel) {
+        if (channel.remoteSocketAddress() instanceof InetSocketAddress address) {
+            return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+        }
+        return null;
+    }
+
+    private static boolean sameBackend(BackendTarget left, BackendTarget right) {
+        return Objects.equals(left.id(), right.id())
+                && Objects.equals(left.host(), right.host())
+                && left.port() == right.port();
+    }
+
+    /**
+     * Starts a backend connect, on {@code eventLoop} when it is not null.
+     */
+    interface Connector {
+        Future<BackendConnection> connect(BackendTarget backend, EventLoop eventLoop);
+    }
+
+    /**
+     * A claimed speculative connect together with the {@link System#nanoTime()} it was started at, so connect
+     * latency and attempt deadlines are measured from the real start rather than from the claim.
+     */
+    public record PendingConnect(Future<BackendConnection> future, long startNanos) {
+    }
+
+    private static final class Speculation {
+        private final BackendTarget backend;
+        private final Future<BackendConnection> future;
+        private final long startNanos;
+
+        private Speculation(BackendTarget backend, Future<BackendConnection> future, long startNanos) {
+            this.backend = backend;
+            this.future = future;
+            this.startNanos = startNanos;
+        }
+
+        private void discard() {
+            if (!future.cancel(false)) {
+                future.addListener(done -> {
+                    if (done.isSuccess()) {
+                        ((BackendConnection) done.getNow()).close();
+                    }
+                });
+            }
+        }
+    }
+}
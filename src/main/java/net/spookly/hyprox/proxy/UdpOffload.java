@@ -0,0 +1,103 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.Locale;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.handler.codec.quic.EpollQuicUtils;
+import io.netty.handler.codec.quic.SegmentedDatagramPacketAllocator;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import net.spookly.hyprox.config.HyproxConfig;
+
+/**
+ * UDP segmentation offload settings for the QUIC codecs.
+ * <p>
+ * GSO lets the QUIC codec hand a burst of packets to the kernel in one send call; GRO lets the kernel
+ * coalesce received packets into one read. Both need the native transport and a kernel with UDP
+ * segmentation support, and are switched off with a warning when either is missing.
+ */
+@Getter
+@Accessors(fluent = true)
+public final class UdpOffload {
+    public static final int DEFAULT_GSO_MAX_SEGMENTS = 16;
+    public static final UdpOffload DISABLED = new UdpOffload(false, false, DEFAULT_GSO_MAX_SEGMENTS);
+
+    private static final int GRO_READ_BUFFER_BYTES = 64 * 1024;
+
+    private final boolean gso;
+    private final boolean gro;
+    private final int gsoMaxSegments;
+
+    public UdpOffload(boolean gso, boolean gro, int gsoMaxSegments) {
+        if (gsoMaxSegments <= 0) {
+            throw new IllegalArgumentException("gsoMaxSegments must be greater than 0");
+        }
+        this.gso = gso;
+        this.gro = gro;
+        this.gsoMaxSegments = gsoMaxSegments;
+    }
+
+    public static UdpOffload fromConfig(HyproxConfig config, ProxyTransport transport) {
+        HyproxConfig.QuicConfig quic = config.proxy == null ? null : config.proxy.quic;
+        if (quic == null) {
+            return DISABLED;
+        }
+        boolean gso = Boolean.TRUE.equals(quic.gso);
+        boolean gro = Boolean.TRUE.equals(quic.gro);
+        if (!gso && !gro) {
+            return DISABLED;
+        }
+        if (!isSupported(transport)) {
+            System.err.println("UDP segmentation offload unavailable (transport="
+                    + transport.name().toLowerCase(Locale.ROOT) + "), continuing without GSO/GRO.");
+            return DISABLED;
+        }
+        int maxSegments = quic.gsoMaxSegments == null ? DEFAULT_GSO_MAX_SEGMENTS : quic.gsoMaxSegments;
+        return new UdpOffload(gso, gro, maxSegments);
+    }
+
+    /**
+     * Returns true when the transport and kernel support segmented datagrams.
+     */
+    public static boolean isSupported(ProxyTransport transport) {
+        return transport.isNative() && EpollDatagramChannel.isSegmentedDatagramPacketSupported();
+    }
+
+    /**
+     * Segmented packet allocator for the QUIC codec, or null when GSO is disabled.
+     */
+    public SegmentedDatagramPacketAllocator segmentedAllocator() {
+        if (!gso) {
+            return null;
+        }
+        return EpollQuicUtils.newSegmentedAllocator(gsoMaxSegments);
+    }
+
+    /**
+     * Enable GRO on a datagram bootstrap. GRO reads replace recvmmsg batching, so the read buffer is sized
+     * for one coalesced read instead of several datagrams.
+     */
+    public void applyReceive(Bootstrap bootstrap) {
+        if (!gro) {
+            return;
+        }
+        bootstrap.option(EpollChannelOption.UDP_GRO, true)
+                .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(GRO_READ_BUFFER_BYTES));
+    }
+
+    /**
+     * Returns false when GRO was requested but the bound channel did not accept it.
+     */
+    public boolean verifyReceive(Channel channel) {
+        if (!gro) {
+            return true;
+        }
+        Boolean enabled = channel.config().getOption(EpollChannelOption.UDP_GRO);
+        return Boolean.TRUE.equals(enabled);
+    }
+}
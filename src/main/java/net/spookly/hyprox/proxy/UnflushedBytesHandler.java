@@ -0,0 +1,39 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Counts encoded bytes written to a stream since its last flush.
+ * <p>
+ * Sits at the head of the pipeline, below the packet encoders, so decoded packets are counted at their encoded
+ * size. The forwarder writing into this stream reads the count to apply {@link FlushPolicy#maxBytes()}. When the
+ * forwarder runs on another event loop, writes are counted once the stream's loop has processed them.
+ */
+public final class UnflushedBytesHandler extends ChannelOutboundHandlerAdapter {
+    public static final String NAME = "unflushedBytes";
+
+    private final AtomicLong unflushedBytes = new AtomicLong();
+
+    public long unflushedBytes() {
+        return unflushedBytes.get();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf buf) {
+            unflushedBytes.addAndGet(buf.readableBytes());
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        unflushedBytes.set(0);
+        super.flush(ctx);
+    }
+}
@@ -0,0 +1,74 @@
+package net.spookly.hyprox.proxy;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers SHA-256 fingerprints of backend certificates that already passed host and SAN verification.
+ * <p>
+ * A certificate seen again for the same host (typically on a resumed session) is accepted by fingerprint
+ * without parsing its SANs. The cache is cleared when it reaches its size limit.
+ */
+public final class VerifiedIdentityCache {
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final Set<String> verified = ConcurrentHashMap.newKeySet();
+    private final int maxEntries;
+
+    public VerifiedIdentityCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public VerifiedIdentityCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    public boolean contains(String backendHost, String fingerprint) {
+        if (backendHost == null || fingerprint == null) {
+            return false;
+        }
+        return verified.contains(key(backendHost, fingerprint));
+    }
+
+    public void add(String backendHost, String fingerprint) {
+        if (backendHost == null || fingerprint == null) {
+            return;
+        }
+        if (verified.size() >= maxEntries) {
+            verified.clear();
+        }
+        verified.add(key(backendHost, fingerprint));
+    }
+
+    public int size() {
+        return verified.size();
+    }
+
+    /**
+     * Hex SHA-256 of the DER encoded certificate, or null when it cannot be encoded.
+     */
+    public static String fingerprint(X509Certificate certificate) {
+        if (certificate == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(certificate.getEncoded()));
+        } catch (CertificateEncodingException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static String key(String backendHost, String fingerprint) {
+        return backendHost.trim().toLowerCase(Locale.ROOT) + "|" + fingerprint;
+    }
+}
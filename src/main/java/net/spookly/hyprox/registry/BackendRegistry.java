@@ -4,27 +4,44 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import lombok.NonNull;
 import net.spookly.hyprox.config.HyproxConfig;
 
 /**
  * In-memory store for dynamic backend registrations with TTL and drain support.
+ * <p>
+ * Backends are also indexed by pool (case-insensitive), so listing one pool only touches that pool's
+ * entries. Every membership or draining change advances a registry-wide epoch and stamps it on the
+ * affected pool; consumers compare {@link #epoch(String)} with the value they last saw to skip work when a
+ * pool has not changed. Heartbeats only extend expiry and do not advance the epoch.
+ * <p>
+ * {@link #batch(Function)} applies many changes in one pass and hands their events to listeners together once
+ * every change is applied, so a listener doing per-change work (rebuilding the routing snapshot) runs once.
  */
 public final class BackendRegistry {
     private final Map<String, RegisteredBackend> backends = new ConcurrentHashMap<>();
+    private final Map<String, PoolIndex> pools = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
     private final Set<String> staticBackendIds;
     private final int defaultTtlSeconds;
     private final int heartbeatGraceSeconds;
     private final int drainTimeoutSeconds;
     private final RegistryEventListener eventListener;
+    private final List<RegistryEventListener> listeners = new CopyOnWriteArrayList<>();
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final RegistryStore store;
+    private boolean restored;
 
     /**
      * Create a registry with explicit defaults.
@@ -41,6 +58,19 @@ public final class BackendRegistry {
                            int heartbeatGraceSeconds,
                            int drainTimeoutSeconds,
                            RegistryEventListener eventListener) {
+        this(staticBackendIds, defaultTtlSeconds, heartbeatGraceSeconds, drainTimeoutSeconds, eventListener, null);
+    }
+
+    /**
+     * Create a registry with explicit defaults, an audit listener and optional local persistence.
+     */
+    public BackendRegistry(Set<String> staticBackendIds,
+                           int defaultTtlSeconds,
+                           int heartbeatGraceSeconds,
+                           int drainTimeoutSeconds,
+                           RegistryEventListener eventListener,
+                           RegistryStore store) {
+        this.store = store;
         this.staticBackendIds = staticBackendIds;
         this.defaultTtlSeconds = defaultTtlSeconds;
         this.heartbeatGraceSeconds = heartbeatGraceSeconds;
@@ -74,27 +104,75 @@ public final class BackendRegistry {
                 drainSeconds = config.registry.defaults.drainTimeoutSeconds;
             }
         }
-        return new BackendRegistry(staticIds, ttlSeconds, graceSeconds, drainSeconds, eventListener);
+        return new BackendRegistry(staticIds, ttlSeconds, graceSeconds, drainSeconds, eventListener,
+                RegistryStore.fromConfig(config));
+    }
+
+    /**
+     * Add a listener that is notified after every registry change, in addition to the audit listener.
+     */
+    public void addListener(@NonNull RegistryEventListener listener) {
+        listeners.add(listener);
     }
 
     /**
-     * Start background cleanup of expired entries.
+     * Restore persisted entries (once), then start background cleanup of expired entries and persistence.
      */
     public void start() {
+        restore();
+        if (store != null) {
+            addListener(store);
+            store.start(() -> backends.values());
+        }
         scheduler.scheduleAtFixedRate(this::purgeExpired, 1, 1, TimeUnit.SECONDS);
     }
 
     /**
-     * Stop background cleanup.
+     * Load entries persisted by a previous run whose expiry (plus heartbeat grace) has not passed yet. Runs
+     * at most once; call it before accepting traffic so routing sees the restored backends from the start.
+     * Restored entries do not emit events.
+     */
+    public synchronized int restore() {
+        if (store == null || restored) {
+            return 0;
+        }
+        restored = true;
+        Instant cutoff = Instant.now().minusSeconds(heartbeatGraceSeconds);
+        int count = 0;
+        for (RegisteredBackend backend : store.load()) {
+            if (backend.id() == null || staticBackendIds.contains(backend.id()) || backend.isExpired(cutoff)) {
+                continue;
+            }
+            if (backends.putIfAbsent(backend.id(), backend) == null) {
+                PoolIndex index = poolIndex(backend.pool(), true);
+                if (index != null) {
+                    index.backends.put(backend.id(), backend);
+                }
+                changed(backend.pool());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stop background cleanup and flush persisted state.
      */
     public void stop() {
         scheduler.shutdownNow();
+        if (store != null) {
+            store.stop();
+        }
     }
 
     /**
      * Register or refresh a backend entry.
      */
     public RegisteredBackend register(@NonNull RegisteredBackend backend, Integer ttlSecondsOverride) {
+        return batch(batch -> batch.register(backend, ttlSecondsOverride));
+    }
+
+    private RegisteredBackend register(RegisteredBackend backend, Integer ttlSecondsOverride, List<RegistryEvent> events) {
         if (staticBackendIds.contains(backend.id())) {
             throw new IllegalArgumentException("backend id conflicts with static backend: " + backend.id());
         }
@@ -118,15 +196,22 @@ public final class BackendRegistry {
                 false
         );
         RegisteredBackend existing = backends.putIfAbsent(backend.id(), stored);
+        if (existing == null) {
+            PoolIndex index = poolIndex(stored.pool(), true);
+            if (index != null) {
+                index.backends.put(stored.id(), stored);
+            }
+            changed(stored.pool());
+        }
         if (existing != null) {
             if (!existing.orchestratorId().equals(backend.orchestratorId())) {
                 throw new IllegalArgumentException("backend id already registered by another orchestrator");
             }
             existing.markHeartbeat(now, expiresAt);
-            emit(RegistryEventType.REGISTER, existing, now);
+            events.add(RegistryEvent.from(RegistryEventType.REGISTER, existing, now));
             return existing;
         }
-        emit(RegistryEventType.REGISTER, stored, now);
+        events.add(RegistryEvent.from(RegistryEventType.REGISTER, stored, now));
         return stored;
     }
 
@@ -138,6 +223,13 @@ public final class BackendRegistry {
      * Update the heartbeat for a registered backend.
      */
     public RegisteredBackend heartbeat(@NonNull String backendId, @NonNull String orchestratorId, Integer ttlSecondsOverride) {
+        return batch(batch -> batch.heartbeat(backendId, orchestratorId, ttlSecondsOverride));
+    }
+
+    private RegisteredBackend heartbeat(String backendId,
+                                        String orchestratorId,
+                                        Integer ttlSecondsOverride,
+                                        List<RegistryEvent> events) {
         RegisteredBackend backend = backends.get(backendId);
         if (backend == null) {
             throw new IllegalArgumentException("backend id not found");
@@ -151,7 +243,7 @@ public final class BackendRegistry {
             ttlSeconds = defaultTtlSeconds;
         }
         backend.markHeartbeat(now, now.plusSeconds(ttlSeconds));
-        emit(RegistryEventType.HEARTBEAT, backend, now);
+        events.add(RegistryEvent.from(RegistryEventType.HEARTBEAT, backend, now));
         return backend;
     }
 
@@ -159,6 +251,13 @@ public final class BackendRegistry {
      * Mark a backend as draining and extend its expiry window.
      */
     public RegisteredBackend drain(@NonNull String backendId, @NonNull String orchestratorId, Integer drainSecondsOverride) {
+        return batch(batch -> batch.drain(backendId, orchestratorId, drainSecondsOverride));
+    }
+
+    private RegisteredBackend drain(String backendId,
+                                    String orchestratorId,
+                                    Integer drainSecondsOverride,
+                                    List<RegistryEvent> events) {
         RegisteredBackend backend = backends.get(backendId);
         if (backend == null) {
             throw new IllegalArgumentException("backend id not found");
@@ -173,11 +272,29 @@ public final class BackendRegistry {
             drainSeconds = drainTimeoutSeconds;
         }
         Instant now = Instant.now();
+        boolean wasDraining = backend.draining();
         backend.markDraining(now, now.plusSeconds(drainSeconds));
-        emit(RegistryEventType.DRAIN, backend, now);
+        if (!wasDraining) {
+            changed(backend.pool());
+        }
+        events.add(RegistryEvent.from(RegistryEventType.DRAIN, backend, now));
         return backend;
     }
 
+    /**
+     * Apply the changes made through {@code changes} in one pass. Each change takes effect immediately, but
+     * listeners only see the resulting events once {@code changes} returns (or throws), all in one
+     * {@link RegistryEventListener#onEvents(List)} call.
+     */
+    public <T> T batch(@NonNull Function<Batch, T> changes) {
+        Batch batch = new Batch();
+        try {
+            return changes.apply(batch);
+        } finally {
+            emit(batch.events);
+        }
+    }
+
     /**
      * List all registered backends, optionally filtered by pool.
      */
@@ -185,13 +302,24 @@ public final class BackendRegistry {
         if (pool == null || pool.trim().isEmpty()) {
             return new ArrayList<>(backends.values());
         }
-        List<RegisteredBackend> filtered = new ArrayList<>();
-        for (RegisteredBackend backend : backends.values()) {
-            if (pool.equalsIgnoreCase(backend.pool())) {
-                filtered.add(backend);
-            }
-        }
-        return filtered;
+        PoolIndex index = poolIndex(pool, false);
+        return index == null ? new ArrayList<>() : new ArrayList<>(index.backends.values());
+    }
+
+    /**
+     * Registry-wide change epoch; it increases with every registration, drain or expiry.
+     */
+    public long epoch() {
+        return epoch.get();
+    }
+
+    /**
+     * Epoch of the last change to {@code pool} (case-insensitive), or 0 when the pool never had an entry.
+     * Read the epoch before {@link #list(String)}: a listing taken afterwards is at least as new.
+     */
+    public long epoch(String pool) {
+        PoolIndex index = poolIndex(pool, false);
+        return index == null ? 0 : index.epoch;
     }
 
     /**
@@ -204,22 +332,56 @@ public final class BackendRegistry {
     private void purgeExpired() {
         Instant now = Instant.now();
         Instant cutoff = now.minusSeconds(heartbeatGraceSeconds);
+        List<RegistryEvent> events = new ArrayList<>();
         for (Map.Entry<String, RegisteredBackend> entry : backends.entrySet()) {
             RegisteredBackend backend = entry.getValue();
             if (backend.isExpired(cutoff)) {
                 if (backends.remove(entry.getKey(), backend)) {
-                    emit(RegistryEventType.EXPIRE, backend, now);
+                    PoolIndex index = poolIndex(backend.pool(), false);
+                    if (index != null) {
+                        index.backends.remove(backend.id(), backend);
+                    }
+                    changed(backend.pool());
+                    events.add(RegistryEvent.from(RegistryEventType.EXPIRE, backend, now));
                 }
             }
         }
+        emit(events);
     }
 
-    private void emit(RegistryEventType type, RegisteredBackend backend, Instant now) {
+    private void changed(String pool) {
+        long next = epoch.incrementAndGet();
+        PoolIndex index = poolIndex(pool, false);
+        if (index != null) {
+            index.advance(next);
+        }
+    }
+
+    private PoolIndex poolIndex(String pool, boolean create) {
+        if (pool == null || pool.trim().isEmpty()) {
+            return null;
+        }
+        String key = pool.toLowerCase(Locale.ROOT);
+        return create ? pools.computeIfAbsent(key, ignored -> new PoolIndex()) : pools.get(key);
+    }
+
+    private void emit(List<RegistryEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<RegistryEvent> view = Collections.unmodifiableList(events);
         try {
-            eventListener.onEvent(RegistryEvent.from(type, backend, now));
+            eventListener.onEvents(view);
         } catch (RuntimeException e) {
             System.err.println("Failed to emit registry audit event: " + e.getMessage());
         }
+        for (RegistryEventListener listener : listeners) {
+            try {
+                listener.onEvents(view);
+            } catch (RuntimeException e) {
+                System.err.println("Registry listener failed: " + e.getMessage());
+            }
+        }
     }
 
     public int defaultTtlSeconds() {
@@ -240,4 +402,42 @@ public final class BackendRegistry {
     public Set<String> staticBackendIds() {
         return Collections.unmodifiableSet(staticBackendIds);
     }
+
+    /**
+     * Changes applied within one {@link #batch(Function)} call. The methods behave like their
+     * {@link BackendRegistry} counterparts except that events are held back until the batch ends.
+     */
+    public final class Batch {
+        private final List<RegistryEvent> events = new ArrayList<>();
+
+        private Batch() {
+        }
+
+        public RegisteredBackend register(@NonNull RegisteredBackend backend, Integer ttlSecondsOverride) {
+            return BackendRegistry.this.register(backend, ttlSecondsOverride, events);
+        }
+
+        public RegisteredBackend heartbeat(@NonNull String backendId, @NonNull String orchestratorId, Integer ttlSecondsOverride) {
+            return BackendRegistry.this.heartbeat(backendId, orchestratorId, ttlSecondsOverride, events);
+        }
+
+        public RegisteredBackend drain(@NonNull String backendId, @NonNull String orchestratorId, Integer drainSecondsOverride) {
+            return BackendRegistry.this.drain(backendId, orchestratorId, drainSecondsOverride, events);
+        }
+    }
+
+    /**
+     * Backends of one pool plus the epoch of the pool's last change. Entries are kept after the pool empties
+     * so its epoch never goes backwards.
+     */
+    private static final class PoolIndex {
+        private final Map<String, RegisteredBackend> backends = new ConcurrentHashMap<>();
+        private volatile long epoch;
+
+        private synchronized void advance(long next) {
+            if (next > epoch) {
+                epoch = next;
+            }
+        }
+    }
 }
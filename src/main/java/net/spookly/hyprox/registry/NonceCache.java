@@ -1,37 +1,145 @@
 package net.spookly.hyprox.registry;
 
+import java.time.Clock;
 import java.time.Instant;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * In-memory replay cache for HMAC nonces.
+ * <p>
+ * A nonce is remembered through {@code ttlSeconds} after the later of its timestamp and the time it was
+ * seen (timestamps more than {@code ttlSeconds} ahead are treated as that far ahead). Nonces are filed in a
+ * ring of one-second buckets by that expiry second, so expiring them only walks the buckets whose second has
+ * passed: insert and expiry are amortized O(1) instead of a scan of every live nonce.
+ * <p>
+ * The cache holds at most {@code maxEntries} live nonces. When it is full, {@link #register} fails closed:
+ * new nonces are rejected (callers report them as replays) until older ones expire, so a flood of unique
+ * nonces can neither exhaust memory nor make a replay pass.
  */
 public final class NonceCache {
-    private final Map<String, Instant> seen = new ConcurrentHashMap<>();
+    /**
+     * Default bound on live nonces, roughly 100 MB with typical key lengths.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 500_000;
+
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Bucket[] buckets;
+    private final ReentrantLock expiryLock = new ReentrantLock();
     private final int ttlSeconds;
+    private final int maxEntries;
+    private final Clock clock;
+    private volatile long expiredThrough = Long.MIN_VALUE;
 
     /**
      * @param ttlSeconds retention window for seen nonces.
      */
     public NonceCache(int ttlSeconds) {
-        this.ttlSeconds = ttlSeconds;
+        this(ttlSeconds, DEFAULT_MAX_ENTRIES);
     }
 
     /**
-     * Register a nonce key if unseen; returns false when already used.
+     * @param ttlSeconds retention window for seen nonces.
+     * @param maxEntries maximum number of live nonces before new ones are rejected.
+     */
+    public NonceCache(int ttlSeconds, int maxEntries) {
+        this(ttlSeconds, maxEntries, Clock.systemUTC());
+    }
+
+    NonceCache(int ttlSeconds, int maxEntries, Clock clock) {
+        this.ttlSeconds = Math.max(0, ttlSeconds);
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.buckets = new Bucket[this.ttlSeconds * 2 + 2];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Register a nonce key if unseen; returns false when already used or when the cache is full.
      */
     public boolean register(String key, Instant timestamp) {
-        purge(timestamp);
-        return seen.putIfAbsent(key, timestamp) == null;
+        long now = clock.instant().getEpochSecond();
+        expire(now);
+        if (seen.contains(key)) {
+            return false;
+        }
+        if (size.incrementAndGet() > maxEntries) {
+            size.decrementAndGet();
+            return false;
+        }
+        long expiry = Math.min(Math.max(now, timestamp.getEpochSecond()) + ttlSeconds + 1, now + buckets.length - 1);
+        if (!seen.add(key)) {
+            size.decrementAndGet();
+            return false;
+        }
+        bucket(expiry).add(key, expiry);
+        return true;
+    }
+
+    /**
+     * Number of live nonces.
+     */
+    public int size() {
+        return size.get();
     }
 
-    private void purge(Instant now) {
-        Instant cutoff = now.minusSeconds(ttlSeconds);
-        for (Map.Entry<String, Instant> entry : seen.entrySet()) {
-            if (entry.getValue().isBefore(cutoff)) {
-                seen.remove(entry.getKey());
+    private void expire(long now) {
+        if (expiredThrough >= now || !expiryLock.tryLock()) {
+            return;
+        }
+        try {
+            long from = expiredThrough == Long.MIN_VALUE ? now : expiredThrough + 1;
+            long seconds = Math.min(now - from + 1, buckets.length);
+            for (long second = now - seconds + 1; second <= now; second++) {
+                bucket(second).expire(now);
+            }
+            expiredThrough = now;
+        } finally {
+            expiryLock.unlock();
+        }
+    }
+
+    private Bucket bucket(long second) {
+        return buckets[(int) Math.floorMod(second, (long) buckets.length)];
+    }
+
+    /**
+     * Nonces expiring in one second. A slot still holding an older (passed) second is expired before it is
+     * reused. A slot already holding a later second, possible when a caller read the clock before another
+     * caller filed newer nonces, keeps that second: the nonce is retained longer, never shorter.
+     */
+    private final class Bucket {
+        private long second = Long.MIN_VALUE;
+        private List<String> keys = new ArrayList<>();
+
+        private synchronized void add(String key, long expiry) {
+            if (second < expiry) {
+                removeAll();
+                second = expiry;
+            }
+            keys.add(key);
+        }
+
+        private synchronized void expire(long now) {
+            if (second <= now) {
+                removeAll();
+            }
+        }
+
+        private void removeAll() {
+            for (String key : keys) {
+                if (seen.remove(key)) {
+                    size.decrementAndGet();
+                }
             }
+            keys = new ArrayList<>();
         }
     }
 }
@@ -1,6 +1,7 @@
 package net.spookly.hyprox.registry;
 
 import java.time.Instant;
+import java.util.List;
 
 import lombok.Value;
 import lombok.experimental.Accessors;
@@ -19,6 +20,7 @@ public class RegistryEvent {
     int port;
     Integer weight;
     Integer maxPlayers;
+    List<String> tags;
     String orchestratorId;
     Instant lastHeartbeat;
     Instant expiresAt;
@@ -34,6 +36,7 @@ public class RegistryEvent {
                 backend.port(),
                 backend.weight(),
                 backend.maxPlayers(),
+                backend.tags(),
                 backend.orchestratorId(),
                 backend.lastHeartbeat(),
                 backend.expiresAt(),
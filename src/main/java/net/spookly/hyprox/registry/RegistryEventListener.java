@@ -1,5 +1,7 @@
 package net.spookly.hyprox.registry;
 
+import java.util.List;
+
 /**
  * Listener for registry audit events.
  */
@@ -9,4 +11,13 @@ public interface RegistryEventListener {
     };
 
     void onEvent(RegistryEvent event);
+
+    /**
+     * Events of one registry change or batch, in the order they happened. Override to handle a batch at once.
+     */
+    default void onEvents(List<RegistryEvent> events) {
+        for (RegistryEvent event : events) {
+            onEvent(event);
+        }
+    }
 }
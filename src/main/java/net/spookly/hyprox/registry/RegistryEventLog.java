@@ -0,0 +1,141 @@
+package net.spookly.hyprox.registry;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import net.spookly.hyprox.config.HyproxConfig;
+
+/**
+ * Bounded in-memory log of registry events for the watch endpoint.
+ * <p>
+ * Every event is numbered with the next watch epoch (1, 2, 3, ...) in the order it was logged. Watchers
+ * resume from the last epoch they saw and block until a newer event arrives. The log keeps the latest
+ * {@code capacity} events; a watcher that fell further behind gets an expired batch and has to re-list.
+ * <p>
+ * Only events of the configured types are logged. Heartbeats outnumber every other event by orders of
+ * magnitude in a large fleet and would push membership changes out of the log within seconds, so the
+ * registry server leaves them out unless {@code registry.watchHeartbeats} is set.
+ */
+public final class RegistryEventLog implements RegistryEventListener {
+    private final RegistryEvent[] events;
+    private final Set<RegistryEventType> types;
+    private long epoch;
+
+    public RegistryEventLog(int capacity) {
+        this(capacity, EnumSet.allOf(RegistryEventType.class));
+    }
+
+    public RegistryEventLog(int capacity, Set<RegistryEventType> types) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        this.events = new RegistryEvent[capacity];
+        this.types = EnumSet.copyOf(types);
+    }
+
+    /**
+     * Event log for the watch endpoint: {@code registry.eventLogSize} events, heartbeats only when
+     * {@code registry.watchHeartbeats} is set.
+     */
+    public static RegistryEventLog fromConfig(HyproxConfig.RegistryConfig registry) {
+        Set<RegistryEventType> types = EnumSet.allOf(RegistryEventType.class);
+        if (!Boolean.TRUE.equals(registry.watchHeartbeats)) {
+            types.remove(RegistryEventType.HEARTBEAT);
+        }
+        return new RegistryEventLog(registry.eventLogSize != null ? registry.eventLogSize : 4096, types);
+    }
+
+    @Override
+    public synchronized void onEvent(RegistryEvent event) {
+        if (append(event)) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void onEvents(List<RegistryEvent> batch) {
+        boolean appended = false;
+        for (RegistryEvent event : batch) {
+            appended |= append(event);
+        }
+        if (appended) {
+            notifyAll();
+        }
+    }
+
+    private boolean append(RegistryEvent event) {
+        if (!types.contains(event.type())) {
+            return false;
+        }
+        epoch++;
+        events[slot(epoch)] = event;
+        return true;
+    }
+
+    /**
+     * Epoch of the latest logged event, or 0 when nothing was logged yet.
+     */
+    public synchronized long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Events logged after {@code since}, optionally only those of {@code pool} (case-insensitive), at most
+     * {@code limit} of them. Waits up to {@code timeoutMillis} for the first matching event and returns an
+     * empty batch when none arrived in time.
+     */
+    public synchronized Batch await(long since, String pool, int limit, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMillis));
+        long cursor = since;
+        while (true) {
+            if (cursor < epoch - events.length || cursor > epoch) {
+                return new Batch(epoch, List.of(), List.of(), true);
+            }
+            List<RegistryEvent> matched = new ArrayList<>();
+            List<Long> epochs = new ArrayList<>();
+            while (cursor < epoch && matched.size() < limit) {
+                cursor++;
+                RegistryEvent event = events[slot(cursor)];
+                if (pool == null || pool.equalsIgnoreCase(event.pool())) {
+                    matched.add(event);
+                    epochs.add(cursor);
+                }
+            }
+            long remaining = deadline - System.nanoTime();
+            if (!matched.isEmpty() || remaining <= 0) {
+                return new Batch(cursor, epochs, matched, false);
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+    }
+
+    private int slot(long value) {
+        return (int) (value % events.length);
+    }
+
+    /**
+     * Result of {@link #await}: the events with their epochs and the epoch to resume from. When
+     * {@code expired} is set the requested epoch is no longer (or not yet) in the log and {@code epoch} is the
+     * latest one.
+     */
+    @Getter
+    @Accessors(fluent = true)
+    public static final class Batch {
+        private final long epoch;
+        private final List<Long> epochs;
+        private final List<RegistryEvent> events;
+        private final boolean expired;
+
+        private Batch(long epoch, List<Long> epochs, List<RegistryEvent> events, boolean expired) {
+            this.epoch = epoch;
+            this.epochs = epochs;
+            this.events = events;
+            this.expired = expired;
+        }
+    }
+}
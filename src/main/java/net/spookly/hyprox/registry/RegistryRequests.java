@@ -39,6 +39,30 @@ public final class RegistryRequests {
         public Integer drainSeconds;
     }
 
+    /**
+     * Several register, heartbeat or drain operations of one orchestrator under a single signature.
+     */
+    public static final class BatchRequest {
+        public String orchestratorId;
+        public List<BatchOperation> operations;
+    }
+
+    /**
+     * One batch item; {@code op} is register, heartbeat or drain and selects which fields apply.
+     */
+    public static final class BatchOperation {
+        public String op;
+        public String pool;
+        public String backendId;
+        public String host;
+        public Integer port;
+        public Integer weight;
+        public Integer maxPlayers;
+        public List<String> tags;
+        public Integer ttlSeconds;
+        public Integer drainSeconds;
+    }
+
     private RegistryRequests() {
     }
 }
@@ -19,4 +19,8 @@ public final class RegistryResponse {
     public static RegistryResponse error(String message) {
         return new RegistryResponse(false, message, null);
     }
+
+    public static RegistryResponse error(String message, Object data) {
+        return new RegistryResponse(false, message, data);
+    }
 }
@@ -1,6 +1,5 @@
 package net.spookly.hyprox.registry;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -13,11 +12,18 @@ import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -32,23 +38,46 @@ import net.spookly.hyprox.util.ListenAddress;
 
 /**
  * HTTP control plane for dynamic backend registration.
+ * <p>
+ * Besides listing, clients can long-poll {@code /v1/registry/watch} for registry events after a watch epoch.
+ * <p>
+ * Requests run on a virtual thread each, so blocked watches cost no platform thread. Concurrency is bounded
+ * instead by semaphores: requests beyond {@code registry.maxConcurrentRequests} (watches beyond
+ * {@code registry.watchMaxClients}) are answered with 503 (429) right away rather than queued. When
+ * {@code registry.workerThreads} is set, requests run on a fixed pool of that many platform threads plus one
+ * per allowed watcher, so watches cannot starve register and heartbeat calls; the pool queues at most one
+ * exchange per worker and answers further requests with 503. Connections are kept alive by the JDK server
+ * between exchanges.
+ * <p>
+ * The JDK server only enables TCP_NODELAY through the {@code sun.net.httpserver.nodelay} system property,
+ * which {@link net.spookly.hyprox.HyproxMain} sets at startup.
  */
 public final class RegistryServer {
     private static final ObjectMapper MAPPER = new ObjectMapper()
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+    /**
+     * Set on the thread running an exchange the fixed pool rejected; the handler only answers 503.
+     */
+    private static final ThreadLocal<Boolean> REJECTED = ThreadLocal.withInitial(() -> false);
 
     private final HyproxConfig config;
     private final BackendRegistry registry;
     private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore requests;
     private final CidrMatcher networkMatcher;
     private final NonceCache nonceCache;
     private final int maxRequestBytes;
     private final int maxListResults;
+    private final int maxBatchOperations;
     private final Set<Integer> allowedPorts;
     private final boolean allowLoopback;
     private final boolean allowPublicAddresses;
     private final RegistryRateLimiter rateLimiter;
     private final RegistryAllowlistValidator allowlistValidator;
+    private final RegistryEventLog eventLog;
+    private final Semaphore watchers;
+    private final int watchTimeoutSeconds;
 
     public RegistryServer(HyproxConfig config, BackendRegistry registry) {
         this.config = Objects.requireNonNull(config, "config");
@@ -60,14 +89,28 @@ public final class RegistryServer {
         } catch (IOException e) {
             throw new IllegalStateException("Failed to bind registry listener", e);
         }
-        this.server.setExecutor(Executors.newFixedThreadPool(4));
+        int maxWatchers = config.registry.watchMaxClients != null ? config.registry.watchMaxClients : 16;
+        int workerThreads = config.registry.workerThreads != null ? config.registry.workerThreads : 0;
+        this.executor = workerThreads > 0
+                ? fixedPool(workerThreads, maxWatchers)
+                : Executors.newVirtualThreadPerTaskExecutor();
+        this.server.setExecutor(executor);
+        this.requests = new Semaphore(
+                config.registry.maxConcurrentRequests != null ? config.registry.maxConcurrentRequests : 256);
         this.server.createContext("/v1/registry/register", new RegisterHandler());
         this.server.createContext("/v1/registry/heartbeat", new HeartbeatHandler());
         this.server.createContext("/v1/registry/drain", new DrainHandler());
+        this.server.createContext("/v1/registry/batch", new BatchHandler());
         this.server.createContext("/v1/registry/backends", new ListHandler());
+        this.server.createContext("/v1/registry/watch", new WatchHandler());
+        this.watchers = new Semaphore(maxWatchers);
+        this.watchTimeoutSeconds = config.registry.watchTimeoutSeconds != null ? config.registry.watchTimeoutSeconds : 30;
+        this.eventLog = RegistryEventLog.fromConfig(config.registry);
+        registry.addListener(eventLog);
         this.networkMatcher = CidrMatcher.from(config.registry.allowedNetworks);
         this.maxRequestBytes = config.registry.maxRequestBytes != null ? config.registry.maxRequestBytes : 64 * 1024;
         this.maxListResults = config.registry.maxListResults != null ? config.registry.maxListResults : 200;
+        this.maxBatchOperations = config.registry.maxBatchOperations != null ? config.registry.maxBatchOperations : 1000;
         this.allowedPorts = config.registry.allowedPorts == null ? Set.of() : Set.copyOf(config.registry.allowedPorts);
         this.allowLoopback = config.registry.allowLoopback != null && config.registry.allowLoopback;
         this.allowPublicAddresses = config.registry.allowPublicAddresses != null && config.registry.allowPublicAddresses;
@@ -96,17 +139,59 @@ public final class RegistryServer {
      */
     public void stop() {
         server.stop(0);
+        executor.shutdownNow();
         registry.stop();
     }
 
+    /**
+     * Fixed pool with {@code maxWatchers} threads reserved for watch long-polls on top of {@code workerThreads}.
+     * Exchanges that find every thread busy and the queue full still have to be parsed to be answered, so they
+     * run on a short-lived virtual thread that only writes 503.
+     */
+    private static ExecutorService fixedPool(int workerThreads, int maxWatchers) {
+        int threads = workerThreads + maxWatchers;
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerThreads),
+                (task, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("registry stopped");
+                    }
+                    Thread.ofVirtual().start(() -> {
+                        REJECTED.set(true);
+                        task.run();
+                    });
+                });
+    }
+
+    /**
+     * Bound listener address.
+     */
+    InetSocketAddress address() {
+        return server.getAddress();
+    }
+
     private abstract class BaseHandler implements HttpHandler {
         @Override
         public final void handle(HttpExchange exchange) throws IOException {
+            boolean acquired = false;
             try {
                 if (!isAllowedRemote(exchange)) {
                     writeResponse(exchange, 403, RegistryResponse.error("remote address not allowed"));
                     return;
                 }
+                if (REJECTED.get()) {
+                    exchange.getResponseHeaders().add("Retry-After", "1");
+                    writeResponse(exchange, 503, RegistryResponse.error("registry busy"));
+                    return;
+                }
+                if (countsTowardsRequestLimit()) {
+                    acquired = requests.tryAcquire();
+                    if (!acquired) {
+                        exchange.getResponseHeaders().add("Retry-After", "1");
+                        writeResponse(exchange, 503, RegistryResponse.error("registry busy"));
+                        return;
+                    }
+                }
                 if (!rateLimiter.tryAcquire(exchange.getRemoteAddress().getAddress())) {
                     writeResponse(exchange, 429, RegistryResponse.error("rate limit exceeded"));
                     return;
@@ -123,12 +208,22 @@ public final class RegistryServer {
             } catch (Exception e) {
                 writeResponse(exchange, 500, RegistryResponse.error("internal error"));
             } finally {
+                if (acquired) {
+                    requests.release();
+                }
                 exchange.close();
             }
         }
 
         protected abstract void handleAuthorized(HttpExchange exchange, byte[] body) throws IOException;
 
+        /**
+         * Whether the request holds a {@code registry.maxConcurrentRequests} permit; watches have their own limit.
+         */
+        protected boolean countsTowardsRequestLimit() {
+            return true;
+        }
+
         protected <T> T readJson(byte[] payload, Class<T> type) throws IOException {
             if (payload == null || payload.length == 0) {
                 throw new IllegalArgumentException("request body required");
@@ -140,23 +235,50 @@ public final class RegistryServer {
             }
         }
 
+        /**
+         * Read the body into one array. A declared {@code Content-Length} is checked against
+         * {@code maxRequestBytes} before reading and sizes the array exactly; chunked bodies are read
+         * incrementally up to the limit.
+         */
         protected byte[] readBodyBytes(HttpExchange exchange) throws IOException {
+            long declared = contentLength(exchange);
+            if (declared > maxRequestBytes) {
+                throw new RequestTooLargeException();
+            }
             try (InputStream input = exchange.getRequestBody()) {
-                if (input == null) {
+                if (input == null || declared == 0) {
                     return new byte[0];
                 }
-                ByteArrayOutputStream output = new ByteArrayOutputStream();
-                byte[] buffer = new byte[8192];
-                int total = 0;
-                int read;
-                while ((read = input.read(buffer)) != -1) {
-                    total += read;
-                    if (total > maxRequestBytes) {
-                        throw new RequestTooLargeException();
+                if (declared > 0) {
+                    byte[] body;
+                    try {
+                        body = input.readNBytes((int) declared);
+                    } catch (IOException e) {
+                        // The JDK server reports a body cut short by the client as an IOException.
+                        throw new IllegalArgumentException("truncated request body");
                     }
-                    output.write(buffer, 0, read);
+                    if (body.length != declared) {
+                        throw new IllegalArgumentException("truncated request body");
+                    }
+                    return body;
+                }
+                byte[] body = input.readNBytes(maxRequestBytes + 1);
+                if (body.length > maxRequestBytes) {
+                    throw new RequestTooLargeException();
                 }
-                return output.toByteArray();
+                return body;
+            }
+        }
+
+        private long contentLength(HttpExchange exchange) {
+            String raw = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (raw == null || raw.isEmpty()) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(raw.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid Content-Length");
             }
         }
     }
@@ -170,33 +292,7 @@ public final class RegistryServer {
             }
             RegistryRequests.RegisterRequest request = readJson(body, RegistryRequests.RegisterRequest.class);
             allowlistValidator.validateOrchestrator(request.orchestratorId, exchange.getRemoteAddress().getAddress());
-            allowlistValidator.validatePool(request.pool, request.orchestratorId);
-            allowlistValidator.validateBackendId(request.backendId, request.orchestratorId);
-            requireNonBlank(request.host, "host");
-            int port = requirePort(request.port, "port");
-            validateBackendPort(port);
-            validateBackendSanAllowlist(request.host);
-            validateBackendHost(request.host);
-
-            RegisteredBackend backend = new RegisteredBackend(
-                    request.backendId,
-                    request.pool,
-                    request.host,
-                    port,
-                    request.weight,
-                    request.maxPlayers,
-                    request.tags,
-                    request.orchestratorId,
-                    Instant.now(),
-                    Instant.now(),
-                    false
-            );
-            RegisteredBackend stored = registry.register(backend, request.ttlSeconds);
-            Map<String, Object> data = new HashMap<>();
-            data.put("backendId", stored.id());
-            data.put("pool", stored.pool());
-            data.put("expiresAt", stored.expiresAt().toString());
-            writeResponse(exchange, 200, RegistryResponse.ok("registered", data));
+            writeResponse(exchange, 200, RegistryResponse.ok("registered", registry.batch(batch -> register(batch, request))));
         }
     }
 
@@ -209,12 +305,8 @@ public final class RegistryServer {
             }
             RegistryRequests.HeartbeatRequest request = readJson(body, RegistryRequests.HeartbeatRequest.class);
             allowlistValidator.validateOrchestrator(request.orchestratorId, exchange.getRemoteAddress().getAddress());
-            requireNonBlank(request.backendId, "backendId");
-            RegisteredBackend backend = registry.heartbeat(request.backendId, request.orchestratorId, request.ttlSeconds);
-            Map<String, Object> data = new HashMap<>();
-            data.put("backendId", backend.id());
-            data.put("expiresAt", backend.expiresAt().toString());
-            writeResponse(exchange, 200, RegistryResponse.ok("heartbeat", data));
+            writeResponse(exchange, 200, RegistryResponse.ok("heartbeat", registry.batch(
+                    batch -> heartbeat(batch, request.orchestratorId, request.backendId, request.ttlSeconds))));
         }
     }
 
@@ -227,13 +319,92 @@ public final class RegistryServer {
             }
             RegistryRequests.DrainRequest request = readJson(body, RegistryRequests.DrainRequest.class);
             allowlistValidator.validateOrchestrator(request.orchestratorId, exchange.getRemoteAddress().getAddress());
-            requireNonBlank(request.backendId, "backendId");
-            RegisteredBackend backend = registry.drain(request.backendId, request.orchestratorId, request.drainSeconds);
+            writeResponse(exchange, 200, RegistryResponse.ok("drain", registry.batch(
+                    batch -> drain(batch, request.orchestratorId, request.backendId, request.drainSeconds))));
+        }
+    }
+
+    private final class BatchHandler extends BaseHandler {
+        @Override
+        protected void handleAuthorized(HttpExchange exchange, byte[] body) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                writeResponse(exchange, 405, RegistryResponse.error("method not allowed"));
+                return;
+            }
+            RegistryRequests.BatchRequest request = readJson(body, RegistryRequests.BatchRequest.class);
+            allowlistValidator.validateOrchestrator(request.orchestratorId, exchange.getRemoteAddress().getAddress());
+            if (request.operations == null || request.operations.isEmpty()) {
+                throw new IllegalArgumentException("operations is required");
+            }
+            if (request.operations.size() > maxBatchOperations) {
+                throw new IllegalArgumentException("operations must not exceed " + maxBatchOperations);
+            }
+            List<Map<String, Object>> results = registry.batch(batch -> applyAll(batch, request));
+            int failed = 0;
+            for (Map<String, Object> result : results) {
+                if (!Boolean.TRUE.equals(result.get("ok"))) {
+                    failed++;
+                }
+            }
             Map<String, Object> data = new HashMap<>();
-            data.put("backendId", backend.id());
-            data.put("draining", backend.draining());
-            data.put("expiresAt", backend.expiresAt().toString());
-            writeResponse(exchange, 200, RegistryResponse.ok("drain", data));
+            data.put("count", results.size());
+            data.put("failed", failed);
+            data.put("results", results);
+            writeResponse(exchange, 200, RegistryResponse.ok("batch", data));
+        }
+
+        /**
+         * Apply every operation within one registry batch, so listeners are notified once for the whole request.
+         */
+        private List<Map<String, Object>> applyAll(BackendRegistry.Batch batch, RegistryRequests.BatchRequest request) {
+            List<Map<String, Object>> results = new java.util.ArrayList<>(request.operations.size());
+            for (int i = 0; i < request.operations.size(); i++) {
+                RegistryRequests.BatchOperation operation = request.operations.get(i);
+                Map<String, Object> result;
+                try {
+                    result = apply(batch, request.orchestratorId, operation);
+                    result.put("ok", true);
+                } catch (IllegalArgumentException e) {
+                    result = new HashMap<>();
+                    result.put("backendId", operation == null ? null : operation.backendId);
+                    result.put("ok", false);
+                    result.put("message", e.getMessage());
+                }
+                result.put("index", i);
+                result.put("op", operation == null ? null : operation.op);
+                results.add(result);
+            }
+            return results;
+        }
+
+        private Map<String, Object> apply(BackendRegistry.Batch batch,
+                                          String orchestratorId,
+                                          RegistryRequests.BatchOperation operation) {
+            if (operation == null || operation.op == null) {
+                throw new IllegalArgumentException("op is required");
+            }
+            switch (operation.op.toLowerCase(Locale.ROOT)) {
+                case "register" -> {
+                    RegistryRequests.RegisterRequest register = new RegistryRequests.RegisterRequest();
+                    register.orchestratorId = orchestratorId;
+                    register.pool = operation.pool;
+                    register.backendId = operation.backendId;
+                    register.host = operation.host;
+                    register.port = operation.port;
+                    register.weight = operation.weight;
+                    register.maxPlayers = operation.maxPlayers;
+                    register.tags = operation.tags;
+                    register.ttlSeconds = operation.ttlSeconds;
+                    return register(batch, register);
+                }
+                case "heartbeat" -> {
+                    return heartbeat(batch, orchestratorId, operation.backendId, operation.ttlSeconds);
+                }
+                case "drain" -> {
+                    return drain(batch, orchestratorId, operation.backendId, operation.drainSeconds);
+                }
+                default -> throw new IllegalArgumentException("op must be register, heartbeat or drain");
+            }
         }
     }
 
@@ -268,6 +439,115 @@ public final class RegistryServer {
         }
     }
 
+    private final class WatchHandler extends BaseHandler {
+        @Override
+        protected boolean countsTowardsRequestLimit() {
+            return false;
+        }
+
+        @Override
+        protected void handleAuthorized(HttpExchange exchange, byte[] body) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                writeResponse(exchange, 405, RegistryResponse.error("method not allowed"));
+                return;
+            }
+            String orchestratorId = exchange.getRequestHeaders().getFirst("X-Hyprox-Orchestrator");
+            allowlistValidator.validateOrchestrator(orchestratorId, exchange.getRemoteAddress().getAddress());
+            Map<String, String> params = parseQueryParams(exchange.getRequestURI());
+            String pool = params.get("pool");
+            if (pool != null && pool.trim().isEmpty()) {
+                pool = null;
+            }
+            int limit = Math.min(parsePositiveInt(params.get("limit"), maxListResults), maxListResults);
+            int timeoutSeconds = Math.min(parseNonNegativeInt(params.get("timeoutSeconds"), watchTimeoutSeconds),
+                    watchTimeoutSeconds);
+            String rawEpoch = params.get("epoch");
+            if (rawEpoch == null || rawEpoch.isEmpty()) {
+                writeResponse(exchange, 200, RegistryResponse.ok("ok", watchView(eventLog.epoch(), List.of(), List.of())));
+                return;
+            }
+            long since = parseEpoch(rawEpoch);
+            if (!watchers.tryAcquire()) {
+                writeResponse(exchange, 429, RegistryResponse.error("too many watchers"));
+                return;
+            }
+            RegistryEventLog.Batch batch;
+            try {
+                batch = eventLog.await(since, pool, limit, timeoutSeconds * 1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writeResponse(exchange, 503, RegistryResponse.error("registry stopping"));
+                return;
+            } finally {
+                watchers.release();
+            }
+            Map<String, Object> data = watchView(batch.epoch(), batch.epochs(), batch.events());
+            if (batch.expired()) {
+                writeResponse(exchange, 410, RegistryResponse.error("epoch expired; list backends and watch from the returned epoch", data));
+                return;
+            }
+            writeResponse(exchange, 200, RegistryResponse.ok("ok", data));
+        }
+    }
+
+    /**
+     * Validate and apply a registration; the orchestrator itself must already be validated.
+     */
+    private Map<String, Object> register(BackendRegistry.Batch batch, RegistryRequests.RegisterRequest request) {
+        allowlistValidator.validatePool(request.pool, request.orchestratorId);
+        allowlistValidator.validateBackendId(request.backendId, request.orchestratorId);
+        requireNonBlank(request.host, "host");
+        int port = requirePort(request.port, "port");
+        validateBackendPort(port);
+        validateBackendSanAllowlist(request.host);
+        validateBackendHost(request.host);
+
+        RegisteredBackend backend = new RegisteredBackend(
+                request.backendId,
+                request.pool,
+                request.host,
+                port,
+                request.weight,
+                request.maxPlayers,
+                request.tags,
+                request.orchestratorId,
+                Instant.now(),
+                Instant.now(),
+                false
+        );
+        RegisteredBackend stored = batch.register(backend, request.ttlSeconds);
+        Map<String, Object> data = new HashMap<>();
+        data.put("backendId", stored.id());
+        data.put("pool", stored.pool());
+        data.put("expiresAt", stored.expiresAt().toString());
+        return data;
+    }
+
+    private Map<String, Object> heartbeat(BackendRegistry.Batch batch,
+                                          String orchestratorId,
+                                          String backendId,
+                                          Integer ttlSeconds) {
+        requireNonBlank(backendId, "backendId");
+        RegisteredBackend backend = batch.heartbeat(backendId, orchestratorId, ttlSeconds);
+        Map<String, Object> data = new HashMap<>();
+        data.put("backendId", backend.id());
+        data.put("expiresAt", backend.expiresAt().toString());
+        return data;
+    }
+
+    private Map<String, Object> drain(BackendRegistry.Batch batch,
+                                      String orchestratorId,
+                                      String backendId,
+                                      Integer drainSeconds) {
+        requireNonBlank(backendId, "backendId");
+        RegisteredBackend backend = batch.drain(backendId, orchestratorId, drainSeconds);
+        Map<String, Object> data = new HashMap<>();
+        data.put("backendId", backend.id());
+        data.put("draining", backend.draining());
+        data.put("expiresAt", backend.expiresAt().toString());
+        return data;
+    }
+
     private void writeResponse(HttpExchange exchange, int status, RegistryResponse response) throws IOException {
         byte[] payload = MAPPER.writeValueAsBytes(response);
         exchange.getResponseHeaders().add("Content-Type", "application/json");
@@ -447,6 +727,18 @@ public final class RegistryServer {
         }
     }
 
+    private long parseEpoch(String raw) {
+        try {
+            long value = Long.parseLong(raw);
+            if (value < 0) {
+                throw new IllegalArgumentException("epoch must be 0 or greater");
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("epoch must be an integer");
+        }
+    }
+
     private boolean isPublicAddress(InetAddress address) {
         if (address.isAnyLocalAddress()
                 || address.isLoopbackAddress()
@@ -510,6 +802,33 @@ public final class RegistryServer {
         return view;
     }
 
+    private Map<String, Object> watchView(long epoch, List<Long> epochs, List<RegistryEvent> events) {
+        List<Map<String, Object>> view = new java.util.ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            RegistryEvent event = events.get(i);
+            Map<String, Object> item = new HashMap<>();
+            item.put("epoch", epochs.get(i));
+            item.put("type", event.type().name());
+            item.put("timestamp", event.timestamp().toString());
+            item.put("id", event.backendId());
+            item.put("pool", event.pool());
+            item.put("host", event.host());
+            item.put("port", event.port());
+            item.put("weight", event.weight());
+            item.put("maxPlayers", event.maxPlayers());
+            item.put("orchestratorId", event.orchestratorId());
+            item.put("lastHeartbeat", event.lastHeartbeat() == null ? null : event.lastHeartbeat().toString());
+            item.put("expiresAt", event.expiresAt() == null ? null : event.expiresAt().toString());
+            item.put("draining", event.draining());
+            view.add(item);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("epoch", epoch);
+        data.put("count", view.size());
+        data.put("events", view);
+        return data;
+    }
+
     private static final class RequestTooLargeException extends RuntimeException {
         private RequestTooLargeException() {
             super("request too large");
@@ -0,0 +1,324 @@
+package net.spookly.hyprox.registry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.spookly.hyprox.config.HyproxConfig;
+
+/**
+ * Local persistence for dynamic registrations: a compact snapshot plus an append-only log of changes.
+ * <p>
+ * Both files hold one JSON record per line. Every registry event is turned into a record carrying the
+ * backend's full state (or its removal), so replay is last-write-wins per backend id. Records are buffered and
+ * written with one {@link FileChannel} write and fsync per flush interval; several changes to one backend in
+ * the same interval (typically heartbeats) collapse into one record. A crash loses at most the last flush
+ * interval, which the next heartbeat repairs. Each snapshot interval the live registry is written to a new
+ * snapshot file, atomically moved into place, and the log is truncated.
+ * <p>
+ * Registry events only touch the in-memory buffer under the store monitor. File writes, fsyncs and compaction
+ * run under a separate file lock, so registry mutations never wait on the disk.
+ */
+public final class RegistryStore implements RegistryEventListener {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final String SNAPSHOT_FILE = "registry.snapshot";
+    private static final String LOG_FILE = "registry.wal";
+
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final int flushIntervalMillis;
+    private final int snapshotIntervalSeconds;
+    private final Object fileLock = new Object();
+    private Map<String, Record> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private FileChannel log;
+
+    public RegistryStore(Path directory, int flushIntervalMillis, int snapshotIntervalSeconds) {
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.logPath = directory.resolve(LOG_FILE);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    /**
+     * Store configured under {@code registry.persistence}, or null when persistence is disabled.
+     */
+    public static RegistryStore fromConfig(HyproxConfig config) {
+        if (config.registry == null || config.registry.persistence == null
+                || !Boolean.TRUE.equals(config.registry.persistence.enabled)) {
+            return null;
+        }
+        HyproxConfig.RegistryPersistenceConfig persistence = config.registry.persistence;
+        int flushMillis = persistence.flushIntervalMillis != null ? persistence.flushIntervalMillis : 200;
+        int snapshotSeconds = persistence.snapshotIntervalSeconds != null ? persistence.snapshotIntervalSeconds : 60;
+        return new RegistryStore(Path.of(persistence.path), flushMillis, snapshotSeconds);
+    }
+
+    /**
+     * Replay the snapshot and the log. Returns the last recorded state of every backend that was not
+     * removed; expiry is left to the caller. A torn last line from a crash is skipped.
+     */
+    public List<RegisteredBackend> load() {
+        Map<String, Record> state = new LinkedHashMap<>();
+        replay(snapshotPath, state);
+        replay(logPath, state);
+        List<RegisteredBackend> backends = new ArrayList<>(state.size());
+        for (Record record : state.values()) {
+            backends.add(record.toBackend());
+        }
+        return backends;
+    }
+
+    /**
+     * Write an initial snapshot of {@code live}, open the log and start flushing and compacting.
+     */
+    public void start(Supplier<Collection<RegisteredBackend>> live) {
+        try {
+            Files.createDirectories(snapshotPath.getParent());
+            compact(live);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open registry store " + snapshotPath.getParent(), e);
+        }
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> compactQuietly(live), snapshotIntervalSeconds,
+                snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Flush pending records and close the log.
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+        synchronized (fileLock) {
+            flushQuietly();
+            if (log != null) {
+                try {
+                    log.close();
+                } catch (IOException ignored) {
+                    // closing after a final flush
+                }
+                log = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onEvent(RegistryEvent event) {
+        if (event.backendId() != null) {
+            pending.put(event.backendId(), Record.from(event));
+        }
+    }
+
+    @Override
+    public synchronized void onEvents(List<RegistryEvent> events) {
+        for (RegistryEvent event : events) {
+            onEvent(event);
+        }
+    }
+
+    /**
+     * Write buffered records to the log with one write and one fsync. The buffer is swapped out under the
+     * store monitor; serialization and I/O happen outside it.
+     */
+    void flush() throws IOException {
+        synchronized (fileLock) {
+            if (log == null) {
+                return;
+            }
+            Map<String, Record> batch = takePending();
+            if (batch.isEmpty()) {
+                return;
+            }
+            StringBuilder lines = new StringBuilder();
+            for (Record record : batch.values()) {
+                lines.append(MAPPER.writeValueAsString(record)).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            log.force(false);
+        }
+    }
+
+    /**
+     * Replace the snapshot with the live registry and start an empty log. The buffer is cut before the
+     * registry is listed: every record dropped at the cut was emitted after its change was applied, so the
+     * listing already holds it. Records buffered after the cut stay pending and go to the new log.
+     */
+    void compact(Supplier<Collection<RegisteredBackend>> live) throws IOException {
+        synchronized (fileLock) {
+            takePending();
+            writeSnapshot(live.get());
+        }
+    }
+
+    private synchronized Map<String, Record> takePending() {
+        if (pending.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Record> batch = pending;
+        pending = new LinkedHashMap<>();
+        return batch;
+    }
+
+    private void writeSnapshot(Collection<RegisteredBackend> live) throws IOException {
+        Path temp = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        StringBuilder lines = new StringBuilder();
+        for (RegisteredBackend backend : live) {
+            lines.append(MAPPER.writeValueAsString(Record.from(backend))).append('\n');
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (log != null) {
+            log.close();
+        }
+        log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        log.force(true);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to write registry log: " + e.getMessage());
+        }
+    }
+
+    private void compactQuietly(Supplier<Collection<RegisteredBackend>> live) {
+        try {
+            compact(live);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to write registry snapshot: " + e.getMessage());
+        }
+    }
+
+    private static void replay(Path path, Map<String, Record> state) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Record record;
+                try {
+                    record = MAPPER.readValue(line, Record.class);
+                } catch (IOException e) {
+                    System.err.println("Skipping unreadable registry record in " + path.getFileName());
+                    continue;
+                }
+                if (record.id == null) {
+                    continue;
+                }
+                if (record.removed) {
+                    state.remove(record.id);
+                } else {
+                    state.put(record.id, record);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+
+    /**
+     * One persisted line: a backend's full state, or its removal when {@code removed} is set.
+     */
+    static final class Record {
+        public String id;
+        public String pool;
+        public String host;
+        public int port;
+        public Integer weight;
+        public Integer maxPlayers;
+        public List<String> tags;
+        public String orchestratorId;
+        public Long lastHeartbeat;
+        public Long expiresAt;
+        public boolean draining;
+        public boolean removed;
+
+        static Record from(RegistryEvent event) {
+            Record record = new Record();
+            record.id = event.backendId();
+            if (event.type() == RegistryEventType.EXPIRE) {
+                record.removed = true;
+                return record;
+            }
+            record.pool = event.pool();
+            record.host = event.host();
+            record.port = event.port();
+            record.weight = event.weight();
+            record.maxPlayers = event.maxPlayers();
+            record.tags = event.tags();
+            record.orchestratorId = event.orchestratorId();
+            record.lastHeartbeat = toMillis(event.lastHeartbeat());
+            record.expiresAt = toMillis(event.expiresAt());
+            record.draining = event.draining();
+            return record;
+        }
+
+        static Record from(RegisteredBackend backend) {
+            Record record = new Record();
+            record.id = backend.id();
+            record.pool = backend.pool();
+            record.host = backend.host();
+            record.port = backend.port();
+            record.weight = backend.weight();
+            record.maxPlayers = backend.maxPlayers();
+            record.tags = backend.tags();
+            record.orchestratorId = backend.orchestratorId();
+            record.lastHeartbeat = toMillis(backend.lastHeartbeat());
+            record.expiresAt = toMillis(backend.expiresAt());
+            record.draining = backend.draining();
+            return record;
+        }
+
+        RegisteredBackend toBackend() {
+            return new RegisteredBackend(id, pool, host, port, weight, maxPlayers, tags, orchestratorId,
+                    toInstant(lastHeartbeat), toInstant(expiresAt), draining);
+        }
+
+        private static Long toMillis(Instant instant) {
+            return instant == null ? null : instant.toEpochMilli();
+        }
+
+        private static Instant toInstant(Long millis) {
+            return millis == null ? null : Instant.ofEpochMilli(millis);
+        }
+    }
+}
@@ -1,45 +1,89 @@
 package net.spookly.hyprox.routing;
 
+import java.util.Locale;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Tracks per-backend capacity reservations using configured max player counts.
+ * Tracks per-backend active reservations. Backends with a configured max player count are capped at it;
+ * the others are counted without a cap so load-aware policies can compare them. A per-pool total is kept
+ * alongside so average load is available without summing the backends.
  */
 public final class BackendCapacityTracker {
     private final ConcurrentMap<String, AtomicInteger> activeCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> poolCounts = new ConcurrentHashMap<>();
 
     /**
      * Attempt to reserve capacity for the provided backend target.
      */
     public BackendReservation tryReserve(BackendTarget target) {
         Objects.requireNonNull(target, "target");
-        Integer maxPlayers = target.maxPlayers();
-        if (maxPlayers == null || maxPlayers <= 0) {
-            return BackendReservation.unlimited(target);
-        }
-        String key = backendKey(target);
+        return tryReserve(target, backendKey(target));
+    }
+
+    /**
+     * Reserve capacity using a key precomputed with {@link #backendKey(BackendTarget)}.
+     */
+    BackendReservation tryReserve(BackendTarget target, String key) {
         if (key == null) {
             return BackendReservation.unlimited(target);
         }
+        Integer maxPlayers = target.maxPlayers();
         AtomicInteger counter = activeCounts.computeIfAbsent(key, ignored -> new AtomicInteger());
+        if (maxPlayers == null || maxPlayers <= 0) {
+            counter.incrementAndGet();
+            return reserved(target, key);
+        }
         while (true) {
             int current = counter.get();
             if (current >= maxPlayers) {
                 return null;
             }
             if (counter.compareAndSet(current, current + 1)) {
-                return BackendReservation.tracked(target, this, key);
+                return reserved(target, key);
             }
         }
     }
 
-    void release(String key) {
+    private BackendReservation reserved(BackendTarget target, String key) {
+        String pool = poolKey(target.pool());
+        if (pool != null) {
+            poolCounts.computeIfAbsent(pool, ignored -> new AtomicInteger()).incrementAndGet();
+        }
+        return BackendReservation.tracked(target, this, key);
+    }
+
+    /**
+     * Active reservations for a key precomputed with {@link #backendKey(BackendTarget)}.
+     */
+    int activeCount(String key) {
+        if (key == null) {
+            return 0;
+        }
+        AtomicInteger counter = activeCounts.get(key);
+        return counter == null ? 0 : Math.max(0, counter.get());
+    }
+
+    /**
+     * Active reservations across all backends of a pool (pool names compare case-insensitively).
+     */
+    int poolActiveCount(String pool) {
+        String key = poolKey(pool);
+        AtomicInteger counter = key == null ? null : poolCounts.get(key);
+        return counter == null ? 0 : Math.max(0, counter.get());
+    }
+
+    void release(BackendTarget target, String key) {
         if (key == null) {
             return;
         }
+        String pool = poolKey(target.pool());
+        AtomicInteger poolCounter = pool == null ? null : poolCounts.get(pool);
+        if (poolCounter != null) {
+            poolCounter.decrementAndGet();
+        }
         AtomicInteger counter = activeCounts.get(key);
         if (counter == null) {
             return;
@@ -50,7 +94,7 @@ public final class BackendCapacityTracker {
         }
     }
 
-    private String backendKey(BackendTarget target) {
+    static String backendKey(BackendTarget target) {
         String base = normalizeId(target.id());
         if (base == null) {
             base = normalizeHostPort(target.host(), target.port());
@@ -65,7 +109,12 @@ public final class BackendCapacityTracker {
         return pool + ":" + base;
     }
 
-    private String normalizeId(String value) {
+    private static String poolKey(String pool) {
+        String normalized = normalizeId(pool);
+        return normalized == null ? null : normalized.toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalizeId(String value) {
         if (value == null) {
             return null;
         }
@@ -76,7 +125,7 @@ public final class BackendCapacityTracker {
         return trimmed;
     }
 
-    private String normalizeHostPort(String host, int port) {
+    private static String normalizeHostPort(String host, int port) {
         if (host == null) {
             return null;
         }
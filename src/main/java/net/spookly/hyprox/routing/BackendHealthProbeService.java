@@ -20,6 +20,7 @@ public final class BackendHealthProbeService implements AutoCloseable {
     private final RoutingService routingService;
     private final BackendHealthTracker healthTracker;
     private final BackendHealthProbe probe;
+    private final BackendLatencyTracker latencyTracker;
     private final ScheduledExecutorService scheduler;
     private final AtomicBoolean stopped = new AtomicBoolean(false);
     private ScheduledFuture<?> scheduledTask;
@@ -31,10 +32,22 @@ public final class BackendHealthProbeService implements AutoCloseable {
                                      RoutingService routingService,
                                      BackendHealthTracker healthTracker,
                                      BackendHealthProbe probe) {
+        this(config, routingService, healthTracker, probe, null);
+    }
+
+    /**
+     * Create a probe service that also records successful probe round trips as backend latency samples.
+     */
+    public BackendHealthProbeService(HyproxConfig config,
+                                     RoutingService routingService,
+                                     BackendHealthTracker healthTracker,
+                                     BackendHealthProbe probe,
+                                     BackendLatencyTracker latencyTracker) {
         this.config = Objects.requireNonNull(config, "config");
         this.routingService = Objects.requireNonNull(routingService, "routingService");
         this.healthTracker = Objects.requireNonNull(healthTracker, "healthTracker");
         this.probe = Objects.requireNonNull(probe, "probe");
+        this.latencyTracker = latencyTracker;
         this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory());
     }
 
@@ -91,6 +104,7 @@ public final class BackendHealthProbeService implements AutoCloseable {
     }
 
     private void probeBackend(BackendTarget target, int timeoutMs) {
+        long startNanos = System.nanoTime();
         try {
             probe.probe(target, timeoutMs).whenComplete((success, error) -> {
                 if (error != null || !Boolean.TRUE.equals(success)) {
@@ -98,6 +112,9 @@ public final class BackendHealthProbeService implements AutoCloseable {
                     return;
                 }
                 healthTracker.recordActiveSuccess(target);
+                if (latencyTracker != null) {
+                    latencyTracker.record(target, System.nanoTime() - startNanos);
+                }
             });
         } catch (RuntimeException e) {
             healthTracker.recordActiveFailure(target);
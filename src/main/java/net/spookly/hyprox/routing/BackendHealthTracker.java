@@ -3,6 +3,7 @@ package net.spookly.hyprox.routing;
 import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tracks backend health scores from passive failures and optional active probes.
@@ -17,6 +18,7 @@ public final class BackendHealthTracker {
     private static final int ACTIVE_SUCCESS_REWARD = 20;
 
     private final Map<String, HealthState> states = new ConcurrentHashMap<>();
+    private final AtomicInteger degraded = new AtomicInteger();
 
     /**
      * Record a passive failure (connect timeout, handshake error, etc.).
@@ -65,6 +67,13 @@ public final class BackendHealthTracker {
         return score(target) >= UNHEALTHY_THRESHOLD;
     }
 
+    /**
+     * True when every tracked backend is at full score, so selection can ignore health entirely.
+     */
+    public boolean noneDegraded() {
+        return degraded.get() == 0;
+    }
+
     private void updateScore(BackendTarget target, int delta, boolean failure, boolean active) {
         String id = backendId(target);
         if (id == null) {
@@ -73,7 +82,12 @@ public final class BackendHealthTracker {
         Instant now = Instant.now();
         states.compute(id, (key, state) -> {
             HealthState current = state == null ? new HealthState() : state;
+            boolean wasDegraded = current.score < MAX_SCORE;
             current.apply(delta, failure, active, now);
+            boolean isDegraded = current.score < MAX_SCORE;
+            if (wasDegraded != isDegraded) {
+                degraded.addAndGet(isDegraded ? 1 : -1);
+            }
             return current;
         });
     }
@@ -0,0 +1,78 @@
+package net.spookly.hyprox.routing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Per-backend latency estimates from backend connects and active probes.
+ * <p>
+ * Each backend keeps an exponentially weighted mean and mean deviation in the style of TCP's smoothed RTT
+ * (gains 1/8 and 1/4). {@link #estimateNanos(BackendTarget)} is the mean plus four deviations, so a backend
+ * whose latency starts to spread out is penalised before its mean has moved much.
+ */
+public final class BackendLatencyTracker {
+    private static final double MEAN_GAIN = 0.125;
+    private static final double DEVIATION_GAIN = 0.25;
+    private static final int DEVIATION_FACTOR = 4;
+
+    private final Map<String, Estimate> estimates = new ConcurrentHashMap<>();
+
+    /**
+     * Record one latency sample for a backend.
+     */
+    public void record(BackendTarget target, long latencyNanos) {
+        String id = backendId(target);
+        if (id == null || latencyNanos < 0) {
+            return;
+        }
+        estimates.compute(id, (key, estimate) -> {
+            Estimate current = estimate == null ? new Estimate() : estimate;
+            current.apply(latencyNanos);
+            return current;
+        });
+    }
+
+    /**
+     * Latency estimate for a backend in nanoseconds, or -1 before its first sample.
+     */
+    public long estimateNanos(BackendTarget target) {
+        String id = backendId(target);
+        Estimate estimate = id == null ? null : estimates.get(id);
+        return estimate == null ? -1 : estimate.value;
+    }
+
+    /**
+     * Drop the estimates of backend ids for which {@code known} is false, such as dynamic backends that
+     * expired from the registry.
+     */
+    public void retainIf(Predicate<String> known) {
+        estimates.keySet().removeIf(id -> !known.test(id));
+    }
+
+    private String backendId(BackendTarget target) {
+        if (target == null || target.id() == null || target.id().trim().isEmpty()) {
+            return null;
+        }
+        return target.id();
+    }
+
+    private static final class Estimate {
+        private double mean;
+        private double deviation;
+        private boolean seeded;
+        private volatile long value;
+
+        private void apply(long sample) {
+            if (!seeded) {
+                mean = sample;
+                deviation = sample / 2D;
+                seeded = true;
+            } else {
+                deviation += DEVIATION_GAIN * (Math.abs(sample - mean) - deviation);
+                mean += MEAN_GAIN * (sample - mean);
+            }
+            value = (long) (mean + DEVIATION_FACTOR * deviation);
+        }
+    }
+}
@@ -45,7 +45,7 @@ public final class BackendReservation implements AutoCloseable {
             return;
         }
         if (released.compareAndSet(false, true)) {
-            tracker.release(key);
+            tracker.release(backend, key);
         }
     }
 
@@ -0,0 +1,115 @@
+package net.spookly.hyprox.routing;
+
+import java.util.Arrays;
+
+/**
+ * Weighted Maglev lookup table (Eisenbud et al., NSDI 2016).
+ * <p>
+ * Every backend walks its own permutation of the table slots, derived from its selection key, and claims
+ * the next free slot in turn; a backend claims slots at a rate proportional to its weight. A key is routed
+ * by hashing it to a slot, so lookups are O(1). When a backend joins or leaves, only the slots it gains or
+ * loses plus a small fraction of the others move. The table size is a prime of at least 100 slots per
+ * backend where possible, which keeps the load within about 1% of the weights.
+ */
+final class MaglevTable {
+    private static final int[] SIZES = {65537, 131071, 262139, 524287, 1048573, 2097143};
+    private static final int SLOTS_PER_BACKEND = 100;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int[] slots;
+
+    private MaglevTable(int[] slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * Populate a table for backends identified by {@code keys}, with positive {@code weights}.
+     */
+    static MaglevTable build(byte[][] keys, int[] weights) {
+        int backends = keys.length;
+        int size = tableSize(backends);
+        int[] slots = new int[size];
+        Arrays.fill(slots, -1);
+        if (backends == 0) {
+            return new MaglevTable(slots);
+        }
+        long[] position = new long[backends];
+        long[] skip = new long[backends];
+        long[] claimed = new long[backends];
+        int maxWeight = 1;
+        for (int i = 0; i < backends; i++) {
+            long hash = fnv1a64(keys[i]);
+            position[i] = Long.remainderUnsigned(mix(hash), size);
+            skip[i] = Long.remainderUnsigned(mix(hash ^ 0x9e3779b97f4a7c15L), size - 1) + 1;
+            maxWeight = Math.max(maxWeight, weights[i]);
+        }
+        int filled = 0;
+        for (long iteration = 1; filled < size; iteration++) {
+            for (int i = 0; i < backends && filled < size; i++) {
+                if (claimed[i] * maxWeight >= iteration * Math.max(1, weights[i])) {
+                    continue;
+                }
+                int slot = (int) position[i];
+                while (slots[slot] >= 0) {
+                    slot = advance(slot, skip[i], size);
+                }
+                slots[slot] = i;
+                position[i] = advance(slot, skip[i], size);
+                claimed[i]++;
+                filled++;
+            }
+        }
+        return new MaglevTable(slots);
+    }
+
+    int size() {
+        return slots.length;
+    }
+
+    /**
+     * Slot a key hash maps to.
+     */
+    int slot(long keyHash) {
+        return (int) Long.remainderUnsigned(mix(keyHash), slots.length);
+    }
+
+    /**
+     * Backend index owning {@code slot}; the index is taken modulo the table size.
+     */
+    int backend(int slot) {
+        return slots[slot % slots.length];
+    }
+
+    private static int advance(int slot, long skip, int size) {
+        long next = slot + skip;
+        return (int) (next >= size ? next - size : next);
+    }
+
+    private static int tableSize(int backends) {
+        long wanted = (long) backends * SLOTS_PER_BACKEND;
+        for (int size : SIZES) {
+            if (size >= wanted) {
+                return size;
+            }
+        }
+        return SIZES[SIZES.length - 1];
+    }
+
+    private static long fnv1a64(byte[] bytes) {
+        long hash = FNV_OFFSET;
+        for (byte element : bytes) {
+            hash = (hash ^ (element & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -5,7 +5,19 @@ package net.spookly.hyprox.routing;
  */
 public enum PoolPolicy {
     WEIGHTED("weighted"),
-    ROUND_ROBIN("round_robin");
+    ROUND_ROBIN("round_robin"),
+    /**
+     * Backend with the fewest active sessions relative to its capacity.
+     */
+    LEAST_CONNECTIONS("least_connections"),
+    /**
+     * Power of two choices: sample two backends by weight and keep the less loaded one.
+     */
+    P2C("p2c"),
+    /**
+     * Weighted random with each weight scaled by the fastest candidate's latency estimate over its own.
+     */
+    LATENCY_WEIGHTED("latency_weighted");
 
     private final String configValue;
 
@@ -22,4 +22,41 @@ public final class RoutingPlanner {
         DataPath path = pathSelector.select(result.pool());
         return new RoutingDecision(result.pool(), result.backend(), result.reservation(), path, result.reason());
     }
+
+    /**
+     * Predict the full-proxy backend for a session before its {@code Connect} arrives, or null when the
+     * prediction is not possible or the predicted pool is not proxied.
+     */
+    public BackendTarget predictFullProxyBackend(RoutingRequest request) {
+        BackendTarget backend = routingService.predict(request);
+        if (backend == null || pathSelector.select(backend.pool()) != DataPath.FULL_PROXY) {
+            return null;
+        }
+        return backend;
+    }
+
+    /**
+     * Record the latency of an established backend connect.
+     */
+    public void recordConnectLatency(BackendTarget backend, long latencyNanos) {
+        routingService.recordConnectLatency(backend, latencyNanos);
+    }
+
+    /**
+     * Record the outcome of a backend connect in the passive health score.
+     */
+    public void recordConnectResult(BackendTarget backend, boolean success) {
+        if (success) {
+            routingService.recordConnectSuccess(backend);
+        } else {
+            routingService.recordConnectFailure(backend);
+        }
+    }
+
+    /**
+     * Whether a backend may still receive new sessions (present, not draining, healthy).
+     */
+    public boolean isServiceable(BackendTarget backend) {
+        return routingService.isServiceable(backend);
+    }
 }
@@ -1,6 +1,9 @@
 package net.spookly.hyprox.routing;
 
-import lombok.AllArgsConstructor;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
 import lombok.Getter;
 import lombok.experimental.Accessors;
 
@@ -9,7 +12,6 @@ import lombok.experimental.Accessors;
  */
 @Getter
 @Accessors(fluent = true)
-@AllArgsConstructor
 public final class RoutingRequest {
     private final String clientType;
     private final String referralSource;
@@ -21,4 +23,80 @@ public final class RoutingRequest {
      * Explicit backend target id from a verified referral payload.
      */
     private final String targetBackendId;
+    /**
+     * Backend ids that must not be selected, for example after a failed connect in the same session.
+     */
+    private final Set<String> excludedBackendIds;
+    private final String language;
+    private final String username;
+    private final UUID uuid;
+    private final String clientCertificateSubject;
+    /**
+     * Client IP address literal, matched against rule source CIDRs.
+     */
+    private final String sourceAddress;
+
+    public RoutingRequest(String clientType, String referralSource, String selectionKey, String targetBackendId) {
+        this(clientType, referralSource, selectionKey, targetBackendId, Set.of());
+    }
+
+    public RoutingRequest(String clientType,
+                          String referralSource,
+                          String selectionKey,
+                          String targetBackendId,
+                          Set<String> excludedBackendIds) {
+        this(clientType, referralSource, selectionKey, targetBackendId, excludedBackendIds,
+                null, null, null, null, null);
+    }
+
+    private RoutingRequest(String clientType,
+                           String referralSource,
+                           String selectionKey,
+                           String targetBackendId,
+                           Set<String> excludedBackendIds,
+                           String language,
+                           String username,
+                           UUID uuid,
+                           String clientCertificateSubject,
+                           String sourceAddress) {
+        this.clientType = clientType;
+        this.referralSource = referralSource;
+        this.selectionKey = selectionKey;
+        this.targetBackendId = targetBackendId;
+        this.excludedBackendIds = excludedBackendIds;
+        this.language = language;
+        this.username = username;
+        this.uuid = uuid;
+        this.clientCertificateSubject = clientCertificateSubject;
+        this.sourceAddress = sourceAddress;
+    }
+
+    /**
+     * Copy of this request carrying the {@code Connect} and session fields that routing rules can match on.
+     */
+    public RoutingRequest withClientDetails(String language,
+                                            String username,
+                                            UUID uuid,
+                                            String clientCertificateSubject,
+                                            String sourceAddress) {
+        return new RoutingRequest(clientType, referralSource, selectionKey, targetBackendId, excludedBackendIds,
+                language, username, uuid, clientCertificateSubject, sourceAddress);
+    }
+
+    /**
+     * Copy of this request that additionally excludes {@code backendId}.
+     */
+    public RoutingRequest excluding(String backendId) {
+        if (backendId == null || isExcluded(backendId)) {
+            return this;
+        }
+        Set<String> excluded = new HashSet<>(excludedBackendIds == null ? Set.of() : excludedBackendIds);
+        excluded.add(backendId);
+        return new RoutingRequest(clientType, referralSource, selectionKey, targetBackendId, Set.copyOf(excluded),
+                language, username, uuid, clientCertificateSubject, sourceAddress);
+    }
+
+    public boolean isExcluded(String backendId) {
+        return backendId != null && excludedBackendIds != null && excludedBackendIds.contains(backendId);
+    }
 }
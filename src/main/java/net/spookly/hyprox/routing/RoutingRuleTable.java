@@ -0,0 +1,364 @@
+package net.spookly.hyprox.routing;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Function;
+
+import net.spookly.hyprox.config.HyproxConfig;
+import net.spookly.hyprox.util.CidrMatcher;
+
+/**
+ * Routing rules compiled into per-dimension decision tables.
+ * <p>
+ * Rule {@code i} is bit {@code i} of a bitset. Every dimension maps a lowercase request value to the set of
+ * rules it satisfies (rules that do not constrain the dimension always do), so a lookup is one hash probe per
+ * dimension and an AND over {@code rules / 64} words; the lowest remaining bit is the first matching rule in
+ * config order. Username prefixes are probed once per distinct configured prefix length, the UUID bucket
+ * indexes a precomputed table, and source CIDRs are checked last, only for rules that survived the tables.
+ */
+final class RoutingRuleTable {
+    static final RoutingRuleTable EMPTY = compile(null);
+    static final int NO_MATCH = -1;
+    static final int UNDECIDED = -2;
+    static final int UUID_BUCKETS = 100;
+
+    private final HyproxConfig.RuleConfig[] rules;
+    private final String[] pools;
+    private final int words;
+    private final ExactIndex clientType;
+    private final ExactIndex referralSource;
+    private final ExactIndex language;
+    private final ExactIndex clientCertSubject;
+    private final PrefixIndex usernamePrefix;
+    private final long[][] uuidBuckets;
+    private final CidrMatcher[] sourceCidrs;
+    private final int firstConnectRule;
+
+    private RoutingRuleTable(List<HyproxConfig.RuleConfig> rules) {
+        int size = rules.size();
+        this.rules = rules.toArray(new HyproxConfig.RuleConfig[0]);
+        this.pools = new String[size];
+        this.words = Math.max(1, (size + 63) >>> 6);
+        this.sourceCidrs = new CidrMatcher[size];
+        int connectRule = size;
+        for (int i = 0; i < size; i++) {
+            HyproxConfig.RuleConfig rule = rules.get(i);
+            pools[i] = rule.pool;
+            HyproxConfig.MatchConfig match = rule.match;
+            if (match.sourceCidrs != null && !match.sourceCidrs.isEmpty()) {
+                sourceCidrs[i] = CidrMatcher.from(match.sourceCidrs);
+            }
+            if (connectRule == size && needsConnect(match)) {
+                connectRule = i;
+            }
+        }
+        this.firstConnectRule = connectRule;
+        this.clientType = ExactIndex.build(rules, words, match -> match.clientType);
+        this.referralSource = ExactIndex.build(rules, words, match -> match.referralSource);
+        this.language = ExactIndex.build(rules, words, match -> match.language);
+        this.clientCertSubject = ExactIndex.build(rules, words, match -> match.clientCertSubject);
+        this.usernamePrefix = PrefixIndex.build(rules, words);
+        this.uuidBuckets = buildUuidBuckets(rules, words);
+    }
+
+    /**
+     * Compile rules in config order. Rules without a {@code match} block never match and are dropped.
+     */
+    static RoutingRuleTable compile(List<HyproxConfig.RuleConfig> rules) {
+        List<HyproxConfig.RuleConfig> usable = new ArrayList<>();
+        if (rules != null) {
+            for (HyproxConfig.RuleConfig rule : rules) {
+                if (rule != null && rule.match != null) {
+                    usable.add(rule);
+                }
+            }
+        }
+        return new RoutingRuleTable(usable);
+    }
+
+    int size() {
+        return pools.length;
+    }
+
+    String pool(int index) {
+        return pools[index];
+    }
+
+    HyproxConfig.RuleConfig rule(int index) {
+        return rules[index];
+    }
+
+    /**
+     * Index of the first rule matching the request, or {@link #NO_MATCH}.
+     */
+    int match(RoutingRequest request) {
+        if (pools.length == 0) {
+            return NO_MATCH;
+        }
+        long[] candidates = new long[words];
+        fillAll(candidates);
+        and(candidates, clientType, request == null ? null : request.clientType());
+        and(candidates, referralSource, request == null ? null : request.referralSource());
+        and(candidates, language, request == null ? null : request.language());
+        and(candidates, clientCertSubject, request == null ? null : request.clientCertificateSubject());
+        if (usernamePrefix != null) {
+            usernamePrefix.and(candidates, request == null ? null : request.username());
+        }
+        if (uuidBuckets != null) {
+            UUID uuid = request == null ? null : request.uuid();
+            long[] bucket = uuidBuckets[uuid == null ? UUID_BUCKETS : bucket(uuid)];
+            for (int w = 0; w < words; w++) {
+                candidates[w] &= bucket[w];
+            }
+        }
+        return firstWithSource(candidates, request == null ? null : request.sourceAddress());
+    }
+
+    /**
+     * Rule a session would match before its {@code Connect} arrives, given only session fields (certificate
+     * subject and source address). Returns {@link #NO_MATCH} when no rule can match, or {@link #UNDECIDED}
+     * when an earlier rule depends on {@code Connect} fields.
+     */
+    int predict(RoutingRequest sessionRequest) {
+        int index = match(sessionRequest);
+        if (index >= 0) {
+            return index < firstConnectRule ? index : UNDECIDED;
+        }
+        return firstConnectRule == pools.length ? NO_MATCH : UNDECIDED;
+    }
+
+    /**
+     * Stable bucket in {@code [0, 100)} for a player UUID.
+     */
+    static int bucket(UUID uuid) {
+        long hash = uuid.getMostSignificantBits() * 0x9e3779b97f4a7c15L ^ uuid.getLeastSignificantBits();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) Long.remainderUnsigned(hash, UUID_BUCKETS);
+    }
+
+    private int firstWithSource(long[] candidates, String sourceAddress) {
+        InetAddress address = null;
+        boolean parsed = false;
+        for (int w = 0; w < words; w++) {
+            long bits = candidates[w];
+            while (bits != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                CidrMatcher cidrs = sourceCidrs[index];
+                if (cidrs == null) {
+                    return index;
+                }
+                if (!parsed) {
+                    address = parseAddress(sourceAddress);
+                    parsed = true;
+                }
+                if (address != null && cidrs.isAllowed(address)) {
+                    return index;
+                }
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private void fillAll(long[] bits) {
+        Arrays.fill(bits, -1L);
+        int tail = pools.length & 63;
+        if (tail != 0) {
+            bits[words - 1] = (1L << tail) - 1;
+        }
+    }
+
+    private void and(long[] candidates, ExactIndex index, String value) {
+        if (index == null) {
+            return;
+        }
+        long[] matching = index.lookup(value);
+        for (int w = 0; w < words; w++) {
+            candidates[w] &= matching[w];
+        }
+    }
+
+    private static boolean needsConnect(HyproxConfig.MatchConfig match) {
+        return !isBlank(match.clientType)
+                || !isBlank(match.referralSource)
+                || !isBlank(match.language)
+                || !isBlank(match.usernamePrefix)
+                || match.uuidPercent != null;
+    }
+
+    private static long[][] buildUuidBuckets(List<HyproxConfig.RuleConfig> rules, int words) {
+        boolean used = false;
+        for (HyproxConfig.RuleConfig rule : rules) {
+            used |= rule.match.uuidPercent != null;
+        }
+        if (!used) {
+            return null;
+        }
+        long[][] buckets = new long[UUID_BUCKETS + 1][words];
+        for (int i = 0; i < rules.size(); i++) {
+            Integer percent = rules.get(i).match.uuidPercent;
+            long bit = 1L << (i & 63);
+            for (int bucket = 0; bucket <= UUID_BUCKETS; bucket++) {
+                boolean matches = percent == null || (bucket < UUID_BUCKETS && bucket < percent);
+                if (matches) {
+                    buckets[bucket][i >>> 6] |= bit;
+                }
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Parse an IP literal without touching DNS; anything else is treated as unknown.
+     */
+    private static InetAddress parseAddress(String value) {
+        if (isBlank(value)) {
+            return null;
+        }
+        String trimmed = value.trim();
+        boolean literal = trimmed.indexOf(':') >= 0;
+        if (!literal) {
+            literal = true;
+            for (int i = 0; i < trimmed.length() && literal; i++) {
+                char c = trimmed.charAt(i);
+                literal = c == '.' || (c >= '0' && c <= '9');
+            }
+        }
+        if (!literal) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(trimmed);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static String normalize(String value) {
+        return isBlank(value) ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * Exact, case-insensitive match on one field. Each entry already includes the rules that leave the field
+     * unconstrained.
+     */
+    private static final class ExactIndex {
+        private final Map<String, long[]> byValue;
+        private final long[] wildcard;
+
+        private ExactIndex(Map<String, long[]> byValue, long[] wildcard) {
+            this.byValue = byValue;
+            this.wildcard = wildcard;
+        }
+
+        static ExactIndex build(List<HyproxConfig.RuleConfig> rules,
+                                int words,
+                                Function<HyproxConfig.MatchConfig, String> field) {
+            Map<String, long[]> byValue = new HashMap<>();
+            long[] wildcard = new long[words];
+            for (int i = 0; i < rules.size(); i++) {
+                String value = normalize(field.apply(rules.get(i).match));
+                long bit = 1L << (i & 63);
+                if (value == null) {
+                    wildcard[i >>> 6] |= bit;
+                } else {
+                    byValue.computeIfAbsent(value, key -> new long[words])[i >>> 6] |= bit;
+                }
+            }
+            if (byValue.isEmpty()) {
+                return null;
+            }
+            for (long[] bits : byValue.values()) {
+                for (int w = 0; w < words; w++) {
+                    bits[w] |= wildcard[w];
+                }
+            }
+            return new ExactIndex(byValue, wildcard);
+        }
+
+        long[] lookup(String value) {
+            String key = normalize(value);
+            if (key == null) {
+                return wildcard;
+            }
+            long[] bits = byValue.get(key);
+            return bits == null ? wildcard : bits;
+        }
+    }
+
+    /**
+     * Case-insensitive username prefix match, probed once per distinct configured prefix length.
+     */
+    private static final class PrefixIndex {
+        private final Map<String, long[]> byPrefix;
+        private final int[] lengths;
+        private final long[] wildcard;
+
+        private PrefixIndex(Map<String, long[]> byPrefix, int[] lengths, long[] wildcard) {
+            this.byPrefix = byPrefix;
+            this.lengths = lengths;
+            this.wildcard = wildcard;
+        }
+
+        static PrefixIndex build(List<HyproxConfig.RuleConfig> rules, int words) {
+            Map<String, long[]> byPrefix = new HashMap<>();
+            TreeSet<Integer> lengths = new TreeSet<>();
+            long[] wildcard = new long[words];
+            for (int i = 0; i < rules.size(); i++) {
+                String prefix = normalize(rules.get(i).match.usernamePrefix);
+                long bit = 1L << (i & 63);
+                if (prefix == null) {
+                    wildcard[i >>> 6] |= bit;
+                } else {
+                    byPrefix.computeIfAbsent(prefix, key -> new long[words])[i >>> 6] |= bit;
+                    lengths.add(prefix.length());
+                }
+            }
+            if (byPrefix.isEmpty()) {
+                return null;
+            }
+            return new PrefixIndex(byPrefix, lengths.stream().mapToInt(Integer::intValue).toArray(), wildcard);
+        }
+
+        void and(long[] candidates, String username) {
+            String name = normalize(username);
+            int words = candidates.length;
+            long[] hits = null;
+            if (name != null) {
+                for (int length : lengths) {
+                    if (length > name.length()) {
+                        break;
+                    }
+                    long[] bits = byPrefix.get(name.substring(0, length));
+                    if (bits == null) {
+                        continue;
+                    }
+                    if (hits == null) {
+                        hits = wildcard.clone();
+                    }
+                    for (int w = 0; w < words; w++) {
+                        hits[w] |= bits[w];
+                    }
+                }
+            }
+            long[] matching = hits == null ? wildcard : hits;
+            for (int w = 0; w < words; w++) {
+                candidates[w] &= matching[w];
+            }
+        }
+    }
+}
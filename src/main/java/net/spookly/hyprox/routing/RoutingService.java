@@ -1,65 +1,147 @@
 package net.spookly.hyprox.routing;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.spookly.hyprox.config.HyproxConfig;
 import net.spookly.hyprox.registry.BackendRegistry;
-import net.spookly.hyprox.registry.RegisteredBackend;
+import net.spookly.hyprox.registry.RegistryEvent;
+import net.spookly.hyprox.registry.RegistryEventListener;
+import net.spookly.hyprox.registry.RegistryEventType;
 
 /**
  * Builds routing decisions from static config and dynamic registry entries.
+ * <p>
+ * Candidates are read from a {@link RoutingSnapshot} published through a volatile reference. Registry changes
+ * only mark the snapshot dirty; a single rebuild thread then builds at most one new snapshot for however many
+ * changes arrived meanwhile, and skips the build when no pool epoch and no config version moved (a repeated
+ * registration, for example). Routing itself never builds: it reads the published snapshot and walks its
+ * arrays without building candidate lists.
  */
 public final class RoutingService {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int P2C_SAMPLE_ATTEMPTS = 4;
+    private static final long LATENCY_WEIGHT_SCALE = 1000;
+    private static final int MAGLEV_PROBES = 64;
+
     private final HyproxConfig config;
     private final BackendRegistry registry;
     private final BackendCapacityTracker capacityTracker;
     private final BackendHealthTracker healthTracker;
+    private final BackendLatencyTracker latencyTracker;
     private final Map<String, AtomicInteger> roundRobinCounters = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong configVersion = new AtomicLong();
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(threadFactory());
+    private volatile RoutingSnapshot snapshot;
 
     public RoutingService(HyproxConfig config,
                           BackendRegistry registry,
                           BackendCapacityTracker capacityTracker,
                           BackendHealthTracker healthTracker) {
+        this(config, registry, capacityTracker, healthTracker, null);
+    }
+
+    public RoutingService(HyproxConfig config,
+                          BackendRegistry registry,
+                          BackendCapacityTracker capacityTracker,
+                          BackendHealthTracker healthTracker,
+                          BackendLatencyTracker latencyTracker) {
         this.config = Objects.requireNonNull(config, "config");
         this.registry = registry;
         this.capacityTracker = capacityTracker;
         this.healthTracker = healthTracker;
+        this.latencyTracker = latencyTracker;
+        this.snapshot = RoutingSnapshot.build(config, registry, version.incrementAndGet(), configVersion.get(), null);
+        if (registry != null) {
+            registry.addListener(new RegistryEventListener() {
+                @Override
+                public void onEvent(RegistryEvent event) {
+                    if (event.type() != RegistryEventType.HEARTBEAT) {
+                        requestRebuild();
+                    }
+                }
+
+                @Override
+                public void onEvents(List<RegistryEvent> events) {
+                    for (RegistryEvent event : events) {
+                        if (event.type() != RegistryEventType.HEARTBEAT) {
+                            requestRebuild();
+                            return;
+                        }
+                    }
+                }
+            });
+            // Picks up changes made between the initial build and the listener registration.
+            requestRebuild();
+        }
+    }
+
+    /**
+     * Rebuild the routing snapshot, for example after the routing config was changed in place. Returns once
+     * the rebuilt snapshot is published.
+     */
+    public void refresh() {
+        configVersion.incrementAndGet();
+        CompletableFuture.runAsync(this::rebuildIfStale, rebuilder).join();
     }
 
     /**
      * Route a request to a backend using pool rules and selection policy.
      */
     public RoutingResult route(RoutingRequest request) {
-        BackendTarget referred = resolveReferralTarget(request);
-        if (referred != null) {
-            BackendReservation reservation = tryReserve(referred);
+        RoutingSnapshot current = snapshot();
+        BackendTarget referred = resolveReferralTarget(current, request);
+        if (referred != null && !request.isExcluded(referred.id())) {
+            BackendReservation reservation = tryReserve(referred, BackendCapacityTracker.backendKey(referred));
             if (reservation != null) {
                 return new RoutingResult(referred.pool(), referred, reservation, "referral_target");
             }
             return new RoutingResult(referred.pool(), null, null, "pool_full");
         }
-        String pool = selectPool(request);
+        int ruleIndex = config.routing == null ? RoutingRuleTable.NO_MATCH : current.rules().match(request);
+        String pool = poolName(current, ruleIndex);
         if (isBlank(pool)) {
             return new RoutingResult(null, null, null, "no_pool");
         }
-        List<BackendTarget> candidates = listBackends(pool, false);
-        if (candidates.isEmpty()) {
+        RoutingSnapshot.Pool snapshotPool = candidatePool(current, pool, ruleIndex, request);
+        int eligible = 0;
+        int healthy = 0;
+        if (snapshotPool != null && !hasExclusions(request) && healthIgnorable()) {
+            eligible = snapshotPool.size();
+            healthy = healthTracker == null ? 0 : eligible;
+        } else if (snapshotPool != null) {
+            for (int i = 0; i < snapshotPool.size(); i++) {
+                BackendTarget candidate = snapshotPool.target(i);
+                if (request != null && request.isExcluded(candidate.id())) {
+                    continue;
+                }
+                eligible++;
+                if (healthTracker != null && healthTracker.isHealthy(candidate)) {
+                    healthy++;
+                }
+            }
+        }
+        if (eligible == 0) {
             return new RoutingResult(pool, null, null, "no_backends");
         }
-        List<BackendTarget> healthyCandidates = filterHealthy(candidates);
-        boolean hasHealthy = healthTracker != null && !healthyCandidates.isEmpty();
-        List<BackendTarget> selection = hasHealthy ? healthyCandidates : candidates;
-        BackendReservation reservation = selectBackend(pool, selection, hasHealthy, request);
-        if (reservation == null && hasHealthy && healthyCandidates.size() < candidates.size()) {
-            reservation = selectBackend(pool, candidates, false, request);
+        boolean hasHealthy = healthy > 0;
+        BackendReservation reservation = selectBackend(
+                snapshotPool, hasHealthy ? healthy : eligible, hasHealthy && !healthIgnorable(), request);
+        if (reservation == null && hasHealthy && healthy < eligible) {
+            reservation = selectBackend(snapshotPool, eligible, false, request);
         }
         if (reservation == null) {
             return new RoutingResult(pool, null, null, "pool_full");
@@ -68,292 +150,636 @@ public final class RoutingService {
     }
 
     /**
-     * Resolve a backend id to a target entry, honoring drain exclusions.
+     * Predict the backend a session with only a selection key, certificate subject and source address would be
+     * routed to, without reserving capacity. Returns null when the choice depends on {@code Connect} fields
+     * (an earlier rule matches on them) or is not deterministic (round robin, load-based policies or no
+     * selection key).
      */
-    public BackendTarget findBackendById(String backendId, boolean includeDraining) {
-        if (isBlank(backendId) || config.routing == null || config.routing.pools == null) {
+    public BackendTarget predict(RoutingRequest request) {
+        if (request == null || isBlank(request.selectionKey()) || config.routing == null) {
             return null;
         }
-        for (String pool : config.routing.pools.keySet()) {
-            List<BackendTarget> candidates = listBackends(pool, includeDraining);
-            for (BackendTarget candidate : candidates) {
-                if (backendId.equals(candidate.id())) {
-                    return candidate;
-                }
+        RoutingSnapshot current = snapshot();
+        int ruleIndex = current.rules().predict(request);
+        if (ruleIndex == RoutingRuleTable.UNDECIDED) {
+            return null;
+        }
+        String pool = poolName(current, ruleIndex);
+        RoutingSnapshot.RuleTargets targets = current.ruleTargets(ruleIndex);
+        if (isBlank(pool) || (targets != null && targets.hasSplits())) {
+            return null;
+        }
+        RoutingSnapshot.Pool snapshotPool = candidatePool(current, pool, ruleIndex, request);
+        if (snapshotPool == null || snapshotPool.size() == 0 || snapshotPool.policy() != PoolPolicy.WEIGHTED) {
+            return null;
+        }
+        boolean hasHealthy = false;
+        if (healthTracker != null && !healthTracker.noneDegraded()) {
+            for (int i = 0; i < snapshotPool.size() && !hasHealthy; i++) {
+                hasHealthy = healthTracker.isHealthy(snapshotPool.target(i));
             }
         }
-        return null;
+        int index = selectConsistentWeighted(snapshotPool, hasHealthy, null, request.selectionKey(), null);
+        return index < 0 ? null : snapshotPool.target(index);
     }
 
     /**
-     * List backends for a pool, optionally including draining dynamic entries.
+     * Resolve a backend id to a target entry, honoring drain exclusions.
      */
-    public List<BackendTarget> listBackends(String pool, boolean includeDraining) {
-        if (config.routing == null || config.routing.pools == null || isBlank(pool)) {
-            return Collections.emptyList();
+    public BackendTarget findBackendById(String backendId, boolean includeDraining) {
+        if (isBlank(backendId)) {
+            return null;
         }
-        HyproxConfig.PoolConfig poolConfig = config.routing.pools.get(pool);
-        if (poolConfig == null || poolConfig.backends == null) {
-            return Collections.emptyList();
+        return snapshot().backend(backendId, includeDraining);
+    }
+
+    /**
+     * Whether a backend is still routable: present, not draining and not marked unhealthy.
+     */
+    public boolean isServiceable(BackendTarget backend) {
+        if (backend == null) {
+            return false;
         }
-        List<BackendTarget> results = new ArrayList<>();
-        for (HyproxConfig.BackendConfig backend : poolConfig.backends) {
-            if (backend == null) {
-                continue;
-            }
-            results.add(fromStatic(pool, backend));
+        BackendTarget current = findBackendById(backend.id(), false);
+        if (current == null) {
+            return false;
         }
+        return healthTracker == null || healthTracker.isHealthy(current);
+    }
 
-        if (registry != null) {
-            List<RegisteredBackend> dynamic = new ArrayList<>(registry.list(pool));
-            dynamic.sort(Comparator.comparing(RegisteredBackend::id, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)));
-            for (RegisteredBackend backend : dynamic) {
-                if (!includeDraining && backend.draining()) {
-                    continue;
-                }
-                results.add(fromDynamic(backend));
-            }
+    /**
+     * Record a failed backend connect as a passive health failure.
+     */
+    public void recordConnectFailure(BackendTarget backend) {
+        if (healthTracker != null) {
+            healthTracker.recordPassiveFailure(backend);
         }
-        return results;
     }
 
-    private String selectPool(RoutingRequest request) {
-        if (config.routing == null) {
-            return null;
+    /**
+     * Record an established backend connection as a passive health success.
+     */
+    public void recordConnectSuccess(BackendTarget backend) {
+        if (healthTracker != null) {
+            healthTracker.recordPassiveSuccess(backend);
         }
-        if (config.routing.rules != null) {
-            for (HyproxConfig.RuleConfig rule : config.routing.rules) {
-                if (rule == null || rule.match == null) {
-                    continue;
-                }
-                if (matches(rule.match, request)) {
-                    return rule.pool;
-                }
-            }
+    }
+
+    /**
+     * Record the latency of an established backend connect for latency-aware selection.
+     */
+    public void recordConnectLatency(BackendTarget backend, long latencyNanos) {
+        if (latencyTracker != null) {
+            latencyTracker.record(backend, latencyNanos);
         }
-        return config.routing.defaultPool;
     }
 
-    private boolean matches(HyproxConfig.MatchConfig match, RoutingRequest request) {
-        if (match == null) {
-            return false;
+    /**
+     * List backends for a pool, optionally including draining dynamic entries. The list is read-only.
+     */
+    public List<BackendTarget> listBackends(String pool, boolean includeDraining) {
+        if (isBlank(pool)) {
+            return List.of();
         }
-        if (!isBlank(match.clientType)) {
-            if (request == null || isBlank(request.clientType())
-                    || !match.clientType.equalsIgnoreCase(request.clientType())) {
-                return false;
-            }
+        RoutingSnapshot.Pool snapshotPool = snapshot().pool(pool);
+        return snapshotPool == null ? List.of() : snapshotPool.backends(includeDraining);
+    }
+
+    RoutingSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Wait until every rebuild requested so far has been published.
+     */
+    void awaitRebuild() {
+        CompletableFuture.runAsync(() -> {
+        }, rebuilder).join();
+    }
+
+    /**
+     * Schedule a rebuild unless one is already queued. The queued rebuild clears the flag before it reads the
+     * registry, so a change reported while a build runs queues exactly one more.
+     */
+    private void requestRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuilder.execute(() -> {
+                rebuildPending.set(false);
+                rebuildIfStale();
+            });
         }
-        if (!isBlank(match.referralSource)) {
-            if (request == null || isBlank(request.referralSource())
-                    || !match.referralSource.equalsIgnoreCase(request.referralSource())) {
-                return false;
-            }
+    }
+
+    /**
+     * Build and publish a new snapshot when a pool epoch or the config version moved, then drop latency
+     * estimates of backends that are no longer routed to. Runs on the rebuild thread only, so builds never
+     * overlap.
+     */
+    private void rebuildIfStale() {
+        RoutingSnapshot current = snapshot;
+        long currentConfig = configVersion.get();
+        if (current.isCurrent(registry, currentConfig)) {
+            return;
+        }
+        RoutingSnapshot rebuilt =
+                RoutingSnapshot.build(config, registry, version.incrementAndGet(), currentConfig, current);
+        snapshot = rebuilt;
+        if (latencyTracker != null) {
+            // Estimates are keyed by backend id; without this every shard that ever registered stays tracked.
+            latencyTracker.retainIf(id -> rebuilt.backend(id, true) != null);
         }
-        return true;
     }
 
-    private BackendReservation selectBackend(String pool,
-                                             List<BackendTarget> candidates,
-                                             boolean applyHealth,
-                                             RoutingRequest request) {
-        List<BackendTarget> remaining = new ArrayList<>(candidates);
-        PoolPolicy policy = PoolPolicy.WEIGHTED;
-        if (config.routing != null && config.routing.pools != null) {
-            HyproxConfig.PoolConfig poolConfig = config.routing.pools.get(pool);
-            if (poolConfig != null) {
-                policy = PoolPolicy.fromConfig(poolConfig.policy);
-            }
+    private static ThreadFactory threadFactory() {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "hyprox-routing-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private String poolName(RoutingSnapshot current, int ruleIndex) {
+        return ruleIndex >= 0 ? current.rules().pool(ruleIndex) : config.routing.defaultPool;
+    }
+
+    /**
+     * Backends a request may be routed to: the whole pool, or the rule's tag-filtered (and split) sub-pool.
+     */
+    private RoutingSnapshot.Pool candidatePool(RoutingSnapshot current,
+                                               String pool,
+                                               int ruleIndex,
+                                               RoutingRequest request) {
+        RoutingSnapshot.RuleTargets targets = current.ruleTargets(ruleIndex);
+        if (targets == null) {
+            return current.pool(pool);
+        }
+        return targets.select(targets.hasSplits() ? splitBucket(request) : 0);
+    }
+
+    /**
+     * Traffic split bucket in {@code [0, 100)}: stable per player UUID, else per selection key, else random.
+     */
+    private int splitBucket(RoutingRequest request) {
+        if (request != null && request.uuid() != null) {
+            return RoutingRuleTable.bucket(request.uuid());
         }
-        while (!remaining.isEmpty()) {
-            BackendTarget candidate = policy == PoolPolicy.ROUND_ROBIN
-                    ? selectRoundRobin(pool, remaining)
-                    : selectWeighted(remaining, applyHealth, request);
-            if (candidate == null) {
+        if (request != null && !isBlank(request.selectionKey())) {
+            long hash = fnv1a64(FNV_OFFSET, request.selectionKey());
+            return (int) Long.remainderUnsigned(hash * 0x9e3779b97f4a7c15L, 100);
+        }
+        return ThreadLocalRandom.current().nextInt(100);
+    }
+
+    /**
+     * Pick and reserve a candidate, skipping ones that turn out to be full. {@code remaining} is the number of
+     * candidates that pass the filters; the skip mask is only allocated after a failed reservation.
+     */
+    private BackendReservation selectBackend(RoutingSnapshot.Pool pool,
+                                             int remaining,
+                                             boolean healthyOnly,
+                                             RoutingRequest request) {
+        boolean[] skipped = null;
+        while (remaining > 0) {
+            int index = switch (pool.policy()) {
+                case ROUND_ROBIN -> selectRoundRobin(pool, remaining, healthyOnly, request, skipped);
+                case LEAST_CONNECTIONS -> selectLeastLoaded(pool, healthyOnly, request, skipped);
+                case P2C -> selectPowerOfTwo(pool, healthyOnly, request, skipped);
+                case LATENCY_WEIGHTED -> selectLatencyWeighted(pool, healthyOnly, request, skipped);
+                default -> selectWeighted(pool, healthyOnly, request, skipped);
+            };
+            if (index < 0) {
                 return null;
             }
-            BackendReservation reservation = tryReserve(candidate);
+            BackendReservation reservation = tryReserve(pool.target(index), pool.capacityKey(index));
             if (reservation != null) {
                 return reservation;
             }
-            remaining.remove(candidate);
+            if (skipped == null) {
+                skipped = new boolean[pool.size()];
+            }
+            skipped[index] = true;
+            remaining--;
         }
         return null;
     }
 
-    private BackendTarget selectRoundRobin(String pool, List<BackendTarget> candidates) {
-        if (candidates.isEmpty()) {
-            return null;
+    /**
+     * True when no backend has lost health score, so filtering and weight adjustment would be no-ops.
+     */
+    private boolean healthIgnorable() {
+        return healthTracker == null || healthTracker.noneDegraded();
+    }
+
+    private static boolean hasExclusions(RoutingRequest request) {
+        return request != null && request.excludedBackendIds() != null && !request.excludedBackendIds().isEmpty();
+    }
+
+    /**
+     * True when every backend of the pool is a candidate, which allows direct indexing.
+     */
+    private boolean allCandidates(boolean healthyOnly, RoutingRequest request, boolean[] skipped) {
+        return skipped == null && !healthyOnly && !hasExclusions(request);
+    }
+
+    private boolean isCandidate(RoutingSnapshot.Pool pool,
+                                int index,
+                                boolean healthyOnly,
+                                RoutingRequest request,
+                                boolean[] skipped) {
+        if (skipped != null && skipped[index]) {
+            return false;
+        }
+        BackendTarget target = pool.target(index);
+        if (request != null && request.isExcluded(target.id())) {
+            return false;
         }
-        AtomicInteger counter = roundRobinCounters.computeIfAbsent(pool, key -> new AtomicInteger());
-        int index = Math.floorMod(counter.getAndIncrement(), candidates.size());
-        return candidates.get(index);
+        return !healthyOnly || healthTracker.isHealthy(target);
     }
 
-    private BackendTarget selectWeighted(List<BackendTarget> candidates, boolean applyHealth, RoutingRequest request) {
-        if (candidates.isEmpty()) {
-            return null;
+    private int selectRoundRobin(RoutingSnapshot.Pool pool,
+                                 int remaining,
+                                 boolean healthyOnly,
+                                 RoutingRequest request,
+                                 boolean[] skipped) {
+        AtomicInteger counter = roundRobinCounters.computeIfAbsent(pool.stateKey(), key -> new AtomicInteger());
+        int position = Math.floorMod(counter.getAndIncrement(), remaining);
+        if (allCandidates(healthyOnly, request, skipped)) {
+            return position;
+        }
+        for (int i = 0; i < pool.size(); i++) {
+            if (isCandidate(pool, i, healthyOnly, request, skipped) && position-- == 0) {
+                return i;
+            }
         }
+        return -1;
+    }
+
+    private int selectWeighted(RoutingSnapshot.Pool pool,
+                               boolean healthyOnly,
+                               RoutingRequest request,
+                               boolean[] skipped) {
         String selectionKey = request == null ? null : request.selectionKey();
         if (!isBlank(selectionKey)) {
-            return selectConsistentWeighted(candidates, selectionKey, applyHealth);
+            return selectConsistentWeighted(pool, healthyOnly, request, selectionKey, skipped);
         }
-        return selectWeightedRandom(candidates, applyHealth);
+        return selectWeightedRandom(pool, healthyOnly, request, skipped);
     }
 
-    private BackendTarget selectWeightedRandom(List<BackendTarget> candidates, boolean applyHealth) {
-        if (candidates.isEmpty()) {
-            return null;
+    private int selectWeightedRandom(RoutingSnapshot.Pool pool,
+                                     boolean healthyOnly,
+                                     RoutingRequest request,
+                                     boolean[] skipped) {
+        if (allCandidates(healthyOnly, request, skipped)) {
+            int totalWeight = pool.totalWeight();
+            return totalWeight <= 0 ? -1 : pool.indexForWeight(ThreadLocalRandom.current().nextInt(totalWeight));
         }
         int totalWeight = 0;
-        for (BackendTarget candidate : candidates) {
-            totalWeight += weightFor(candidate, applyHealth);
+        int last = -1;
+        for (int i = 0; i < pool.size(); i++) {
+            if (isCandidate(pool, i, healthyOnly, request, skipped)) {
+                totalWeight += weightFor(pool, i, healthyOnly);
+                last = i;
+            }
         }
         if (totalWeight <= 0) {
-            return null;
+            return -1;
         }
         int target = ThreadLocalRandom.current().nextInt(totalWeight);
         int running = 0;
-        for (BackendTarget candidate : candidates) {
-            int weight = weightFor(candidate, applyHealth);
-            if (weight <= 0) {
+        for (int i = 0; i < pool.size(); i++) {
+            if (!isCandidate(pool, i, healthyOnly, request, skipped)) {
                 continue;
             }
-            running += weight;
+            running += weightFor(pool, i, healthyOnly);
             if (target < running) {
-                return candidate;
+                return i;
             }
         }
-        return candidates.get(candidates.size() - 1);
+        return last;
     }
 
     /**
-     * Deterministic weighted selection using rendezvous hashing.
+     * Candidate with the lowest active reservations relative to its capacity. The scan starts at a random
+     * offset so ties do not always land on the first backend.
      */
-    private BackendTarget selectConsistentWeighted(List<BackendTarget> candidates,
-                                                   String selectionKey,
-                                                   boolean applyHealth) {
-        BackendTarget best = null;
-        double bestScore = Double.POSITIVE_INFINITY;
-        for (BackendTarget candidate : candidates) {
-            int weight = weightFor(candidate, applyHealth);
-            if (weight <= 0) {
+    private int selectLeastLoaded(RoutingSnapshot.Pool pool,
+                                  boolean healthyOnly,
+                                  RoutingRequest request,
+                                  boolean[] skipped) {
+        int size = pool.size();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        int best = -1;
+        long bestActive = 0;
+        long bestCapacity = 1;
+        for (int n = 0; n < size; n++) {
+            int i = start + n < size ? start + n : start + n - size;
+            if (!isCandidate(pool, i, healthyOnly, request, skipped)) {
                 continue;
             }
-            double score = rendezvousScore(selectionKey, candidate, weight);
-            if (score < bestScore) {
-                bestScore = score;
-                best = candidate;
+            long active = activeCount(pool, i);
+            long capacity = capacityFor(pool, i, healthyOnly);
+            if (best < 0 || active * bestCapacity < bestActive * capacity) {
+                best = i;
+                bestActive = active;
+                bestCapacity = capacity;
             }
         }
         return best;
     }
 
-    private double rendezvousScore(String selectionKey, BackendTarget candidate, int weight) {
-        String backendKey = backendSelectionKey(candidate);
-        long hash = fnv1a64(selectionKey + "|" + backendKey);
-        double unit = toUnitInterval(hash);
-        return -Math.log(unit) / weight;
+    /**
+     * Power of two choices: two weighted samples from the cumulative weights, keeping the one with the lower
+     * load. Falls back to a full least-loaded scan when sampling keeps hitting filtered or duplicate
+     * candidates, which mostly happens in very small or heavily filtered pools.
+     */
+    private int selectPowerOfTwo(RoutingSnapshot.Pool pool,
+                                 boolean healthyOnly,
+                                 RoutingRequest request,
+                                 boolean[] skipped) {
+        int first = sampleCandidate(pool, healthyOnly, request, skipped, -1);
+        int second = first < 0 ? -1 : sampleCandidate(pool, healthyOnly, request, skipped, first);
+        if (second < 0) {
+            return selectLeastLoaded(pool, healthyOnly, request, skipped);
+        }
+        long firstLoad = activeCount(pool, first) * (long) capacityFor(pool, second, healthyOnly);
+        long secondLoad = activeCount(pool, second) * (long) capacityFor(pool, first, healthyOnly);
+        return secondLoad < firstLoad ? second : first;
     }
 
-    private String backendSelectionKey(BackendTarget candidate) {
-        if (!isBlank(candidate.id())) {
-            return candidate.id();
+    private int sampleCandidate(RoutingSnapshot.Pool pool,
+                                boolean healthyOnly,
+                                RoutingRequest request,
+                                boolean[] skipped,
+                                int other) {
+        int totalWeight = pool.totalWeight();
+        if (totalWeight <= 0) {
+            return -1;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < P2C_SAMPLE_ATTEMPTS; attempt++) {
+            int index = pool.indexForWeight(random.nextInt(totalWeight));
+            if (index != other && isCandidate(pool, index, healthyOnly, request, skipped)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Weighted random selection where each weight is scaled by {@code fastest estimate / own estimate}.
+     * Backends without latency samples keep their full weight. Without any samples this is plain weighted
+     * random.
+     */
+    private int selectLatencyWeighted(RoutingSnapshot.Pool pool,
+                                      boolean healthyOnly,
+                                      RoutingRequest request,
+                                      boolean[] skipped) {
+        long fastest = Long.MAX_VALUE;
+        if (latencyTracker != null) {
+            for (int i = 0; i < pool.size(); i++) {
+                if (isCandidate(pool, i, healthyOnly, request, skipped)) {
+                    long estimate = latencyTracker.estimateNanos(pool.target(i));
+                    if (estimate > 0 && estimate < fastest) {
+                        fastest = estimate;
+                    }
+                }
+            }
+        }
+        if (fastest == Long.MAX_VALUE) {
+            return selectWeightedRandom(pool, healthyOnly, request, skipped);
+        }
+        long totalWeight = 0;
+        int last = -1;
+        for (int i = 0; i < pool.size(); i++) {
+            if (isCandidate(pool, i, healthyOnly, request, skipped)) {
+                totalWeight += latencyWeight(pool, i, healthyOnly, fastest);
+                last = i;
+            }
+        }
+        if (totalWeight <= 0) {
+            return -1;
         }
-        return candidate.host() + ":" + candidate.port();
+        long target = ThreadLocalRandom.current().nextLong(totalWeight);
+        long running = 0;
+        for (int i = 0; i < pool.size(); i++) {
+            if (!isCandidate(pool, i, healthyOnly, request, skipped)) {
+                continue;
+            }
+            running += latencyWeight(pool, i, healthyOnly, fastest);
+            if (target < running) {
+                return i;
+            }
+        }
+        return last;
     }
 
-    private long fnv1a64(String value) {
-        long hash = 0xcbf29ce484222325L;
-        for (byte element : value.getBytes(java.nio.charset.StandardCharsets.UTF_8)) {
-            hash ^= (element & 0xff);
-            hash *= 0x100000001b3L;
+    private long latencyWeight(RoutingSnapshot.Pool pool, int index, boolean applyHealth, long fastest) {
+        long weight = weightFor(pool, index, applyHealth) * LATENCY_WEIGHT_SCALE;
+        long estimate = latencyTracker.estimateNanos(pool.target(index));
+        if (estimate <= fastest) {
+            return weight;
         }
-        return hash;
+        return Math.max(1, (long) (weight * ((double) fastest / estimate)));
     }
 
-    private double toUnitInterval(long hash) {
-        long value = hash >>> 1;
-        return (value + 1D) / ((double) Long.MAX_VALUE + 1D);
+    private int activeCount(RoutingSnapshot.Pool pool, int index) {
+        return capacityTracker == null ? 0 : capacityTracker.activeCount(pool.capacityKey(index));
     }
 
-    private BackendReservation tryReserve(BackendTarget candidate) {
-        if (capacityTracker == null) {
-            return BackendReservation.unlimited(candidate);
+    private int capacityFor(RoutingSnapshot.Pool pool, int index, boolean applyHealth) {
+        int capacity = pool.capacity(index);
+        if (!applyHealth || healthTracker == null) {
+            return capacity;
         }
-        return capacityTracker.tryReserve(candidate);
+        return Math.max(1, (int) ((long) capacity * healthTracker.score(pool.target(index)) / 100));
     }
 
-    private BackendTarget resolveReferralTarget(RoutingRequest request) {
-        if (request == null || isBlank(request.targetBackendId())) {
-            return null;
+    /**
+     * Deterministic weighted selection: the pool's Maglev table when it has one, otherwise rendezvous hashing.
+     */
+    private int selectConsistentWeighted(RoutingSnapshot.Pool pool,
+                                         boolean healthyOnly,
+                                         RoutingRequest request,
+                                         String selectionKey,
+                                         boolean[] skipped) {
+        double loadLimit = loadLimitPerWeight(pool);
+        RoutingSnapshot.MaglevView maglev = pool.maglev();
+        if (maglev != null) {
+            int index = selectMaglev(pool, maglev, healthyOnly, request, selectionKey, skipped, loadLimit);
+            if (index >= 0) {
+                return index;
+            }
         }
-        return findBackendById(request.targetBackendId(), false);
+        return selectRendezvous(pool, healthyOnly, request, selectionKey, skipped, loadLimit);
     }
 
-    private List<BackendTarget> filterHealthy(List<BackendTarget> candidates) {
-        if (healthTracker == null || candidates.isEmpty()) {
-            return candidates;
+    /**
+     * Maglev lookup. When the slot's backend is not a candidate (excluded, unhealthy, full or removed) or is
+     * over the load bound, the following slots are tried, which keeps the fallback consistent per key. The
+     * first candidate seen is used when none within {@code MAGLEV_PROBES} slots is under the bound; -1 when
+     * there is no candidate at all.
+     */
+    private int selectMaglev(RoutingSnapshot.Pool pool,
+                             RoutingSnapshot.MaglevView maglev,
+                             boolean healthyOnly,
+                             RoutingRequest request,
+                             String selectionKey,
+                             boolean[] skipped,
+                             double loadLimit) {
+        int slot = maglev.slot(fnv1a64(FNV_OFFSET, selectionKey));
+        int first = -1;
+        for (int probe = 0; probe < MAGLEV_PROBES; probe++) {
+            int index = maglev.backend(slot + probe);
+            if (index < 0 || !isCandidate(pool, index, healthyOnly, request, skipped)) {
+                continue;
+            }
+            if (withinLoad(pool, index, loadLimit)) {
+                return index;
+            }
+            if (first < 0) {
+                first = index;
+            }
         }
-        List<BackendTarget> healthy = new ArrayList<>();
-        for (BackendTarget candidate : candidates) {
-            if (healthTracker.isHealthy(candidate)) {
-                healthy.add(candidate);
+        return first;
+    }
+
+    /**
+     * Weighted rendezvous hashing in one pass over the candidates. Returns the best-ranked candidate that is
+     * within its load bound and below {@code maxPlayers}, or the best-ranked candidate when none is.
+     */
+    private int selectRendezvous(RoutingSnapshot.Pool pool,
+                                 boolean healthyOnly,
+                                 RoutingRequest request,
+                                 String selectionKey,
+                                 boolean[] skipped,
+                                 double loadLimit) {
+        long keyHash = fnv1a64(fnv1a64(FNV_OFFSET, selectionKey), '|');
+        int best = -1;
+        double bestScore = Double.POSITIVE_INFINITY;
+        int bestWithin = -1;
+        double bestWithinScore = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < pool.size(); i++) {
+            if (!isCandidate(pool, i, healthyOnly, request, skipped)) {
+                continue;
+            }
+            long hash = fnv1a64(keyHash, pool.selectionKey(i));
+            double score = -Math.log(toUnitInterval(hash)) / weightFor(pool, i, healthyOnly);
+            if (score < bestScore) {
+                bestScore = score;
+                best = i;
+            }
+            if (score < bestWithinScore && withinLoad(pool, i, loadLimit)) {
+                bestWithinScore = score;
+                bestWithin = i;
             }
         }
-        return healthy;
+        return bestWithin >= 0 ? bestWithin : best;
     }
 
-    private int weightFor(BackendTarget candidate, boolean applyHealth) {
-        int baseWeight = Math.max(1, candidate.weight());
-        if (!applyHealth || healthTracker == null) {
-            return baseWeight;
+    /**
+     * Bounded-load limit per unit of weight: {@code (1 + boundedLoad) * (pool sessions + 1) / total weight}.
+     * A rule sub-pool counts only the sessions on its own backends, matching its total weight. Returns 0 when
+     * the pool does not bound load or active sessions are not tracked.
+     */
+    private double loadLimitPerWeight(RoutingSnapshot.Pool pool) {
+        if (pool.boundedLoad() <= 0 || capacityTracker == null || pool.totalWeight() <= 0) {
+            return 0;
+        }
+        long sessions = 1L;
+        if (pool.subset()) {
+            for (int i = 0; i < pool.size(); i++) {
+                sessions += capacityTracker.activeCount(pool.capacityKey(i));
+            }
+        } else {
+            sessions += capacityTracker.poolActiveCount(pool.name());
         }
-        int score = healthTracker.score(candidate);
-        int adjusted = (baseWeight * score) / 100;
-        return Math.max(1, adjusted);
+        return (1 + pool.boundedLoad()) * sessions / pool.totalWeight();
     }
 
-    private BackendTarget fromStatic(String pool, HyproxConfig.BackendConfig backend) {
-        return new BackendTarget(
-                backend.id,
-                pool,
-                backend.host,
-                backend.port != null ? backend.port : 0,
-                effectiveWeight(backend.weight),
-                backend.maxPlayers,
-                copyTags(backend.tags),
-                BackendSource.STATIC,
-                false
-        );
+    /**
+     * Whether one more session keeps the backend below {@code maxPlayers} and, for bounded pools, within
+     * {@code ceil(loadLimit * weight)} sessions.
+     */
+    private boolean withinLoad(RoutingSnapshot.Pool pool, int index, double loadLimit) {
+        Integer maxPlayers = pool.target(index).maxPlayers();
+        boolean capped = maxPlayers != null && maxPlayers > 0;
+        if (capacityTracker == null || (!capped && loadLimit <= 0)) {
+            return true;
+        }
+        int active = capacityTracker.activeCount(pool.capacityKey(index));
+        if (capped && active >= maxPlayers) {
+            return false;
+        }
+        return loadLimit <= 0 || active + 1 <= Math.ceil(loadLimit * pool.weight(index));
     }
 
-    private BackendTarget fromDynamic(RegisteredBackend backend) {
-        return new BackendTarget(
-                backend.id(),
-                backend.pool(),
-                backend.host(),
-                backend.port(),
-                effectiveWeight(backend.weight()),
-                backend.maxPlayers(),
-                copyTags(backend.tags()),
-                BackendSource.DYNAMIC,
-                backend.draining()
-        );
+    /**
+     * FNV-1a over the UTF-8 encoding of {@code value}, without materializing the bytes.
+     */
+    private static long fnv1a64(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                hash = fnv1a64(hash, c);
+            } else if (c < 0x800) {
+                hash = fnv1a64(hash, 0xc0 | (c >> 6));
+                hash = fnv1a64(hash, 0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                hash = fnv1a64(hash, 0xf0 | (codePoint >> 18));
+                hash = fnv1a64(hash, 0x80 | ((codePoint >> 12) & 0x3f));
+                hash = fnv1a64(hash, 0x80 | ((codePoint >> 6) & 0x3f));
+                hash = fnv1a64(hash, 0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                hash = fnv1a64(hash, '?');
+            } else {
+                hash = fnv1a64(hash, 0xe0 | (c >> 12));
+                hash = fnv1a64(hash, 0x80 | ((c >> 6) & 0x3f));
+                hash = fnv1a64(hash, 0x80 | (c & 0x3f));
+            }
+        }
+        return hash;
     }
 
-    private int effectiveWeight(Integer weight) {
-        if (weight == null || weight <= 0) {
-            return 1;
+    private static long fnv1a64(long hash, byte[] bytes) {
+        for (byte element : bytes) {
+            hash = fnv1a64(hash, element & 0xff);
         }
-        return weight;
+        return hash;
     }
 
-    private List<String> copyTags(List<String> tags) {
-        if (tags == null || tags.isEmpty()) {
-            return List.of();
+    private static long fnv1a64(long hash, int octet) {
+        return (hash ^ octet) * FNV_PRIME;
+    }
+
+    private double toUnitInterval(long hash) {
+        long value = hash >>> 1;
+        return (value + 1D) / ((double) Long.MAX_VALUE + 1D);
+    }
+
+    private BackendReservation tryReserve(BackendTarget candidate, String capacityKey) {
+        if (capacityTracker == null) {
+            return BackendReservation.unlimited(candidate);
         }
-        return List.copyOf(tags);
+        return capacityTracker.tryReserve(candidate, capacityKey);
+    }
+
+    private BackendTarget resolveReferralTarget(RoutingSnapshot current, RoutingRequest request) {
+        if (request == null || isBlank(request.targetBackendId())) {
+            return null;
+        }
+        return current.backend(request.targetBackendId(), false);
+    }
+
+    private int weightFor(RoutingSnapshot.Pool pool, int index, boolean applyHealth) {
+        int baseWeight = pool.weight(index);
+        if (!applyHealth || healthTracker == null) {
+            return baseWeight;
+        }
+        int score = healthTracker.score(pool.target(index));
+        int adjusted = (baseWeight * score) / 100;
+        return Math.max(1, adjusted);
     }
 
     private boolean isBlank(String value) {
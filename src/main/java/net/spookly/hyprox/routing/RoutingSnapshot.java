@@ -0,0 +1,638 @@
+package net.spookly.hyprox.routing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import net.spookly.hyprox.config.HyproxConfig;
+import net.spookly.hyprox.registry.BackendRegistry;
+import net.spookly.hyprox.registry.RegisteredBackend;
+
+/**
+ * Immutable, precompiled view of every routing pool at one registry/config version.
+ * <p>
+ * Each pool holds its backends as arrays together with everything routing needs per candidate (selection
+ * hash input, capacity key, weight), so routing reads it without building lists. Each pool indexes its
+ * backend ids, with and without draining entries, and the routing rules are compiled into a
+ * {@link RoutingRuleTable}. Pools configured with {@code hashing: maglev} carry a {@link MaglevTable}. Rules
+ * with tag filters or splits get their candidate sub-pools precomputed from per-pool tag bitsets. A new
+ * snapshot is built when the registry changes or the routing config is refreshed; pools the change did not
+ * touch (same config and registry epoch) are carried over from the previous snapshot.
+ */
+final class RoutingSnapshot {
+    private static final Comparator<RegisteredBackend> DYNAMIC_ORDER =
+            Comparator.comparing(RegisteredBackend::id, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+
+    private final long version;
+    private final long configVersion;
+    private final Map<String, Pool> pools;
+    private final RoutingRuleTable rules;
+    private final RuleTargets[] ruleTargets;
+
+    private RoutingSnapshot(long version,
+                            long configVersion,
+                            Map<String, Pool> pools,
+                            RoutingRuleTable rules,
+                            RuleTargets[] ruleTargets) {
+        this.version = version;
+        this.configVersion = configVersion;
+        this.pools = pools;
+        this.rules = rules;
+        this.ruleTargets = ruleTargets;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * Whether a build now would produce the same snapshot: the config version is unchanged and no pool's
+     * registry epoch moved since this snapshot read it.
+     */
+    boolean isCurrent(BackendRegistry registry, long configVersion) {
+        if (this.configVersion != configVersion) {
+            return false;
+        }
+        if (registry == null) {
+            return true;
+        }
+        for (Pool pool : pools.values()) {
+            if (registry.epoch(pool.name) != pool.registryEpoch) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pool by its configured name, or null when it is not configured.
+     */
+    Pool pool(String name) {
+        return name == null ? null : pools.get(name);
+    }
+
+    RoutingRuleTable rules() {
+        return rules;
+    }
+
+    /**
+     * Tag-filtered targets of a rule, or null when the rule has no tag filters or splits.
+     */
+    RuleTargets ruleTargets(int ruleIndex) {
+        return ruleIndex < 0 || ruleIndex >= ruleTargets.length ? null : ruleTargets[ruleIndex];
+    }
+
+    /**
+     * Backend by id; when several pools list the same id the first pool in config order wins. Looks the id up
+     * in each pool's index, so pools carried over from the previous snapshot are not re-indexed.
+     */
+    BackendTarget backend(String id, boolean includeDraining) {
+        if (id == null) {
+            return null;
+        }
+        for (Pool pool : pools.values()) {
+            BackendTarget target = pool.backend(id, includeDraining);
+            if (target != null) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    static RoutingSnapshot build(HyproxConfig config, BackendRegistry registry, long version) {
+        return build(config, registry, version, 0, null);
+    }
+
+    /**
+     * Build a snapshot. Pools whose config ({@code configVersion}) and registry epoch are unchanged since
+     * {@code previous} are carried over as they are, and so is the compiled rule table while the config
+     * version is unchanged; Maglev pools that did change reuse or inherit the lookup
+     * table of the same pool in {@code previous}.
+     */
+    static RoutingSnapshot build(HyproxConfig config,
+                                 BackendRegistry registry,
+                                 long version,
+                                 long configVersion,
+                                 RoutingSnapshot previous) {
+        if (config.routing == null || config.routing.pools == null) {
+            return new RoutingSnapshot(version, configVersion, Map.of(), RoutingRuleTable.EMPTY, new RuleTargets[0]);
+        }
+        boolean sameConfig = previous != null && previous.configVersion == configVersion;
+        Map<String, Pool> pools = new LinkedHashMap<>();
+        for (Map.Entry<String, HyproxConfig.PoolConfig> entry : config.routing.pools.entrySet()) {
+            String name = entry.getKey();
+            HyproxConfig.PoolConfig poolConfig = entry.getValue();
+            if (name == null || poolConfig == null) {
+                continue;
+            }
+            long registryEpoch = registry == null ? 0 : registry.epoch(name);
+            Pool previousPool = previous == null ? null : previous.pool(name);
+            if (sameConfig && previousPool != null && previousPool.registryEpoch == registryEpoch) {
+                pools.put(name, previousPool);
+                continue;
+            }
+            List<BackendTarget> all = new ArrayList<>();
+            if (poolConfig.backends != null) {
+                for (HyproxConfig.BackendConfig backend : poolConfig.backends) {
+                    if (backend != null) {
+                        all.add(fromStatic(name, backend));
+                    }
+                }
+                if (registry != null) {
+                    List<RegisteredBackend> dynamic = registry.list(name);
+                    dynamic.sort(DYNAMIC_ORDER);
+                    for (RegisteredBackend backend : dynamic) {
+                        all.add(fromDynamic(backend));
+                    }
+                }
+            }
+            boolean maglev = "maglev".equalsIgnoreCase(poolConfig.hashing);
+            double boundedLoad = poolConfig.boundedLoad == null ? 0 : poolConfig.boundedLoad;
+            pools.put(name, new Pool(name, null,
+                    PoolPolicy.fromConfig(poolConfig.policy), all, maglev, boundedLoad, registryEpoch, previousPool));
+        }
+        // Rules only change with the config, so registry-driven builds reuse the compiled table.
+        RoutingRuleTable rules = sameConfig ? previous.rules : RoutingRuleTable.compile(config.routing.rules);
+        RuleTargets[] ruleTargets = new RuleTargets[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            HyproxConfig.RuleConfig rule = rules.rule(i);
+            Pool pool = rule.pool == null ? null : pools.get(rule.pool);
+            if (pool == null || !RuleTargets.hasTagFilters(rule)) {
+                continue;
+            }
+            RuleTargets previousTargets = previous == null ? null : previous.ruleTargets(i);
+            if (sameConfig && previousTargets != null && previous.pool(rule.pool) == pool) {
+                ruleTargets[i] = previousTargets;
+            } else {
+                ruleTargets[i] = RuleTargets.build(pool, rule, i, previousTargets);
+            }
+        }
+        return new RoutingSnapshot(version, configVersion, Collections.unmodifiableMap(pools), rules, ruleTargets);
+    }
+
+    private static BackendTarget fromStatic(String pool, HyproxConfig.BackendConfig backend) {
+        return new BackendTarget(
+                backend.id,
+                pool,
+                backend.host,
+                backend.port != null ? backend.port : 0,
+                effectiveWeight(backend.weight),
+                backend.maxPlayers,
+                copyTags(backend.tags),
+                BackendSource.STATIC,
+                false
+        );
+    }
+
+    private static BackendTarget fromDynamic(RegisteredBackend backend) {
+        return new BackendTarget(
+                backend.id(),
+                backend.pool(),
+                backend.host(),
+                backend.port(),
+                effectiveWeight(backend.weight()),
+                backend.maxPlayers(),
+                copyTags(backend.tags()),
+                BackendSource.DYNAMIC,
+                backend.draining()
+        );
+    }
+
+    private static int effectiveWeight(Integer weight) {
+        if (weight == null || weight <= 0) {
+            return 1;
+        }
+        return weight;
+    }
+
+    private static List<String> copyTags(List<String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return List.of();
+        }
+        return List.copyOf(tags);
+    }
+
+    /**
+     * Backends of one pool. Index {@code i} refers to the same backend in every per-candidate array.
+     */
+    static final class Pool {
+        /**
+         * Below this many routable backends rendezvous hashing is cheap enough and Maglev is not used.
+         */
+        static final int MAGLEV_MIN_BACKENDS = 32;
+
+        private final String name;
+        private final String stateKey;
+        private final boolean subset;
+        private final PoolPolicy policy;
+        private final double boundedLoad;
+        private final boolean maglevEnabled;
+        private final long registryEpoch;
+        private final BackendTarget[] targets;
+        private final byte[][] selectionKeys;
+        private final String[] capacityKeys;
+        private final int[] weights;
+        private final int[] capacities;
+        private final int[] cumulativeWeights;
+        private final List<BackendTarget> routable;
+        private final List<BackendTarget> all;
+        private final Map<String, BackendTarget> routableById = new HashMap<>();
+        private final Map<String, BackendTarget> allById = new HashMap<>();
+        private final Map<String, long[]> tagBits = new HashMap<>();
+        private final CompletableFuture<Void> maglevBuilt;
+        private volatile MaglevView maglev;
+        private volatile boolean superseded;
+
+        private Pool(String name,
+                     String stateKey,
+                     PoolPolicy policy,
+                     List<BackendTarget> all,
+                     boolean maglev,
+                     double boundedLoad,
+                     long registryEpoch,
+                     Pool previous) {
+            this.name = name;
+            this.stateKey = stateKey == null ? name : stateKey;
+            this.subset = stateKey != null;
+            this.policy = policy;
+            this.boundedLoad = boundedLoad;
+            this.maglevEnabled = maglev;
+            this.registryEpoch = registryEpoch;
+            this.all = Collections.unmodifiableList(new ArrayList<>(all));
+            this.targets = all.stream().filter(target -> !target.draining()).toArray(BackendTarget[]::new);
+            this.routable = Collections.unmodifiableList(Arrays.asList(targets));
+            this.selectionKeys = new byte[targets.length][];
+            this.capacityKeys = new String[targets.length];
+            this.weights = new int[targets.length];
+            this.capacities = new int[targets.length];
+            this.cumulativeWeights = new int[targets.length];
+            for (BackendTarget target : all) {
+                if (target.id() != null) {
+                    allById.putIfAbsent(target.id(), target);
+                    if (!target.draining()) {
+                        routableById.putIfAbsent(target.id(), target);
+                    }
+                }
+            }
+            int running = 0;
+            for (int i = 0; i < targets.length; i++) {
+                BackendTarget target = targets[i];
+                selectionKeys[i] = selectionKey(target).getBytes(StandardCharsets.UTF_8);
+                capacityKeys[i] = BackendCapacityTracker.backendKey(target);
+                weights[i] = Math.max(1, target.weight());
+                Integer maxPlayers = target.maxPlayers();
+                capacities[i] = maxPlayers != null && maxPlayers > 0 ? maxPlayers : weights[i];
+                running += weights[i];
+                cumulativeWeights[i] = running;
+                for (String tag : target.tags()) {
+                    if (tag != null) {
+                        tagBits.computeIfAbsent(tag.toLowerCase(Locale.ROOT), key -> new long[words()])[i >>> 6] |=
+                                1L << (i & 63);
+                    }
+                }
+            }
+            if (previous != null) {
+                previous.superseded = true;
+            }
+            if (!maglev || targets.length < MAGLEV_MIN_BACKENDS) {
+                this.maglevBuilt = CompletableFuture.completedFuture(null);
+                return;
+            }
+            MaglevView inherited = previous == null ? null : previous.maglev;
+            if (inherited != null && inherited.complete && sameBackends(previous)) {
+                this.maglev = inherited;
+                this.maglevBuilt = CompletableFuture.completedFuture(null);
+            } else if (inherited != null) {
+                this.maglev = inherited.remap(previous, this);
+                this.maglevBuilt = CompletableFuture.runAsync(this::buildMaglev);
+            } else {
+                buildMaglev();
+                this.maglevBuilt = CompletableFuture.completedFuture(null);
+            }
+        }
+
+        String name() {
+            return name;
+        }
+
+        /**
+         * Key for routing state kept across snapshots, such as round-robin counters. The pool name for a
+         * configured pool; rule sub-pools get their own key so they do not share state with the full pool.
+         */
+        String stateKey() {
+            return stateKey;
+        }
+
+        /**
+         * Whether this is a rule sub-pool holding only part of the named pool's backends.
+         */
+        boolean subset() {
+            return subset;
+        }
+
+        PoolPolicy policy() {
+            return policy;
+        }
+
+        /**
+         * Epsilon of bounded-load consistent hashing, or 0 when keyed selection ignores load.
+         */
+        double boundedLoad() {
+            return boundedLoad;
+        }
+
+        /**
+         * Number of routable (non-draining) backends.
+         */
+        int size() {
+            return targets.length;
+        }
+
+        BackendTarget target(int index) {
+            return targets[index];
+        }
+
+        byte[] selectionKey(int index) {
+            return selectionKeys[index];
+        }
+
+        String capacityKey(int index) {
+            return capacityKeys[index];
+        }
+
+        int weight(int index) {
+            return weights[index];
+        }
+
+        /**
+         * Load denominator: max players when configured, otherwise the weight.
+         */
+        int capacity(int index) {
+            return capacities[index];
+        }
+
+        int totalWeight() {
+            return cumulativeWeights.length == 0 ? 0 : cumulativeWeights[cumulativeWeights.length - 1];
+        }
+
+        /**
+         * Index of the backend owning {@code point} in {@code [0, totalWeight())} of the cumulative weights.
+         */
+        int indexForWeight(int point) {
+            int low = 0;
+            int high = cumulativeWeights.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulativeWeights[mid] > point) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        List<BackendTarget> backends(boolean includeDraining) {
+            return includeDraining ? all : routable;
+        }
+
+        /**
+         * Backend of this pool by id; when the pool lists an id twice the first entry wins.
+         */
+        BackendTarget backend(String id, boolean includeDraining) {
+            return includeDraining ? allById.get(id) : routableById.get(id);
+        }
+
+        /**
+         * Bitset (one bit per routable backend index) of backends carrying {@code tag}; tags compare
+         * case-insensitively. The returned array must not be modified.
+         */
+        long[] tagBits(String tag) {
+            long[] bits = tag == null ? null : tagBits.get(tag.trim().toLowerCase(Locale.ROOT));
+            return bits == null ? new long[words()] : bits;
+        }
+
+        /**
+         * Bitset with every routable backend set.
+         */
+        long[] allBits() {
+            long[] bits = new long[words()];
+            for (int i = 0; i < targets.length; i++) {
+                bits[i >>> 6] |= 1L << (i & 63);
+            }
+            return bits;
+        }
+
+        /**
+         * Pool of the same name and settings restricted to the backends set in {@code bits}, keeping its
+         * routing state under {@code stateKey}.
+         */
+        Pool subset(long[] bits, String stateKey, Pool previous) {
+            List<BackendTarget> selected = new ArrayList<>();
+            for (int i = 0; i < targets.length; i++) {
+                if ((bits[i >>> 6] & (1L << (i & 63))) != 0) {
+                    selected.add(targets[i]);
+                }
+            }
+            return new Pool(name, stateKey, policy, selected, maglevEnabled, boundedLoad, registryEpoch, previous);
+        }
+
+        private int words() {
+            return Math.max(1, (targets.length + 63) >>> 6);
+        }
+
+        /**
+         * Maglev lookup for this pool, or null when the pool uses rendezvous hashing. Right after a backend
+         * change this may still be the previous table with removed backends mapped to -1 and new backends
+         * absent, until the rebuild started off the routing path completes.
+         */
+        MaglevView maglev() {
+            return maglev;
+        }
+
+        /**
+         * Completes once this pool's own Maglev table is installed (or immediately when none is needed).
+         */
+        CompletableFuture<Void> maglevBuilt() {
+            return maglevBuilt;
+        }
+
+        private void buildMaglev() {
+            if (superseded) {
+                return;
+            }
+            maglev = new MaglevView(MaglevTable.build(selectionKeys, weights), null, true);
+        }
+
+        private boolean sameBackends(Pool other) {
+            return Arrays.deepEquals(selectionKeys, other.selectionKeys) && Arrays.equals(weights, other.weights);
+        }
+
+        private static String selectionKey(BackendTarget target) {
+            if (target.id() != null && !target.id().trim().isEmpty()) {
+                return target.id();
+            }
+            return target.host() + ":" + target.port();
+        }
+    }
+
+    /**
+     * Candidate sub-pools of a rule with {@code requireTags}, {@code excludeTags} or {@code splits}. Each split
+     * group holds the filtered backends carrying all of its tags; the remainder holds the filtered backends
+     * in no split group.
+     */
+    static final class RuleTargets {
+        private final Pool base;
+        private final int[] splitEnds;
+        private final Pool[] splits;
+        private final Pool remainder;
+
+        private RuleTargets(Pool base, int[] splitEnds, Pool[] splits, Pool remainder) {
+            this.base = base;
+            this.splitEnds = splitEnds;
+            this.splits = splits;
+            this.remainder = remainder;
+        }
+
+        static boolean hasTagFilters(HyproxConfig.RuleConfig rule) {
+            return (rule.requireTags != null && !rule.requireTags.isEmpty())
+                    || (rule.excludeTags != null && !rule.excludeTags.isEmpty())
+                    || (rule.splits != null && !rule.splits.isEmpty());
+        }
+
+        static RuleTargets build(Pool pool, HyproxConfig.RuleConfig rule, int ruleIndex, RuleTargets previous) {
+            String stateKey = pool.name() + "#rule" + ruleIndex;
+            long[] filtered = pool.allBits();
+            if (rule.requireTags != null) {
+                for (String tag : rule.requireTags) {
+                    and(filtered, pool.tagBits(tag), false);
+                }
+            }
+            if (rule.excludeTags != null) {
+                for (String tag : rule.excludeTags) {
+                    and(filtered, pool.tagBits(tag), true);
+                }
+            }
+            Pool base = pool.subset(filtered, stateKey, previous == null ? null : previous.base);
+            List<HyproxConfig.SplitConfig> splitConfigs = new ArrayList<>();
+            if (rule.splits != null) {
+                for (HyproxConfig.SplitConfig split : rule.splits) {
+                    if (split != null && split.percent != null && split.tags != null && !split.tags.isEmpty()) {
+                        splitConfigs.add(split);
+                    }
+                }
+            }
+            if (splitConfigs.isEmpty()) {
+                return new RuleTargets(base, new int[0], new Pool[0], base);
+            }
+            int[] splitEnds = new int[splitConfigs.size()];
+            Pool[] splits = new Pool[splitConfigs.size()];
+            long[] rest = filtered.clone();
+            int end = 0;
+            for (int i = 0; i < splits.length; i++) {
+                HyproxConfig.SplitConfig split = splitConfigs.get(i);
+                long[] group = filtered.clone();
+                for (String tag : split.tags) {
+                    and(group, pool.tagBits(tag), false);
+                }
+                and(rest, group, true);
+                end += split.percent;
+                splitEnds[i] = end;
+                Pool previousSplit = previous != null && i < previous.splits.length ? previous.splits[i] : null;
+                splits[i] = pool.subset(group, stateKey + "/split" + i, previousSplit);
+            }
+            Pool remainder = pool.subset(rest, stateKey + "/rest", previous == null ? null : previous.remainder);
+            return new RuleTargets(base, splitEnds, splits, remainder);
+        }
+
+        boolean hasSplits() {
+            return splits.length > 0;
+        }
+
+        /**
+         * Sub-pool for a session in traffic bucket {@code bucket} ({@code [0, 100)}). An empty split group
+         * falls back to the remainder, and an empty remainder to all filtered backends.
+         */
+        Pool select(int bucket) {
+            for (int i = 0; i < splitEnds.length; i++) {
+                if (bucket < splitEnds[i]) {
+                    if (splits[i].size() > 0) {
+                        return splits[i];
+                    }
+                    break;
+                }
+            }
+            return remainder.size() > 0 ? remainder : base;
+        }
+
+        private static void and(long[] target, long[] bits, boolean invert) {
+            for (int w = 0; w < target.length; w++) {
+                target[w] &= invert ? ~bits[w] : bits[w];
+            }
+        }
+    }
+
+    /**
+     * A Maglev table together with the mapping from its backend indices to the indices of the pool using it.
+     */
+    static final class MaglevView {
+        private final MaglevTable table;
+        private final int[] toPool;
+        private final boolean complete;
+
+        private MaglevView(MaglevTable table, int[] toPool, boolean complete) {
+            this.table = table;
+            this.toPool = toPool;
+            this.complete = complete;
+        }
+
+        int slot(long keyHash) {
+            return table.slot(keyHash);
+        }
+
+        /**
+         * Whether this is the pool's own table rather than a previous pool's table remapped onto it.
+         */
+        boolean complete() {
+            return complete;
+        }
+
+        /**
+         * Pool index owning {@code slot} (taken modulo the table size), or -1 when that backend is gone.
+         */
+        int backend(int slot) {
+            int index = table.backend(slot);
+            if (toPool == null || index < 0) {
+                return index;
+            }
+            return toPool[index];
+        }
+
+        private MaglevView remap(Pool from, Pool to) {
+            Map<String, Integer> newIndex = new HashMap<>();
+            for (int i = 0; i < to.size(); i++) {
+                newIndex.put(new String(to.selectionKeys[i], StandardCharsets.UTF_8), i);
+            }
+            int[] fromIndex = new int[from.size()];
+            for (int i = 0; i < from.size(); i++) {
+                Integer index = newIndex.get(new String(from.selectionKeys[i], StandardCharsets.UTF_8));
+                fromIndex[i] = index == null ? -1 : index;
+            }
+            int tableBackends = toPool == null ? from.size() : toPool.length;
+            int[] mapping = new int[tableBackends];
+            for (int i = 0; i < tableBackends; i++) {
+                int previous = toPool == null ? i : toPool[i];
+                mapping[i] = previous < 0 ? -1 : fromIndex[previous];
+            }
+            return new MaglevView(table, mapping, false);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package net.spookly.hyprox.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.jupiter.api.Test;
+
+class BackendEndpointPoolTest {
+    @Test
+    void sharesEndpointsPerEventLoopAndRebindsClosedOnes() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        BackendEndpointPool pool = new BackendEndpointPool(2, ChannelInboundHandlerAdapter::new);
+        try {
+            EventLoop eventLoop = group.next();
+            Channel first = acquire(pool, eventLoop);
+            Channel second = acquire(pool, eventLoop);
+            Channel third = acquire(pool, eventLoop);
+
+            assertNotSame(first, second);
+            assertSame(first, third);
+            assertTrue(first.isActive());
+
+            second.close().syncUninterruptibly();
+            Channel rebound = acquire(pool, eventLoop);
+            assertNotSame(second, rebound);
+            assertTrue(rebound.isActive());
+
+            pool.close();
+            first.closeFuture().syncUninterruptibly();
+            rebound.closeFuture().syncUninterruptibly();
+            assertFalse(first.isOpen());
+            assertFalse(rebound.isOpen());
+        } finally {
+            pool.close();
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    private Channel acquire(BackendEndpointPool pool, EventLoop eventLoop) throws Exception {
+        return eventLoop.submit(() -> pool.acquire(eventLoop)).get().sync().channel();
+    }
+}
@@ -0,0 +1,232 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Promise;
+import net.spookly.hyprox.config.HyproxConfig;
+import net.spookly.hyprox.routing.BackendCapacityTracker;
+import net.spookly.hyprox.routing.BackendHealthTracker;
+import net.spookly.hyprox.routing.BackendReservation;
+import net.spookly.hyprox.routing.BackendSource;
+import net.spookly.hyprox.routing.BackendTarget;
+import net.spookly.hyprox.routing.PathSelector;
+import net.spookly.hyprox.routing.RoutingDecision;
+import net.spookly.hyprox.routing.RoutingPlanner;
+import net.spookly.hyprox.routing.RoutingRequest;
+import net.spookly.hyprox.routing.RoutingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class BackendFailoverTest {
+    private final DefaultEventLoop loop = new DefaultEventLoop();
+    private final BackendHealthTracker healthTracker = new BackendHealthTracker();
+    private final RoutingPlanner planner = planner(healthTracker);
+    private final RoutingRequest request = new RoutingRequest("game", null, "client-key", null);
+
+    @AfterEach
+    void shutdown() {
+        loop.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Test
+    void failsOverToAnotherBackendAndReleasesTheFailedReservation() throws Exception {
+        Map<String, Promise<BackendConnection>> connects = new LinkedHashMap<>();
+        Outcome outcome = run(new ConnectRetryPolicy(2, 1000, false, 95, 0), new ConnectLatencyTracker(), connects);
+
+        String first = connects.keySet().iterator().next();
+        loop.submit(() -> connects.get(first).setFailure(new IllegalStateException("refused"))).sync();
+        String second = awaitSecond(connects, first);
+        loop.submit(() -> connects.get(second).setSuccess(connection(second))).sync();
+
+        assertEquals(second, outcome.connected.get(1, TimeUnit.SECONDS).backend().id());
+        assertTrue(healthTracker.score(target(first)) < 100);
+        assertNotNull(loop.submit(() -> planner.decide(new RoutingRequest("game", null, null, first)).reservation())
+                .get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void givesUpWhenTheRetryBudgetIsSpent() throws Exception {
+        Map<String, Promise<BackendConnection>> connects = new LinkedHashMap<>();
+        Outcome outcome = run(new ConnectRetryPolicy(2, 1000, false, 95, 0), new ConnectLatencyTracker(), connects);
+
+        String first = connects.keySet().iterator().next();
+        loop.submit(() -> connects.get(first).setFailure(new IllegalStateException("refused"))).sync();
+        String second = awaitSecond(connects, first);
+        loop.submit(() -> connects.get(second).setFailure(new IllegalStateException("refused"))).sync();
+
+        assertTrue(outcome.failed.get(1, TimeUnit.SECONDS));
+        assertEquals(2, connects.size());
+    }
+
+    @Test
+    void retriesAfterAStalledAttemptTimesOut() throws Exception {
+        Map<String, Promise<BackendConnection>> connects = new LinkedHashMap<>();
+        Outcome outcome = run(new ConnectRetryPolicy(2, 50, false, 95, 0), new ConnectLatencyTracker(), connects);
+
+        String first = connects.keySet().iterator().next();
+        String second = awaitSecond(connects, first);
+        loop.submit(() -> connects.get(second).setSuccess(connection(second))).sync();
+
+        assertEquals(second, outcome.connected.get(1, TimeUnit.SECONDS).backend().id());
+        assertTrue(connects.get(first).isCancelled());
+        assertTrue(healthTracker.score(target(first)) < 100);
+    }
+
+    @Test
+    void hedgesASlowConnectAndClosesTheLoser() throws Exception {
+        ConnectLatencyTracker latency = new ConnectLatencyTracker();
+        for (int i = 0; i < ConnectLatencyTracker.MIN_SAMPLES; i++) {
+            latency.record(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        Map<String, Promise<BackendConnection>> connects = new LinkedHashMap<>();
+        Outcome outcome = run(new ConnectRetryPolicy(2, 5000, true, 95, 0), latency, connects);
+
+        String first = connects.keySet().iterator().next();
+        String second = awaitSecond(connects, first);
+        loop.submit(() -> connects.get(second).setSuccess(connection(second))).sync();
+
+        assertEquals(second, outcome.connected.get(1, TimeUnit.SECONDS).backend().id());
+        assertTrue(connects.get(first).isCancelled());
+        assertEquals(100, healthTracker.score(target(first)));
+    }
+
+    @Test
+    void measuresAPendingConnectFromWhenItStarted() throws Exception {
+        ConnectLatencyTracker latency = new ConnectLatencyTracker();
+        for (int i = 0; i < ConnectLatencyTracker.MIN_SAMPLES - 1; i++) {
+            latency.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        Map<String, Promise<BackendConnection>> connects = new LinkedHashMap<>();
+        long startNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(200);
+        Outcome outcome = run(new ConnectRetryPolicy(2, 5000, false, 95, 0), latency, connects, startNanos);
+
+        String first = connects.keySet().iterator().next();
+        loop.submit(() -> connects.get(first).setSuccess(connection(first))).sync();
+
+        assertEquals(first, outcome.connected.get(1, TimeUnit.SECONDS).backend().id());
+        assertTrue(latency.percentileNanos(99) >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    void timesOutAPendingConnectFromWhenItStarted() throws Exception {
+        Map<String, Promise<BackendConnection>> connects = new LinkedHashMap<>();
+        long startNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(5);
+        Outcome outcome = run(new ConnectRetryPolicy(2, 3000, false, 95, 0), new ConnectLatencyTracker(), connects,
+                startNanos);
+
+        String first = connects.keySet().iterator().next();
+        String second = awaitSecond(connects, first);
+        loop.submit(() -> connects.get(second).setSuccess(connection(second))).sync();
+
+        assertEquals(second, outcome.connected.get(1, TimeUnit.SECONDS).backend().id());
+        assertTrue(connects.get(first).isCancelled());
+    }
+
+    private Outcome run(ConnectRetryPolicy policy,
+                        ConnectLatencyTracker latency,
+                        Map<String, Promise<BackendConnection>> connects) throws Exception {
+        return run(policy, latency, connects, null);
+    }
+
+    /**
+     * Start a failover; with a {@code pendingStartNanos} the first backend is handed over as an already pending
+     * connect started at that time.
+     */
+    private Outcome run(ConnectRetryPolicy policy,
+                        ConnectLatencyTracker latency,
+                        Map<String, Promise<BackendConnection>> connects,
+                        Long pendingStartNanos) throws Exception {
+        Outcome outcome = new Outcome();
+        loop.submit(() -> {
+            BackendFailover failover = new BackendFailover(planner, policy, latency, loop,
+                    backend -> {
+                        Promise<BackendConnection> promise = loop.newPromise();
+                        connects.put(backend.id(), promise);
+                        return promise;
+                    },
+                    new BackendFailover.Listener() {
+                        @Override
+                        public void connected(BackendConnection connection, BackendReservation reservation) {
+                            outcome.connected.complete(connection);
+                        }
+
+                        @Override
+                        public void failed() {
+                            outcome.failed.complete(true);
+                        }
+                    });
+            RoutingDecision decision = planner.decide(request);
+            SpeculativeConnectHandler.PendingConnect pending = null;
+            if (pendingStartNanos != null) {
+                Promise<BackendConnection> promise = loop.newPromise();
+                connects.put(decision.backend().id(), promise);
+                pending = new SpeculativeConnectHandler.PendingConnect(promise, pendingStartNanos);
+            }
+            failover.start(request, decision.backend(), decision.reservation(), pending);
+        }).sync();
+        return outcome;
+    }
+
+    private String awaitSecond(Map<String, Promise<BackendConnection>> connects, String first) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            String second = loop.submit(() -> connects.keySet().stream()
+                    .filter(id -> !id.equals(first))
+                    .findFirst()
+                    .orElse(null)).get();
+            if (second != null) {
+                return second;
+            }
+            Thread.sleep(5);
+        }
+        return fail("no second connect attempt");
+    }
+
+    private static BackendConnection connection(String id) {
+        return new BackendConnection(target(id), new EmbeddedChannel(), new EmbeddedChannel());
+    }
+
+    private static BackendTarget target(String id) {
+        return new BackendTarget(id, "lobby", "10.0.0.1", 9000, 1, 1, List.of(), BackendSource.STATIC, false);
+    }
+
+    private static RoutingPlanner planner(BackendHealthTracker healthTracker) {
+        HyproxConfig config = new HyproxConfig();
+        config.proxy = new HyproxConfig.ProxyConfig();
+        config.proxy.mode = "full";
+        config.routing = new HyproxConfig.RoutingConfig();
+        config.routing.defaultPool = "lobby";
+        config.routing.pools = new LinkedHashMap<>();
+        HyproxConfig.PoolConfig pool = new HyproxConfig.PoolConfig();
+        pool.policy = "weighted";
+        pool.backends = new ArrayList<>();
+        for (String id : List.of("lobby-1", "lobby-2", "lobby-3")) {
+            HyproxConfig.BackendConfig backend = new HyproxConfig.BackendConfig();
+            backend.id = id;
+            backend.host = "10.0.0.1";
+            backend.port = 9000;
+            backend.maxPlayers = 1;
+            pool.backends.add(backend);
+        }
+        config.routing.pools.put("lobby", pool);
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), healthTracker);
+        return new RoutingPlanner(service, new PathSelector(config));
+    }
+
+    private static final class Outcome {
+        private final CompletableFuture<BackendConnection> connected = new CompletableFuture<>();
+        private final CompletableFuture<Boolean> failed = new CompletableFuture<>();
+    }
+}
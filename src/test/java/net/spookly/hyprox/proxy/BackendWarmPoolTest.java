@@ -0,0 +1,170 @@
+package net.spookly.hyprox.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.quic.QuicChannel;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import net.spookly.hyprox.routing.BackendSource;
+import net.spookly.hyprox.routing.BackendTarget;
+import org.junit.jupiter.api.Test;
+
+class BackendWarmPoolTest {
+    private static final BackendTarget BACKEND =
+            new BackendTarget("b1", "lobby", "127.0.0.1", 9000, 1, null, List.of(), BackendSource.STATIC, false);
+
+    @Test
+    void sizesPoolByConnectRateAndHandsOutWarmConnections() {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+        List<EmbeddedChannel> opened = new ArrayList<>();
+        BackendWarmPool pool = new BackendWarmPool(group, connector(opened), backend -> true, 4, 2, 1000);
+        try {
+            assertNull(pool.take(BACKEND, null));
+            assertNull(pool.take(BACKEND, null));
+            assertNull(pool.take(BACKEND, null));
+
+            pool.maintain();
+
+            assertEquals(2, opened.size());
+            assertEquals(2, pool.idleCount(BACKEND));
+            QuicChannel warm = pool.take(BACKEND, null);
+            assertNotNull(warm);
+            assertTrue(warm.isActive());
+            assertEquals(1, pool.idleCount(BACKEND));
+
+            opened.get(1).close();
+            assertEquals(0, pool.idleCount(BACKEND));
+        } finally {
+            pool.close();
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    void evictsBackendsThatAreNoLongerEligible() {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+        List<EmbeddedChannel> opened = new ArrayList<>();
+        AtomicBoolean eligible = new AtomicBoolean(true);
+        BackendWarmPool pool = new BackendWarmPool(group, connector(opened), backend -> eligible.get(), 4, 2, 1000);
+        try {
+            pool.take(BACKEND, null);
+            pool.maintain();
+            assertEquals(1, pool.idleCount(BACKEND));
+
+            eligible.set(false);
+            pool.maintain();
+
+            assertEquals(0, pool.idleCount(BACKEND));
+            assertFalse(opened.get(0).isOpen());
+        } finally {
+            pool.close();
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    void onlyReturnsConnectionsOnTheRequestedEventLoop() {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+        List<EmbeddedChannel> opened = new ArrayList<>();
+        BackendWarmPool pool = new BackendWarmPool(group, connector(opened), backend -> true, 4, 2, 1000);
+        try {
+            pool.take(BACKEND, null);
+            pool.maintain();
+
+            assertNull(pool.take(BACKEND, group.next()));
+            QuicChannel warm = pool.take(BACKEND, opened.get(0).eventLoop());
+            assertNotNull(warm);
+            assertSame(opened.get(0).eventLoop(), warm.eventLoop());
+        } finally {
+            pool.close();
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    void refillsOnTheEventLoopThatRecordedTheDemand() {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(2);
+        EventLoop busy = group.next();
+        EventLoop quiet = group.next();
+        List<EventLoop> loops = new ArrayList<>();
+        BackendWarmPool pool = new BackendWarmPool(group, (backend, eventLoop) -> {
+            loops.add(eventLoop);
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(QuicChannelStubs.wrap(new EmbeddedChannel()));
+        }, backend -> true, 4, 2, 1000);
+        try {
+            assertNull(pool.take(BACKEND, busy));
+            assertNull(pool.take(BACKEND, busy));
+            assertNull(pool.take(BACKEND, busy));
+
+            pool.maintain();
+
+            assertEquals(List.of(busy, busy), loops);
+            assertNull(pool.take(BACKEND, quiet));
+            assertNotNull(pool.take(BACKEND, busy));
+        } finally {
+            pool.close();
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    void sharesTheBackendCapAcrossEventLoops() {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(2);
+        EventLoop first = group.next();
+        EventLoop second = group.next();
+        List<EventLoop> loops = new ArrayList<>();
+        BackendWarmPool pool = new BackendWarmPool(group, (backend, eventLoop) -> {
+            loops.add(eventLoop);
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(QuicChannelStubs.wrap(new EmbeddedChannel()));
+        }, backend -> true, 3, 2, 1000);
+        try {
+            for (int i = 0; i < 10; i++) {
+                pool.take(BACKEND, first);
+            }
+            for (int i = 0; i < 3; i++) {
+                pool.take(BACKEND, second);
+            }
+
+            pool.maintain();
+
+            assertEquals(3, pool.idleCount(BACKEND));
+            assertEquals(3, loops.stream().filter(loop -> loop == first).count());
+        } finally {
+            pool.close();
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    @Test
+    void capsTargetSizeAndDropsIdleBackends() {
+        DefaultEventLoopGroup group = new DefaultEventLoopGroup(1);
+        BackendWarmPool pool = new BackendWarmPool(group, connector(new ArrayList<>()), backend -> true, 4, 2, 1000);
+        try {
+            assertEquals(0, pool.targetSize(0.001));
+            assertEquals(1, pool.targetSize(0.2));
+            assertEquals(4, pool.targetSize(50));
+        } finally {
+            pool.close();
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    private static BackendWarmPool.Connector connector(List<EmbeddedChannel> opened) {
+        return (backend, eventLoop) -> {
+            EmbeddedChannel channel = new EmbeddedChannel();
+            opened.add(channel);
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(QuicChannelStubs.wrap(channel));
+        };
+    }
+}
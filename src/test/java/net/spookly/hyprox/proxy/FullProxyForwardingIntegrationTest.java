@@ -2,16 +2,23 @@ package net.spookly.hyprox.proxy;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import com.hypixel.hytale.protocol.Packet;
 import com.hypixel.hytale.protocol.packets.connection.ClientType;
 import com.hypixel.hytale.protocol.packets.connection.Connect;
 import com.hypixel.hytale.protocol.packets.connection.Disconnect;
 import com.hypixel.hytale.protocol.packets.connection.DisconnectType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.embedded.EmbeddedChannel;
 import net.spookly.hyprox.routing.BackendSource;
 import net.spookly.hyprox.routing.BackendTarget;
@@ -23,10 +30,8 @@ class FullProxyForwardingIntegrationTest {
         EmbeddedChannel clientChannel = new EmbeddedChannel();
         EmbeddedChannel backendStream = new EmbeddedChannel();
         EmbeddedChannel backendQuic = new EmbeddedChannel();
-        EmbeddedChannel backendDatagram = new EmbeddedChannel();
         BackendConnection connection = new BackendConnection(
                 backendTarget("backend-1"),
-                backendDatagram,
                 backendQuic,
                 backendStream
         );
@@ -62,7 +67,7 @@ class FullProxyForwardingIntegrationTest {
         assertSame(response, forwardedToClient);
         assertEquals(1, metrics.backendToClientPackets());
 
-        closeChannels(clientChannel, backendStream, backendQuic, backendDatagram);
+        closeChannels(clientChannel, backendStream, backendQuic);
     }
 
     @Test
@@ -70,10 +75,8 @@ class FullProxyForwardingIntegrationTest {
         EmbeddedChannel clientChannel = new EmbeddedChannel();
         EmbeddedChannel backendStream = new EmbeddedChannel();
         EmbeddedChannel backendQuic = new EmbeddedChannel();
-        EmbeddedChannel backendDatagram = new EmbeddedChannel();
         BackendConnection connection = new BackendConnection(
                 backendTarget("backend-2"),
-                backendDatagram,
                 backendQuic,
                 backendStream
         );
@@ -94,11 +97,175 @@ class FullProxyForwardingIntegrationTest {
         Packet forwarded = clientChannel.readOutbound();
         assertSame(disconnect, forwarded);
 
-        runPendingTasks(clientChannel, backendStream, backendQuic, backendDatagram);
+        runPendingTasks(clientChannel, backendStream, backendQuic);
         assertFalse(clientChannel.isOpen());
         assertFalse(backendStream.isOpen());
         assertFalse(backendQuic.isOpen());
-        assertFalse(backendDatagram.isOpen());
+    }
+
+    @Test
+    void relaysPassthroughFramesAndClosesOnDisconnectFrame() {
+        EmbeddedChannel clientChannel = new EmbeddedChannel();
+        EmbeddedChannel backendStream = new EmbeddedChannel();
+        EmbeddedChannel backendQuic = new EmbeddedChannel();
+        BackendConnection connection = new BackendConnection(
+                backendTarget("backend-3"),
+                backendQuic,
+                backendStream
+        );
+        ProxyBridgeSession session = new ProxyBridgeSession(clientChannel, connection, null);
+        ProxyDataPathMetrics metrics = new ProxyDataPathMetrics();
+
+        backendStream.pipeline().addLast(new PacketForwardingHandler(
+                clientChannel,
+                session,
+                metrics,
+                PacketForwardingHandler.ForwardDirection.BACKEND_TO_CLIENT,
+                null,
+                false
+        ));
+
+        ByteBuf frame = frameBytes(400, 6);
+        backendStream.writeInbound(new PacketFrame(400, frame.retainedDuplicate()));
+        ByteBuf forwarded = clientChannel.readOutbound();
+        assertEquals(frame, forwarded);
+        assertEquals(1, metrics.backendToClientPackets());
+        forwarded.release();
+        frame.release();
+
+        backendStream.writeInbound(new PacketFrame(Disconnect.PACKET_ID, frameBytes(Disconnect.PACKET_ID, 2)));
+        ByteBuf disconnect = clientChannel.readOutbound();
+        assertEquals(Disconnect.PACKET_ID, disconnect.getIntLE(4));
+        disconnect.release();
+        assertEquals(1, metrics.backendToClientPackets());
+
+        runPendingTasks(clientChannel, backendStream, backendQuic);
+        assertFalse(clientChannel.isOpen());
+        assertFalse(backendStream.isOpen());
+    }
+
+    @Test
+    void coalescesWritesUntilReadComplete() {
+        EmbeddedChannel clientChannel = new EmbeddedChannel();
+        EmbeddedChannel backendStream = new EmbeddedChannel();
+        EmbeddedChannel backendQuic = new EmbeddedChannel();
+        BackendConnection connection = new BackendConnection(
+                backendTarget("backend-4"),
+                backendQuic,
+                backendStream
+        );
+        ProxyBridgeSession session = new ProxyBridgeSession(clientChannel, connection, null);
+        ProxyDataPathMetrics metrics = new ProxyDataPathMetrics();
+
+        backendStream.pipeline().addLast(new PacketForwardingHandler(
+                clientChannel,
+                session,
+                metrics,
+                PacketForwardingHandler.ForwardDirection.BACKEND_TO_CLIENT,
+                null,
+                false,
+                new FlushPolicy(32, 0)
+        ));
+
+        backendStream.pipeline().fireChannelRead(new PacketFrame(400, frameBytes(400, 4)));
+        backendStream.pipeline().fireChannelRead(new PacketFrame(401, frameBytes(401, 4)));
+        assertNull(clientChannel.readOutbound());
+
+        backendStream.pipeline().fireChannelRead(new PacketFrame(402, frameBytes(402, 8)));
+        assertEquals(3, clientChannel.outboundMessages().size());
+        clientChannel.releaseOutbound();
+
+        backendStream.pipeline().fireChannelRead(new PacketFrame(403, frameBytes(403, 4)));
+        assertNull(clientChannel.readOutbound());
+        backendStream.pipeline().fireChannelReadComplete();
+        ByteBuf flushed = clientChannel.readOutbound();
+        assertEquals(403, flushed.getIntLE(4));
+        flushed.release();
+        assertEquals(4, metrics.backendToClientPackets());
+
+        closeChannels(clientChannel, backendStream, backendQuic);
+    }
+
+    @Test
+    void holdsWritesAcrossReadBurstsUntilTheFlushDelay() {
+        EmbeddedChannel clientChannel = new EmbeddedChannel();
+        EmbeddedChannel backendStream = new EmbeddedChannel();
+        EmbeddedChannel backendQuic = new EmbeddedChannel();
+        BackendConnection connection = new BackendConnection(
+                backendTarget("backend-5"),
+                backendQuic,
+                backendStream
+        );
+        ProxyBridgeSession session = new ProxyBridgeSession(clientChannel, connection, null);
+        ProxyDataPathMetrics metrics = new ProxyDataPathMetrics();
+
+        backendStream.pipeline().addLast(new PacketForwardingHandler(
+                clientChannel,
+                session,
+                metrics,
+                PacketForwardingHandler.ForwardDirection.BACKEND_TO_CLIENT,
+                null,
+                false,
+                new FlushPolicy(1024, 5)
+        ));
+
+        backendStream.pipeline().fireChannelRead(new PacketFrame(400, frameBytes(400, 4)));
+        backendStream.pipeline().fireChannelReadComplete();
+        backendStream.pipeline().fireChannelRead(new PacketFrame(401, frameBytes(401, 4)));
+        backendStream.pipeline().fireChannelReadComplete();
+        assertNull(clientChannel.readOutbound());
+
+        backendStream.advanceTimeBy(5, TimeUnit.MILLISECONDS);
+        backendStream.runScheduledPendingTasks();
+        assertEquals(2, clientChannel.outboundMessages().size());
+        clientChannel.releaseOutbound();
+
+        closeChannels(clientChannel, backendStream, backendQuic);
+    }
+
+    @Test
+    void countsEncodedSizeOfDecodedPacketsTowardsTheByteLimit() {
+        EmbeddedChannel clientChannel = new EmbeddedChannel(new UnflushedBytesHandler(), new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                ctx.write(Unpooled.buffer(24).writeZero(24), promise);
+            }
+        });
+        EmbeddedChannel backendStream = new EmbeddedChannel();
+        EmbeddedChannel backendQuic = new EmbeddedChannel();
+        BackendConnection connection = new BackendConnection(
+                backendTarget("backend-6"),
+                backendQuic,
+                backendStream
+        );
+        ProxyBridgeSession session = new ProxyBridgeSession(clientChannel, connection, null);
+        ProxyDataPathMetrics metrics = new ProxyDataPathMetrics();
+
+        backendStream.pipeline().addLast(new PacketForwardingHandler(
+                clientChannel,
+                session,
+                metrics,
+                PacketForwardingHandler.ForwardDirection.BACKEND_TO_CLIENT,
+                null,
+                false,
+                new FlushPolicy(48, 0)
+        ));
+
+        backendStream.pipeline().fireChannelRead(connectPacket("client-1"));
+        assertNull(clientChannel.readOutbound());
+        backendStream.pipeline().fireChannelRead(connectPacket("client-1"));
+        assertEquals(2, clientChannel.outboundMessages().size());
+        clientChannel.releaseOutbound();
+
+        closeChannels(clientChannel, backendStream, backendQuic);
+    }
+
+    private ByteBuf frameBytes(int packetId, int payloadLength) {
+        ByteBuf buf = Unpooled.buffer(8 + payloadLength);
+        buf.writeIntLE(payloadLength);
+        buf.writeIntLE(packetId);
+        buf.writeZero(payloadLength);
+        return buf;
     }
 
     private BackendTarget backendTarget(String id) {
@@ -0,0 +1,95 @@
+package net.spookly.hyprox.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hypixel.hytale.protocol.packets.auth.AuthToken;
+import com.hypixel.hytale.protocol.packets.connection.Connect;
+import com.hypixel.hytale.protocol.packets.connection.Disconnect;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.jupiter.api.Test;
+
+class PacketFrameDecoderTest {
+    private static final int GAMEPLAY_PACKET_ID = 400;
+
+    @Test
+    void emitsHandshakeFramesAsBuffersUntilGameplayStarts() {
+        PacketFrameDecoder decoder = new PacketFrameDecoder(1024);
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+
+        channel.writeInbound(frame(Connect.PACKET_ID, 4));
+        channel.writeInbound(frame(AuthToken.PACKET_ID, 2));
+        assertFalse(decoder.passthrough());
+
+        ByteBuf connect = channel.readInbound();
+        assertEquals(8 + 4, connect.readableBytes());
+        assertEquals(Connect.PACKET_ID, connect.getIntLE(4));
+        connect.release();
+        ByteBuf authToken = channel.readInbound();
+        assertEquals(AuthToken.PACKET_ID, authToken.getIntLE(4));
+        authToken.release();
+
+        channel.writeInbound(frame(GAMEPLAY_PACKET_ID, 3));
+        assertTrue(decoder.passthrough());
+        PacketFrame gameplay = assertInstanceOf(PacketFrame.class, channel.readInbound());
+        assertEquals(GAMEPLAY_PACKET_ID, gameplay.packetId());
+        assertEquals(8 + 3, gameplay.content().readableBytes());
+        gameplay.release();
+
+        channel.writeInbound(frame(Disconnect.PACKET_ID, 0));
+        PacketFrame disconnect = assertInstanceOf(PacketFrame.class, channel.readInbound());
+        assertEquals(Disconnect.PACKET_ID, disconnect.packetId());
+        disconnect.release();
+
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void waitsForCompleteFramesAndSplitsBatches() {
+        EmbeddedChannel channel = new EmbeddedChannel(new PacketFrameDecoder(1024));
+        ByteBuf batch = Unpooled.buffer();
+        batch.writeBytes(frame(GAMEPLAY_PACKET_ID, 5));
+        batch.writeBytes(frame(GAMEPLAY_PACKET_ID + 1, 1));
+
+        channel.writeInbound(batch.readRetainedSlice(10));
+        assertNull(channel.readInbound());
+
+        channel.writeInbound(batch);
+        PacketFrame first = channel.readInbound();
+        PacketFrame second = channel.readInbound();
+        assertEquals(GAMEPLAY_PACKET_ID, first.packetId());
+        assertEquals(GAMEPLAY_PACKET_ID + 1, second.packetId());
+        assertEquals(8 + 1, second.content().readableBytes());
+        first.release();
+        second.release();
+
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void rejectsOversizedFrames() {
+        EmbeddedChannel channel = new EmbeddedChannel(new PacketFrameDecoder(64));
+
+        DecoderException exception = assertThrows(DecoderException.class,
+                () -> channel.writeInbound(frame(GAMEPLAY_PACKET_ID, 100)));
+
+        assertInstanceOf(TooLongFrameException.class, exception);
+        channel.finishAndReleaseAll();
+    }
+
+    private ByteBuf frame(int packetId, int payloadLength) {
+        ByteBuf buf = Unpooled.buffer(8 + payloadLength);
+        buf.writeIntLE(payloadLength);
+        buf.writeIntLE(packetId);
+        buf.writeZero(payloadLength);
+        return buf;
+    }
+}
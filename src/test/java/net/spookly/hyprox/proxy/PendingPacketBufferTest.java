@@ -0,0 +1,83 @@
+package net.spookly.hyprox.proxy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingPacketBufferTest {
+    @Test
+    void enforcesSessionCapsAndReleasesBudgetOnClear() {
+        PendingBufferBudget budget = new PendingBufferBudget(100, 2, 1000, 1000);
+        PendingPacketBuffer buffer = new PendingPacketBuffer(budget);
+        ByteBuf first = Unpooled.buffer(4);
+        ByteBuf second = Unpooled.buffer(4);
+        ByteBuf third = Unpooled.buffer(4);
+
+        assertTrue(buffer.chargeBytes(60));
+        assertFalse(buffer.chargeBytes(41));
+        assertTrue(buffer.offer(first));
+        assertTrue(buffer.offer(second));
+        assertFalse(buffer.offer(third));
+        assertEquals(60, budget.bufferedBytes());
+        assertEquals(2, budget.bufferedPackets());
+
+        buffer.clear();
+
+        assertEquals(0, budget.bufferedBytes());
+        assertEquals(0, budget.bufferedPackets());
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+        assertEquals(1, third.refCnt());
+        third.release();
+    }
+
+    @Test
+    void sharesNodeBudgetAcrossSessions() {
+        PendingBufferBudget budget = new PendingBufferBudget(100, 10, 150, 3);
+        PendingPacketBuffer left = new PendingPacketBuffer(budget);
+        PendingPacketBuffer right = new PendingPacketBuffer(budget);
+
+        assertTrue(left.chargeBytes(100));
+        assertFalse(right.chargeBytes(60));
+        assertTrue(right.chargeBytes(50));
+        assertTrue(left.offer(Unpooled.EMPTY_BUFFER));
+        assertTrue(left.offer(Unpooled.EMPTY_BUFFER));
+        assertTrue(right.offer(Unpooled.EMPTY_BUFFER));
+        assertFalse(right.offer(Unpooled.EMPTY_BUFFER));
+
+        left.clear();
+
+        assertEquals(50, budget.bufferedBytes());
+        assertEquals(1, budget.bufferedPackets());
+        assertTrue(right.chargeBytes(50));
+        right.clear();
+        assertEquals(0, budget.bufferedBytes());
+    }
+
+    @Test
+    void meterChargesWireBytesAndReportsOverflowOnce() {
+        PendingBufferBudget budget = new PendingBufferBudget(10, 10, 1000, 1000);
+        PendingPacketBuffer buffer = new PendingPacketBuffer(budget);
+        AtomicInteger overflows = new AtomicInteger();
+        EmbeddedChannel channel = new EmbeddedChannel(buffer.meter(overflows::incrementAndGet));
+
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[8]));
+        assertEquals(8, buffer.chargedBytes());
+        assertEquals(0, overflows.get());
+
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[8]));
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[8]));
+
+        assertEquals(1, overflows.get());
+        assertEquals(8, budget.bufferedBytes());
+        buffer.clear();
+        channel.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,28 @@
+package net.spookly.hyprox.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import net.spookly.hyprox.config.HyproxConfig;
+import org.junit.jupiter.api.Test;
+
+class ProxyTransportTest {
+    @Test
+    void defaultsToNio() {
+        HyproxConfig config = new HyproxConfig();
+        config.proxy = new HyproxConfig.ProxyConfig();
+
+        assertEquals(ProxyTransport.NIO, ProxyTransport.fromConfig(config));
+        assertEquals(NioDatagramChannel.class, ProxyTransport.NIO.datagramChannelClass());
+    }
+
+    @Test
+    void nativeModesFallBackToNioWhenUnavailable() {
+        ProxyTransport expected = Epoll.isAvailable() ? ProxyTransport.EPOLL : ProxyTransport.NIO;
+
+        assertEquals(expected, ProxyTransport.resolve("auto"));
+        assertEquals(expected, ProxyTransport.resolve("EPOLL"));
+        assertEquals(ProxyTransport.NIO, ProxyTransport.resolve("nio"));
+    }
+}
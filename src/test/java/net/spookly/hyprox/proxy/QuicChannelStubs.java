@@ -0,0 +1,42 @@
+package net.spookly.hyprox.proxy;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.quic.QuicChannel;
+
+/**
+ * {@link QuicChannel} stand-ins for tests that only need the plain {@link Channel} behavior.
+ */
+final class QuicChannelStubs {
+    private QuicChannelStubs() {
+    }
+
+    /**
+     * A {@link QuicChannel} that forwards every {@link Channel} method to {@code delegate} and compares by
+     * identity. QUIC-specific methods throw {@link UnsupportedOperationException}.
+     */
+    static QuicChannel wrap(EmbeddedChannel delegate) {
+        return (QuicChannel) Proxy.newProxyInstance(
+                QuicChannelStubs.class.getClassLoader(),
+                new Class<?>[]{QuicChannel.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    if (method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    try {
+                        return Channel.class.getMethod(method.getName(), method.getParameterTypes())
+                                .invoke(delegate, args);
+                    } catch (NoSuchMethodException e) {
+                        throw new UnsupportedOperationException(method.getName());
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,126 @@
+package net.spookly.hyprox.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.quic.QuicChannel;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import net.spookly.hyprox.config.HyproxConfig;
+import net.spookly.hyprox.registry.BackendRegistry;
+import net.spookly.hyprox.routing.BackendCapacityTracker;
+import net.spookly.hyprox.routing.BackendHealthTracker;
+import net.spookly.hyprox.routing.BackendSource;
+import net.spookly.hyprox.routing.BackendTarget;
+import net.spookly.hyprox.routing.PathSelector;
+import net.spookly.hyprox.routing.RoutingPlanner;
+import net.spookly.hyprox.routing.RoutingService;
+import org.junit.jupiter.api.Test;
+
+class SpeculativeConnectHandlerTest {
+    private static final String CLIENT_IP = "10.0.0.50";
+
+    @Test
+    void claimsTheSpeculativeConnectForTheRoutedBackend() {
+        List<Promise<BackendConnection>> connects = new ArrayList<>();
+        SpeculativeConnectHandler handler = handler(new ProxySessionLimiter(10, 10, Clock.systemUTC()), connects);
+        QuicChannel channel = quicChannel();
+
+        long beforeStart = System.nanoTime();
+        handler.start(channel);
+        handler.start(channel);
+
+        assertEquals(1, connects.size());
+        SpeculativeConnectHandler.PendingConnect claimed = SpeculativeConnectHandler.claim(channel, backend("game-1"));
+        assertSame(connects.get(0), claimed.future());
+        assertTrue(claimed.startNanos() - beforeStart >= 0);
+        assertNull(SpeculativeConnectHandler.claim(channel, backend("game-1")));
+        assertFalse(connects.get(0).isCancelled());
+        assertTrue(SpeculativeConnectHandler.takeAdmittedHandshake(channel));
+        assertFalse(SpeculativeConnectHandler.takeAdmittedHandshake(channel));
+    }
+
+    @Test
+    void discardsTheSpeculativeConnectWhenRoutingPicksAnotherBackend() {
+        List<Promise<BackendConnection>> connects = new ArrayList<>();
+        SpeculativeConnectHandler handler = handler(new ProxySessionLimiter(10, 10, Clock.systemUTC()), connects);
+        QuicChannel channel = quicChannel();
+
+        handler.start(channel);
+
+        assertEquals(1, connects.size());
+        assertNull(SpeculativeConnectHandler.claim(channel, backend("game-2")));
+        assertTrue(connects.get(0).isCancelled());
+    }
+
+    @Test
+    void doesNotConnectWhenTheSessionLimiterRefuses() {
+        List<Promise<BackendConnection>> connects = new ArrayList<>();
+        ProxySessionLimiter rateLimited = new ProxySessionLimiter(1, null, Clock.systemUTC());
+        assertTrue(rateLimited.tryAcquireHandshake(CLIENT_IP));
+        QuicChannel first = quicChannel();
+        handler(rateLimited, connects).start(first);
+
+        ProxySessionLimiter atSessionCap = new ProxySessionLimiter(null, 1, Clock.systemUTC());
+        assertTrue(atSessionCap.tryOpenSession(CLIENT_IP));
+        QuicChannel second = quicChannel();
+        handler(atSessionCap, connects).start(second);
+
+        assertTrue(connects.isEmpty());
+        assertFalse(SpeculativeConnectHandler.takeAdmittedHandshake(first));
+        assertFalse(SpeculativeConnectHandler.takeAdmittedHandshake(second));
+        assertTrue(atSessionCap.tryAcquireHandshake(CLIENT_IP));
+    }
+
+    private static SpeculativeConnectHandler handler(ProxySessionLimiter limiter,
+                                                     List<Promise<BackendConnection>> connects) {
+        HyproxConfig config = config();
+        RoutingService routingService = new RoutingService(config, BackendRegistry.fromConfig(config),
+                new BackendCapacityTracker(), new BackendHealthTracker());
+        RoutingPlanner planner = new RoutingPlanner(routingService, new PathSelector(config));
+        return new SpeculativeConnectHandler(config, planner, limiter, (backend, eventLoop) -> {
+            Promise<BackendConnection> promise = ImmediateEventExecutor.INSTANCE.newPromise();
+            connects.add(promise);
+            return promise;
+        });
+    }
+
+    private static HyproxConfig config() {
+        HyproxConfig config = new HyproxConfig();
+        config.proxy = new HyproxConfig.ProxyConfig();
+        config.proxy.mode = "full";
+        config.proxy.speculativeConnect = true;
+        config.routing = new HyproxConfig.RoutingConfig();
+        config.routing.defaultPool = "game";
+        config.routing.pools = new LinkedHashMap<>();
+        HyproxConfig.PoolConfig pool = new HyproxConfig.PoolConfig();
+        pool.policy = "weighted";
+        HyproxConfig.BackendConfig backend = new HyproxConfig.BackendConfig();
+        backend.id = "game-1";
+        backend.host = "10.0.0.1";
+        backend.port = 9000;
+        backend.weight = 1;
+        pool.backends = List.of(backend);
+        config.routing.pools.put("game", pool);
+        return config;
+    }
+
+    private static BackendTarget backend(String id) {
+        return new BackendTarget(id, "game", "10.0.0.1", 9000, 1, null, List.of(), BackendSource.STATIC, false);
+    }
+
+    private static QuicChannel quicChannel() {
+        EmbeddedChannel delegate = new EmbeddedChannel();
+        delegate.attr(ProxySessionContext.SESSION_CONTEXT).set(ProxySessionContext.from(CLIENT_IP, null));
+        return QuicChannelStubs.wrap(delegate);
+    }
+}
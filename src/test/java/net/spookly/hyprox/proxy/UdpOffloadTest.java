@@ -0,0 +1,46 @@
+package net.spookly.hyprox.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import net.spookly.hyprox.config.HyproxConfig;
+import org.junit.jupiter.api.Test;
+
+class UdpOffloadTest {
+    @Test
+    void disabledUnlessRequested() {
+        assertSame(UdpOffload.DISABLED, UdpOffload.fromConfig(config(null, null), ProxyTransport.EPOLL));
+        assertNull(UdpOffload.DISABLED.segmentedAllocator());
+    }
+
+    @Test
+    void fallsBackWithoutNativeTransport() {
+        UdpOffload offload = UdpOffload.fromConfig(config(true, true), ProxyTransport.NIO);
+
+        assertFalse(offload.gso());
+        assertFalse(offload.gro());
+    }
+
+    @Test
+    void enablesRequestedOffloadWhenSupported() {
+        assumeTrue(UdpOffload.isSupported(ProxyTransport.EPOLL), "epoll UDP segmentation offload not available");
+        UdpOffload offload = UdpOffload.fromConfig(config(true, false), ProxyTransport.EPOLL);
+
+        assertTrue(offload.gso());
+        assertFalse(offload.gro());
+        assertEquals(UdpOffload.DEFAULT_GSO_MAX_SEGMENTS, offload.segmentedAllocator().maxNumSegments());
+    }
+
+    private HyproxConfig config(Boolean gso, Boolean gro) {
+        HyproxConfig config = new HyproxConfig();
+        config.proxy = new HyproxConfig.ProxyConfig();
+        config.proxy.quic = new HyproxConfig.QuicConfig();
+        config.proxy.quic.gso = gso;
+        config.proxy.quic.gro = gro;
+        return config;
+    }
+}
@@ -0,0 +1,55 @@
+package net.spookly.hyprox.proxy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VerifiedIdentityCacheTest {
+    @Test
+    void remembersFingerprintsPerHost() throws Exception {
+        SelfSignedCertificate first = new SelfSignedCertificate("backend.local");
+        SelfSignedCertificate second = new SelfSignedCertificate("backend.local");
+        try {
+            String firstFingerprint = VerifiedIdentityCache.fingerprint(first.cert());
+            String secondFingerprint = VerifiedIdentityCache.fingerprint(second.cert());
+            assertNotNull(firstFingerprint);
+            assertEquals(firstFingerprint, VerifiedIdentityCache.fingerprint(first.cert()));
+            assertNotEquals(firstFingerprint, secondFingerprint);
+
+            VerifiedIdentityCache cache = new VerifiedIdentityCache();
+            cache.add("Backend.Local", firstFingerprint);
+
+            assertTrue(cache.contains("backend.local", firstFingerprint));
+            assertFalse(cache.contains("backend.local", secondFingerprint));
+            assertFalse(cache.contains("other.local", firstFingerprint));
+        } finally {
+            cleanupCertificate(first);
+            cleanupCertificate(second);
+        }
+    }
+
+    @Test
+    void clearsWhenFull() {
+        VerifiedIdentityCache cache = new VerifiedIdentityCache(2);
+        cache.add("a.local", "aa");
+        cache.add("b.local", "bb");
+        cache.add("c.local", "cc");
+
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains("c.local", "cc"));
+        assertFalse(cache.contains("a.local", "aa"));
+    }
+
+    private void cleanupCertificate(SelfSignedCertificate certificate) throws IOException {
+        Files.deleteIfExists(certificate.certificate().toPath());
+        Files.deleteIfExists(certificate.privateKey().toPath());
+    }
+}
@@ -139,4 +139,32 @@ class BackendRegistryTest {
         registry.register(backend);
         assertThrows(IllegalArgumentException.class, () -> registry.heartbeat("dyn-2", "orch-2", null));
     }
+
+    @Test
+    void indexesPoolsCaseInsensitivelyAndAdvancesPoolEpochs() {
+        BackendRegistry registry = new BackendRegistry(Set.of(), 30, 5, 60);
+        assertEquals(0, registry.epoch("lobby"));
+
+        registry.register(backend("dyn-a", "Lobby"));
+        registry.register(backend("dyn-b", "game"));
+        long lobbyEpoch = registry.epoch("lobby");
+        long gameEpoch = registry.epoch("GAME");
+        assertTrue(lobbyEpoch > 0 && gameEpoch > lobbyEpoch);
+        assertEquals(gameEpoch, registry.epoch());
+        assertEquals(List.of("dyn-a"), registry.list("LOBBY").stream().map(RegisteredBackend::id).toList());
+        assertEquals(2, registry.list(null).size());
+
+        registry.heartbeat("dyn-a", "orch-1", null);
+        registry.register(backend("dyn-a", "lobby"));
+        assertEquals(lobbyEpoch, registry.epoch("lobby"));
+
+        registry.drain("dyn-a", "orch-1", null);
+        assertTrue(registry.epoch("lobby") > gameEpoch);
+        assertEquals(gameEpoch, registry.epoch("game"));
+    }
+
+    private static RegisteredBackend backend(String id, String pool) {
+        return new RegisteredBackend(id, pool, "10.0.0.20", 9000, 1, 100, List.of(), "orch-1",
+                Instant.now(), Instant.now(), false);
+    }
 }
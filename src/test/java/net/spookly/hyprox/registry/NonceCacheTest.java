@@ -0,0 +1,94 @@
+package net.spookly.hyprox.registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+class NonceCacheTest {
+    @Test
+    void rejectsReplaysUntilTheNonceExpires() {
+        MutableClock clock = new MutableClock(1_000);
+        NonceCache cache = new NonceCache(10, 100, clock);
+
+        assertTrue(cache.register("a", clock.instant()));
+        assertFalse(cache.register("a", clock.instant()));
+        clock.second = 1_010;
+        assertFalse(cache.register("a", clock.instant()));
+        clock.second = 1_011;
+        assertTrue(cache.register("a", clock.instant()));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void retainsFutureTimestampsPastTheirOwnTtl() {
+        MutableClock clock = new MutableClock(1_000);
+        NonceCache cache = new NonceCache(10, 100, clock);
+
+        assertTrue(cache.register("ahead", Instant.ofEpochSecond(1_005)));
+        clock.second = 1_014;
+        assertFalse(cache.register("ahead", clock.instant()));
+        clock.second = 1_016;
+        assertTrue(cache.register("ahead", clock.instant()));
+    }
+
+    @Test
+    void expiresAfterLongIdlePeriods() {
+        MutableClock clock = new MutableClock(1_000);
+        NonceCache cache = new NonceCache(5, 1_000, clock);
+        for (int i = 0; i < 500; i++) {
+            clock.second = 1_000 + i / 50;
+            assertTrue(cache.register("n-" + i, clock.instant()));
+        }
+        assertEquals(300, cache.size());
+
+        clock.second = 100_000;
+        assertTrue(cache.register("late", clock.instant()));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void failsClosedWhenFull() {
+        MutableClock clock = new MutableClock(1_000);
+        NonceCache cache = new NonceCache(10, 3, clock);
+
+        assertTrue(cache.register("a", clock.instant()));
+        assertTrue(cache.register("b", clock.instant()));
+        assertTrue(cache.register("c", clock.instant()));
+        assertFalse(cache.register("d", clock.instant()));
+        assertFalse(cache.register("a", clock.instant()));
+        assertEquals(3, cache.size());
+
+        clock.second = 1_011;
+        assertTrue(cache.register("d", clock.instant()));
+    }
+
+    private static final class MutableClock extends Clock {
+        private long second;
+
+        private MutableClock(long second) {
+            this.second = second;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochSecond(second);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package net.spookly.hyprox.registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import net.spookly.hyprox.config.HyproxConfig;
+import org.junit.jupiter.api.Test;
+
+class RegistryEventLogTest {
+    @Test
+    void returnsEventsAfterTheResumeEpochFilteredByPool() throws Exception {
+        RegistryEventLog log = new RegistryEventLog(16);
+        BackendRegistry registry = new BackendRegistry(Set.of(), 30, 5, 60);
+        registry.addListener(log);
+        registry.register(backend("dyn-1", "lobby"));
+        registry.register(backend("dyn-2", "game"));
+        registry.heartbeat("dyn-1", "orch-1", null);
+        registry.drain("dyn-1", "orch-1", null);
+
+        RegistryEventLog.Batch all = log.await(0, null, 10, 0);
+        assertEquals(4, all.epoch());
+        assertEquals(List.of(1L, 2L, 3L, 4L), all.epochs());
+
+        RegistryEventLog.Batch lobby = log.await(1, "LOBBY", 10, 0);
+        assertEquals(List.of(3L, 4L), lobby.epochs());
+        assertEquals(RegistryEventType.HEARTBEAT, lobby.events().get(0).type());
+        assertEquals(RegistryEventType.DRAIN, lobby.events().get(1).type());
+
+        RegistryEventLog.Batch limited = log.await(0, null, 1, 0);
+        assertEquals(1, limited.epoch());
+        assertEquals(1, limited.events().size());
+    }
+
+    @Test
+    void leavesHeartbeatsOutUnlessConfigured() throws Exception {
+        HyproxConfig.RegistryConfig config = new HyproxConfig.RegistryConfig();
+        RegistryEventLog log = RegistryEventLog.fromConfig(config);
+        config.watchHeartbeats = true;
+        RegistryEventLog withHeartbeats = RegistryEventLog.fromConfig(config);
+        BackendRegistry registry = new BackendRegistry(Set.of(), 30, 5, 60);
+        registry.addListener(log);
+        registry.addListener(withHeartbeats);
+        registry.register(backend("dyn-1", "lobby"));
+        for (int i = 0; i < 10; i++) {
+            registry.heartbeat("dyn-1", "orch-1", null);
+        }
+        registry.drain("dyn-1", "orch-1", null);
+
+        RegistryEventLog.Batch batch = log.await(0, null, 10, 0);
+        assertEquals(2, batch.epoch());
+        assertEquals(List.of(RegistryEventType.REGISTER, RegistryEventType.DRAIN),
+                batch.events().stream().map(RegistryEvent::type).toList());
+        assertEquals(12, withHeartbeats.epoch());
+    }
+
+    @Test
+    void waitsForTheNextEvent() throws Exception {
+        RegistryEventLog log = new RegistryEventLog(16);
+        BackendRegistry registry = new BackendRegistry(Set.of(), 30, 5, 60);
+        registry.addListener(log);
+
+        CompletableFuture<RegistryEventLog.Batch> watch = CompletableFuture.supplyAsync(() -> {
+            try {
+                return log.await(0, "game", 10, 10_000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(watch.isDone());
+        registry.register(backend("dyn-1", "lobby"));
+        registry.register(backend("dyn-2", "game"));
+
+        RegistryEventLog.Batch batch = watch.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(2L), batch.epochs());
+        assertEquals("dyn-2", batch.events().get(0).backendId());
+    }
+
+    @Test
+    void timesOutWithTheScannedEpochAndExpiresOverwrittenEpochs() throws Exception {
+        RegistryEventLog log = new RegistryEventLog(2);
+        BackendRegistry registry = new BackendRegistry(Set.of(), 30, 5, 60);
+        registry.addListener(log);
+        registry.register(backend("dyn-1", "lobby"));
+
+        RegistryEventLog.Batch empty = log.await(0, "game", 10, 20);
+        assertTrue(empty.events().isEmpty());
+        assertEquals(1, empty.epoch());
+        assertFalse(empty.expired());
+
+        registry.register(backend("dyn-2", "lobby"));
+        registry.register(backend("dyn-3", "lobby"));
+        assertTrue(log.await(0, null, 10, 0).expired());
+        assertEquals(List.of(2L, 3L), log.await(1, null, 10, 0).epochs());
+        RegistryEventLog.Batch ahead = log.await(9, null, 10, 0);
+        assertTrue(ahead.expired());
+        assertEquals(3, ahead.epoch());
+    }
+
+    private static RegisteredBackend backend(String id, String pool) {
+        return new RegisteredBackend(id, pool, "10.0.0.20", 9000, 1, 100, List.of(), "orch-1",
+                Instant.now(), Instant.now(), false);
+    }
+}
@@ -0,0 +1,358 @@
+package net.spookly.hyprox.registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.spookly.hyprox.config.HyproxConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RegistryServerTest {
+    private static final String SHARED_KEY = "registry-test-key";
+    private static final String BATCH_PATH = "/v1/registry/batch";
+    private static final String REGISTER_PATH = "/v1/registry/register";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private RegistryServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void batchReportsPerItemResultsForMixedOperations() throws Exception {
+        BackendRegistry registry = BackendRegistry.fromConfig(config(10));
+        start(registry, 10);
+
+        HttpResponse<String> response = post(BATCH_PATH, """
+                {"orchestratorId":"orch-1","operations":[
+                  {"op":"register","pool":"game","backendId":"game-1","host":"127.0.0.1","port":9000},
+                  {"op":"heartbeat","backendId":"game-missing"},
+                  {"op":"register","pool":"lobby","backendId":"game-2","host":"127.0.0.1","port":9000},
+                  {"op":"drain","backendId":"game-1","drainSeconds":10}
+                ]}""");
+
+        assertEquals(200, response.statusCode());
+        JsonNode data = MAPPER.readTree(response.body()).get("data");
+        assertEquals(4, data.get("count").asInt());
+        assertEquals(2, data.get("failed").asInt());
+        JsonNode results = data.get("results");
+        assertTrue(results.get(0).get("ok").asBoolean());
+        assertEquals(0, results.get(0).get("index").asInt());
+        assertEquals("register", results.get(0).get("op").asText());
+        assertEquals("game-1", results.get(0).get("backendId").asText());
+        assertFalse(results.get(1).get("ok").asBoolean());
+        assertEquals("backend id not found", results.get(1).get("message").asText());
+        assertFalse(results.get(2).get("ok").asBoolean());
+        assertEquals("game-2", results.get(2).get("backendId").asText());
+        assertTrue(results.get(3).get("ok").asBoolean());
+        assertTrue(results.get(3).get("draining").asBoolean());
+        assertEquals(1, registry.size());
+        assertTrue(registry.list("game").get(0).draining());
+    }
+
+    @Test
+    void batchRejectsUnknownOperationPerItem() throws Exception {
+        BackendRegistry registry = BackendRegistry.fromConfig(config(10));
+        start(registry, 10);
+
+        HttpResponse<String> response = post(BATCH_PATH, """
+                {"orchestratorId":"orch-1","operations":[
+                  {"op":"restart","backendId":"game-1"},
+                  {"backendId":"game-1"}
+                ]}""");
+
+        assertEquals(200, response.statusCode());
+        JsonNode results = MAPPER.readTree(response.body()).get("data").get("results");
+        assertEquals("op must be register, heartbeat or drain", results.get(0).get("message").asText());
+        assertEquals("restart", results.get(0).get("op").asText());
+        assertEquals("op is required", results.get(1).get("message").asText());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void batchOverTheOperationCapIsRejected() throws Exception {
+        BackendRegistry registry = BackendRegistry.fromConfig(config(2));
+        start(registry, 2);
+
+        HttpResponse<String> response = post(BATCH_PATH, """
+                {"orchestratorId":"orch-1","operations":[
+                  {"op":"register","pool":"game","backendId":"game-1","host":"127.0.0.1","port":9000},
+                  {"op":"register","pool":"game","backendId":"game-2","host":"127.0.0.1","port":9000},
+                  {"op":"register","pool":"game","backendId":"game-3","host":"127.0.0.1","port":9000}
+                ]}""");
+
+        assertEquals(400, response.statusCode());
+        assertEquals("operations must not exceed 2", MAPPER.readTree(response.body()).get("message").asText());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void batchNotifiesListenersOnce() throws Exception {
+        BackendRegistry registry = BackendRegistry.fromConfig(config(10));
+        AtomicInteger notifications = new AtomicInteger();
+        List<RegistryEvent> events = new ArrayList<>();
+        registry.addListener(new RegistryEventListener() {
+            @Override
+            public void onEvent(RegistryEvent event) {
+                throw new AssertionError("batch events must be delivered together");
+            }
+
+            @Override
+            public void onEvents(List<RegistryEvent> batch) {
+                notifications.incrementAndGet();
+                events.addAll(batch);
+            }
+        });
+        start(registry, 10);
+
+        HttpResponse<String> response = post(BATCH_PATH, """
+                {"orchestratorId":"orch-1","operations":[
+                  {"op":"register","pool":"game","backendId":"game-1","host":"127.0.0.1","port":9000},
+                  {"op":"register","pool":"game","backendId":"game-2","host":"127.0.0.1","port":9000},
+                  {"op":"drain","backendId":"game-1"}
+                ]}""");
+
+        assertEquals(200, response.statusCode());
+        assertEquals(1, notifications.get());
+        assertEquals(List.of(RegistryEventType.REGISTER, RegistryEventType.REGISTER, RegistryEventType.DRAIN),
+                events.stream().map(RegistryEvent::type).toList());
+    }
+
+    @Test
+    void answersBusyOverTheConcurrentRequestLimit() throws Exception {
+        HyproxConfig config = config(10);
+        config.registry.maxConcurrentRequests = 1;
+        BackendRegistry registry = BackendRegistry.fromConfig(config);
+        BlockingListener blocking = new BlockingListener();
+        registry.addListener(blocking);
+        start(registry, config);
+        try {
+            CompletableFuture<HttpResponse<String>> held = postAsync(REGISTER_PATH, register("game-1"));
+            assertTrue(blocking.entered.await(5, TimeUnit.SECONDS));
+
+            HttpResponse<String> busy = post(REGISTER_PATH, register("game-2"));
+
+            assertEquals(503, busy.statusCode());
+            assertEquals("1", busy.headers().firstValue("Retry-After").orElse(null));
+            assertEquals("registry busy", MAPPER.readTree(busy.body()).get("message").asText());
+            blocking.release.countDown();
+            assertEquals(200, held.get(5, TimeUnit.SECONDS).statusCode());
+        } finally {
+            blocking.release.countDown();
+        }
+    }
+
+    @Test
+    void answersBusyWhenTheWorkerQueueIsFull() throws Exception {
+        HyproxConfig config = config(10);
+        config.registry.workerThreads = 1;
+        config.registry.watchMaxClients = 0;
+        BackendRegistry registry = BackendRegistry.fromConfig(config);
+        BlockingListener blocking = new BlockingListener();
+        registry.addListener(blocking);
+        start(registry, config);
+        try {
+            CompletableFuture<HttpResponse<String>> running = postAsync(REGISTER_PATH, register("game-1"));
+            assertTrue(blocking.entered.await(5, TimeUnit.SECONDS));
+            CompletableFuture<HttpResponse<String>> second = postAsync(REGISTER_PATH, register("game-2"));
+            CompletableFuture<HttpResponse<String>> third = postAsync(REGISTER_PATH, register("game-3"));
+
+            // One of them waits in the single queue slot, the other is rejected and answered right away.
+            @SuppressWarnings("unchecked")
+            HttpResponse<String> rejected = (HttpResponse<String>) CompletableFuture.anyOf(second, third)
+                    .get(5, TimeUnit.SECONDS);
+
+            assertEquals(503, rejected.statusCode());
+            assertEquals("1", rejected.headers().firstValue("Retry-After").orElse(null));
+            blocking.release.countDown();
+            assertEquals(200, running.get(5, TimeUnit.SECONDS).statusCode());
+            HttpResponse<String> queued = rejected == second.getNow(null) ? third.get(5, TimeUnit.SECONDS)
+                    : second.get(5, TimeUnit.SECONDS);
+            assertEquals(200, queued.statusCode());
+        } finally {
+            blocking.release.countDown();
+        }
+    }
+
+    @Test
+    void rejectsADeclaredBodyOverTheLimitBeforeReadingIt() throws Exception {
+        HyproxConfig config = config(10);
+        config.registry.maxRequestBytes = 64;
+        BackendRegistry registry = BackendRegistry.fromConfig(config);
+        start(registry, config);
+
+        HttpResponse<String> response = post(REGISTER_PATH, register("game-1"));
+
+        assertEquals(413, response.statusCode());
+        assertEquals("request too large", MAPPER.readTree(response.body()).get("message").asText());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void limitsChunkedBodies() throws Exception {
+        HyproxConfig config = config(10);
+        config.registry.maxRequestBytes = 64;
+        BackendRegistry registry = BackendRegistry.fromConfig(config);
+        start(registry, config);
+        byte[] body = register("game-1").getBytes(StandardCharsets.UTF_8);
+
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create("http://127.0.0.1:" + server.address().getPort() + REGISTER_PATH))
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(body)))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(413, response.statusCode());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void rejectsATruncatedBody() throws Exception {
+        HyproxConfig config = config(10);
+        BackendRegistry registry = BackendRegistry.fromConfig(config);
+        start(registry, config);
+
+        try (Socket socket = new Socket("127.0.0.1", server.address().getPort())) {
+            OutputStream output = socket.getOutputStream();
+            output.write(("POST " + REGISTER_PATH + " HTTP/1.1\r\n"
+                    + "Host: 127.0.0.1\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: 100\r\n"
+                    + "\r\n"
+                    + "{\"op\":").getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            socket.shutdownOutput();
+            socket.setSoTimeout(5000);
+
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+            assertTrue(response.startsWith("HTTP/1.1 400"), response);
+            assertTrue(response.contains("truncated request body"), response);
+        }
+        assertEquals(0, registry.size());
+    }
+
+    private void start(BackendRegistry registry, int maxBatchOperations) {
+        start(registry, config(maxBatchOperations));
+    }
+
+    private void start(BackendRegistry registry, HyproxConfig config) {
+        server = new RegistryServer(config, registry);
+        server.start();
+    }
+
+    private static String register(String backendId) {
+        return "{\"orchestratorId\":\"orch-1\",\"pool\":\"game\",\"backendId\":\"" + backendId
+                + "\",\"host\":\"127.0.0.1\",\"port\":9000}";
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        return client.send(signedPost(path, body), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private CompletableFuture<HttpResponse<String>> postAsync(String path, String body) throws Exception {
+        return client.sendAsync(signedPost(path, body), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest signedPost(String path, String body) throws Exception {
+        long timestamp = Instant.now().getEpochSecond();
+        String nonce = UUID.randomUUID().toString().replace("-", "");
+        String signature = sign("POST\n" + path + "\n" + timestamp + "\n" + nonce + "\n" + body);
+        return HttpRequest.newBuilder(
+                        URI.create("http://127.0.0.1:" + server.address().getPort() + path))
+                .header("Content-Type", "application/json")
+                .header("X-Hyprox-Orchestrator", "orch-1")
+                .header("X-Hyprox-Timestamp", Long.toString(timestamp))
+                .header("X-Hyprox-Nonce", nonce)
+                .header("X-Hyprox-Signature", signature)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String sign(String canonical) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SHARED_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return Base64.getEncoder().encodeToString(mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static HyproxConfig config(int maxBatchOperations) {
+        HyproxConfig config = new HyproxConfig();
+        config.routing = new HyproxConfig.RoutingConfig();
+        config.routing.pools = new LinkedHashMap<>();
+        config.routing.pools.put("game", new HyproxConfig.PoolConfig());
+        config.registry = new HyproxConfig.RegistryConfig();
+        config.registry.enabled = true;
+        config.registry.listen = "127.0.0.1:" + freePort();
+        config.registry.maxBatchOperations = maxBatchOperations;
+        config.registry.allowedNetworks = List.of("127.0.0.0/8");
+        config.registry.allowedPorts = List.of(9000);
+        config.registry.allowLoopback = true;
+        config.registry.auth = new HyproxConfig.RegistryAuthConfig();
+        config.registry.auth.mode = "hmac";
+        config.registry.auth.sharedKey = SHARED_KEY;
+        config.registry.auth.clockSkewSeconds = 10;
+        HyproxConfig.RegistryAllowlistEntry entry = new HyproxConfig.RegistryAllowlistEntry();
+        entry.orchestratorId = "orch-1";
+        entry.allowedPools = List.of("game");
+        entry.allowedBackendIdPrefixes = List.of("game-");
+        config.registry.allowlist = new ArrayList<>(List.of(entry));
+        return config;
+    }
+
+    /**
+     * Blocks every registry notification until {@code release} is counted down.
+     */
+    private static final class BlockingListener implements RegistryEventListener {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void onEvent(RegistryEvent event) {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package net.spookly.hyprox.registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RegistryStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresRegistrationsFromTheLogAfterARestart() throws Exception {
+        RegistryStore store = new RegistryStore(directory, 60_000, 3600);
+        BackendRegistry registry = new BackendRegistry(Set.of(), 30, 5, 60, RegistryEventListener.NOOP, store);
+        registry.start();
+        registry.register(backend("dyn-1", "lobby", List.of("eu")));
+        registry.register(backend("dyn-2", "game", List.of()));
+        registry.heartbeat("dyn-1", "orch-1", null);
+        registry.drain("dyn-2", "orch-1", null);
+        store.flush();
+        registry.stop();
+
+        BackendRegistry restarted = new BackendRegistry(Set.of(), 30, 5, 60, RegistryEventListener.NOOP,
+                new RegistryStore(directory, 60_000, 3600));
+        assertEquals(2, restarted.restore());
+        assertEquals(0, restarted.restore());
+
+        RegisteredBackend lobby = restarted.list("lobby").get(0);
+        assertEquals("dyn-1", lobby.id());
+        assertEquals(List.of("eu"), lobby.tags());
+        assertEquals("orch-1", lobby.orchestratorId());
+        assertTrue(restarted.list("game").get(0).draining());
+        assertTrue(restarted.epoch("game") > 0);
+        restarted.heartbeat("dyn-1", "orch-1", null);
+    }
+
+    @Test
+    void compactsIntoASnapshotAndSkipsExpiredAndTornRecords() throws Exception {
+        RegistryStore store = new RegistryStore(directory, 60_000, 3600);
+        BackendRegistry registry = new BackendRegistry(Set.of(), 30, 5, 60, RegistryEventListener.NOOP, store);
+        registry.start();
+        registry.register(backend("dyn-1", "lobby", List.of()));
+        store.compact(() -> registry.list(null));
+        assertEquals(0, Files.size(directory.resolve("registry.wal")));
+        registry.register(backend("dyn-2", "lobby", List.of()));
+        store.flush();
+        registry.stop();
+
+        Instant past = Instant.now().minusSeconds(120);
+        RegistryStore.Record expired = RegistryStore.Record.from(new RegisteredBackend(
+                "dyn-old", "lobby", "10.0.0.30", 9000, 1, 100, List.of(), "orch-1", past, past, false));
+        Files.writeString(directory.resolve("registry.wal"),
+                "{\"id\":\"dyn-old\",\"pool\":\"lobby\",\"host\":\"10.0.0.30\",\"port\":9000,\"orchestratorId\":\"orch-1\","
+                        + "\"lastHeartbeat\":" + expired.lastHeartbeat + ",\"expiresAt\":" + expired.expiresAt + "}\n"
+                        + "{\"id\":\"dyn-3\",\"pool\":\"lo",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        BackendRegistry restarted = new BackendRegistry(Set.of(), 30, 5, 60, RegistryEventListener.NOOP,
+                new RegistryStore(directory, 60_000, 3600));
+        assertEquals(2, restarted.restore());
+        assertEquals(Set.of("dyn-1", "dyn-2"),
+                Set.copyOf(restarted.list("lobby").stream().map(RegisteredBackend::id).toList()));
+    }
+
+    @Test
+    void keepsRecordsBufferedWhileCompacting() throws Exception {
+        RegistryStore store = new RegistryStore(directory, 60_000, 3600);
+        BackendRegistry registry = new BackendRegistry(Set.of(), 30, 5, 60, RegistryEventListener.NOOP, store);
+        registry.start();
+        registry.register(backend("dyn-1", "lobby", List.of()));
+        store.compact(() -> {
+            Collection<RegisteredBackend> listed = registry.list(null);
+            CompletableFuture.runAsync(() -> registry.register(backend("dyn-2", "lobby", List.of())))
+                    .orTimeout(5, TimeUnit.SECONDS)
+                    .join();
+            return listed;
+        });
+        store.flush();
+        registry.stop();
+
+        assertEquals(Set.of("dyn-1", "dyn-2"), Set.copyOf(new RegistryStore(directory, 60_000, 3600).load()
+                .stream().map(RegisteredBackend::id).toList()));
+    }
+
+    @Test
+    void replaysExpiryAsRemoval() throws Exception {
+        RegistryStore store = new RegistryStore(directory, 60_000, 3600);
+        BackendRegistry registry = new BackendRegistry(Set.of(), 30, 5, 60, RegistryEventListener.NOOP, store);
+        registry.start();
+        RegisteredBackend stored = registry.register(backend("dyn-1", "lobby", List.of()));
+        store.onEvent(RegistryEvent.from(RegistryEventType.EXPIRE, stored, Instant.now()));
+        store.flush();
+        registry.stop();
+
+        assertTrue(new RegistryStore(directory, 60_000, 3600).load().isEmpty());
+    }
+
+    private static RegisteredBackend backend(String id, String pool, List<String> tags) {
+        return new RegisteredBackend(id, pool, "10.0.0.20", 9000, 1, 100, tags, "orch-1",
+                Instant.now(), Instant.now(), false);
+    }
+}
@@ -2,6 +2,7 @@ package net.spookly.hyprox.routing;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -35,6 +36,27 @@ class BackendHealthProbeServiceTest {
         service.stop();
     }
 
+    @Test
+    void runOnceRecordsProbeLatencyForSuccessfulProbes() {
+        HyproxConfig config = baseConfig();
+        BackendHealthTracker tracker = new BackendHealthTracker();
+        BackendLatencyTracker latencyTracker = new BackendLatencyTracker();
+        RoutingService routingService = new RoutingService(config, null, new BackendCapacityTracker(), tracker);
+        BackendHealthProbeService service = new BackendHealthProbeService(
+                config,
+                routingService,
+                tracker,
+                new StubProbe(Map.of("lobby-1", false, "lobby-2", true)),
+                latencyTracker
+        );
+
+        service.runOnce();
+
+        assertEquals(-1, latencyTracker.estimateNanos(routingService.findBackendById("lobby-1", false)));
+        assertTrue(latencyTracker.estimateNanos(routingService.findBackendById("lobby-2", false)) >= 0);
+        service.stop();
+    }
+
     private HyproxConfig baseConfig() {
         HyproxConfig config = new HyproxConfig();
         config.routing = new HyproxConfig.RoutingConfig();
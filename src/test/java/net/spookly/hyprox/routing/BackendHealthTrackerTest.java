@@ -33,6 +33,19 @@ class BackendHealthTrackerTest {
         assertTrue(tracker.isHealthy(target));
     }
 
+    @Test
+    void tracksWhetherAnyBackendIsDegraded() {
+        BackendHealthTracker tracker = new BackendHealthTracker();
+        BackendTarget target = backendTarget("backend-1");
+        assertTrue(tracker.noneDegraded());
+
+        tracker.recordPassiveFailure(target);
+        assertFalse(tracker.noneDegraded());
+
+        tracker.recordPassiveSuccess(target);
+        assertTrue(tracker.noneDegraded());
+    }
+
     private BackendTarget backendTarget(String id) {
         return new BackendTarget(
                 id,
@@ -0,0 +1,58 @@
+package net.spookly.hyprox.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class BackendLatencyTrackerTest {
+    @Test
+    void reportsNoEstimateBeforeTheFirstSample() {
+        BackendLatencyTracker tracker = new BackendLatencyTracker();
+
+        assertEquals(-1, tracker.estimateNanos(target("lobby-1")));
+        tracker.record(target(null), 1_000);
+        assertEquals(-1, tracker.estimateNanos(target(null)));
+    }
+
+    @Test
+    void convergesOnSteadyLatency() {
+        BackendLatencyTracker tracker = new BackendLatencyTracker();
+        for (int i = 0; i < 100; i++) {
+            tracker.record(target("lobby-1"), 10_000_000);
+        }
+
+        long estimate = tracker.estimateNanos(target("lobby-1"));
+        assertTrue(estimate >= 10_000_000 && estimate < 10_100_000, "estimate " + estimate);
+    }
+
+    @Test
+    void penalisesSpreadingLatencyBeforeTheMeanMoves() {
+        BackendLatencyTracker steady = new BackendLatencyTracker();
+        BackendLatencyTracker jittery = new BackendLatencyTracker();
+        for (int i = 0; i < 100; i++) {
+            steady.record(target("lobby-1"), 10_000_000);
+            jittery.record(target("lobby-1"), i % 2 == 0 ? 5_000_000 : 15_000_000);
+        }
+
+        assertTrue(jittery.estimateNanos(target("lobby-1")) > steady.estimateNanos(target("lobby-1")) * 2);
+    }
+
+    @Test
+    void dropsEstimatesOfBackendsThatAreNoLongerKnown() {
+        BackendLatencyTracker tracker = new BackendLatencyTracker();
+        tracker.record(target("lobby-1"), 1_000);
+        tracker.record(target("dyn-1"), 1_000);
+
+        tracker.retainIf(id -> id.startsWith("lobby-"));
+
+        assertEquals(-1, tracker.estimateNanos(target("dyn-1")));
+        assertTrue(tracker.estimateNanos(target("lobby-1")) > 0);
+    }
+
+    private static BackendTarget target(String id) {
+        return new BackendTarget(id, "lobby", "10.0.0.1", 9000, 1, null, List.of(), BackendSource.STATIC, false);
+    }
+}
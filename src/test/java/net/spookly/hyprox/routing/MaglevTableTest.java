@@ -0,0 +1,76 @@
+package net.spookly.hyprox.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class MaglevTableTest {
+    @Test
+    void spreadsSlotsInProportionToWeight() {
+        byte[][] keys = keys(0, 50);
+        int[] weights = new int[50];
+        Arrays.fill(weights, 1);
+        weights[0] = 3;
+        MaglevTable table = MaglevTable.build(keys, weights);
+
+        int[] owned = new int[50];
+        for (int slot = 0; slot < table.size(); slot++) {
+            owned[table.backend(slot)]++;
+        }
+
+        double unit = table.size() / 52D;
+        for (int i = 1; i < 50; i++) {
+            assertTrue(Math.abs(owned[i] - unit) < unit * 0.02, "backend " + i + " owns " + owned[i]);
+        }
+        assertTrue(Math.abs(owned[0] - 3 * unit) < unit * 0.06, "weighted backend owns " + owned[0]);
+    }
+
+    @Test
+    void removingABackendMovesFewOtherKeys() {
+        byte[][] before = keys(0, 100);
+        byte[][] after = keys(1, 100);
+        int[] weights = new int[100];
+        Arrays.fill(weights, 1);
+        MaglevTable full = MaglevTable.build(before, weights);
+        MaglevTable reduced = MaglevTable.build(after, Arrays.copyOf(weights, 99));
+
+        int moved = 0;
+        int keys = 100_000;
+        for (int i = 0; i < keys; i++) {
+            long hash = i * 0x9e3779b97f4a7c15L;
+            int previous = full.backend(full.slot(hash));
+            int next = reduced.backend(reduced.slot(hash)) + 1;
+            if (previous != 0 && previous != next) {
+                moved++;
+            }
+        }
+
+        assertTrue(moved < keys * 0.03, "moved " + moved);
+    }
+
+    @Test
+    void picksTheSameSlotForTheSameKey() {
+        MaglevTable table = MaglevTable.build(keys(0, 40), filled(40));
+
+        assertEquals(table.backend(table.slot(42L)), table.backend(table.slot(42L)));
+        assertEquals(65537, table.size());
+    }
+
+    private static byte[][] keys(int from, int to) {
+        byte[][] keys = new byte[to - from][];
+        for (int i = from; i < to; i++) {
+            keys[i - from] = ("shard-" + i).getBytes(StandardCharsets.UTF_8);
+        }
+        return keys;
+    }
+
+    private static int[] filled(int count) {
+        int[] weights = new int[count];
+        Arrays.fill(weights, 1);
+        return weights;
+    }
+}
@@ -43,6 +43,32 @@ class RegistryRoutingIntegrationTest {
         assertEquals("no_backends", result.reason());
     }
 
+    @Test
+    void rebuildsRoutingSnapshotOnRegistryChanges() {
+        HyproxConfig config = baseConfig();
+        BackendRegistry registry = BackendRegistry.fromConfig(config);
+        RoutingService service = new RoutingService(config, registry, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        assertEquals("no_backends", service.route(new RoutingRequest("game", null, null, null)).reason());
+        long initialVersion = service.snapshot().version();
+
+        registry.register(dynamicBackend("dyn-1", "dynamic"));
+        service.awaitRebuild();
+        RoutingResult registered = service.route(new RoutingRequest("game", null, null, null));
+        registry.heartbeat("dyn-1", "orch-1", null);
+        registry.register(dynamicBackend("dyn-1", "dynamic"));
+        service.awaitRebuild();
+        long afterRepeatedChanges = service.snapshot().version();
+        registry.drain("dyn-1", "orch-1", 30);
+        service.awaitRebuild();
+        RoutingResult drained = service.route(new RoutingRequest("game", null, null, null));
+
+        assertEquals("dyn-1", registered.backend().id());
+        assertEquals(initialVersion + 1, afterRepeatedChanges);
+        assertNull(drained.backend());
+        assertEquals(1, service.listBackends("dynamic", true).size());
+    }
+
     private HyproxConfig baseConfig() {
         HyproxConfig config = new HyproxConfig();
         config.routing = new HyproxConfig.RoutingConfig();
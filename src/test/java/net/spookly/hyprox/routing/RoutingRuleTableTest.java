@@ -0,0 +1,117 @@
+package net.spookly.hyprox.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import net.spookly.hyprox.config.HyproxConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoutingRuleTableTest {
+    @Test
+    void firstMatchingRuleWinsAcrossManyRules() {
+        List<HyproxConfig.RuleConfig> rules = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            HyproxConfig.MatchConfig match = new HyproxConfig.MatchConfig();
+            match.language = "lang-" + i;
+            match.clientType = i % 2 == 0 ? "game" : null;
+            rules.add(rule(match, "pool-" + i));
+        }
+        HyproxConfig.MatchConfig fallback = new HyproxConfig.MatchConfig();
+        fallback.clientType = "editor";
+        rules.add(rule(fallback, "edit"));
+        RoutingRuleTable table = RoutingRuleTable.compile(rules);
+
+        assertEquals("pool-200", table.pool(table.match(request("game", "LANG-200", null, null, null, null))));
+        assertEquals("pool-201", table.pool(table.match(request("editor", "lang-201", null, null, null, null))));
+        assertEquals("edit", table.pool(table.match(request("editor", "lang-200", null, null, null, null))));
+        assertEquals(RoutingRuleTable.NO_MATCH, table.match(request("game", "lang-999", null, null, null, null)));
+    }
+
+    @Test
+    void matchesUsernamePrefixCaseInsensitively() {
+        HyproxConfig.MatchConfig staff = new HyproxConfig.MatchConfig();
+        staff.usernamePrefix = "Staff_";
+        HyproxConfig.MatchConfig tester = new HyproxConfig.MatchConfig();
+        tester.usernamePrefix = "staff_test";
+        RoutingRuleTable table = RoutingRuleTable.compile(List.of(rule(tester, "test"), rule(staff, "staff")));
+
+        assertEquals("test", table.pool(table.match(request(null, null, "STAFF_Tester", null, null, null))));
+        assertEquals("staff", table.pool(table.match(request(null, null, "staff_bob", null, null, null))));
+        assertEquals(RoutingRuleTable.NO_MATCH, table.match(request(null, null, "sta", null, null, null)));
+        assertEquals(RoutingRuleTable.NO_MATCH, table.match(request(null, null, null, null, null, null)));
+    }
+
+    @Test
+    void matchesCertificateSubjectAndSourceCidrs() {
+        HyproxConfig.MatchConfig both = new HyproxConfig.MatchConfig();
+        both.clientCertSubject = "CN=Builder";
+        both.sourceCidrs = List.of("10.1.0.0/16");
+        HyproxConfig.MatchConfig internal = new HyproxConfig.MatchConfig();
+        internal.sourceCidrs = List.of("10.0.0.0/8", "fd00::/8");
+        RoutingRuleTable table = RoutingRuleTable.compile(List.of(rule(both, "build"), rule(internal, "internal")));
+
+        assertEquals("build", table.pool(table.match(request(null, null, null, null, "cn=builder", "10.1.2.3"))));
+        assertEquals("internal", table.pool(table.match(request(null, null, null, null, "CN=Other", "10.1.2.3"))));
+        assertEquals("internal", table.pool(table.match(request(null, null, null, null, null, "fd00::1"))));
+        assertEquals(RoutingRuleTable.NO_MATCH, table.match(request(null, null, null, null, "CN=Builder", "192.0.2.1")));
+        assertEquals(RoutingRuleTable.NO_MATCH, table.match(request(null, null, null, null, null, "example.com")));
+    }
+
+    @Test
+    void splitsPlayersByUuidBucket() {
+        HyproxConfig.MatchConfig canary = new HyproxConfig.MatchConfig();
+        canary.uuidPercent = 30;
+        HyproxConfig.MatchConfig none = new HyproxConfig.MatchConfig();
+        none.uuidPercent = 0;
+        RoutingRuleTable table = RoutingRuleTable.compile(List.of(rule(none, "never"), rule(canary, "canary")));
+
+        int matched = 0;
+        for (int i = 0; i < 10_000; i++) {
+            UUID uuid = new UUID(i * 0x9e3779b97f4a7c15L, i);
+            int index = table.match(request(null, null, null, uuid, null, null));
+            boolean expected = RoutingRuleTable.bucket(uuid) < 30;
+            assertEquals(expected ? 1 : RoutingRuleTable.NO_MATCH, index);
+            if (expected) {
+                matched++;
+            }
+        }
+        assertTrue(matched > 2500 && matched < 3500, "matched " + matched);
+        assertEquals(RoutingRuleTable.NO_MATCH, table.match(request(null, null, null, null, null, null)));
+    }
+
+    @Test
+    void predictsOnlyWhenNoEarlierRuleNeedsConnectFields() {
+        HyproxConfig.MatchConfig internal = new HyproxConfig.MatchConfig();
+        internal.sourceCidrs = List.of("10.0.0.0/8");
+        HyproxConfig.MatchConfig editor = new HyproxConfig.MatchConfig();
+        editor.clientType = "editor";
+        RoutingRuleTable table = RoutingRuleTable.compile(List.of(rule(internal, "internal"), rule(editor, "edit")));
+
+        assertEquals(0, table.predict(request(null, null, null, null, null, "10.0.0.1")));
+        assertEquals(RoutingRuleTable.UNDECIDED, table.predict(request(null, null, null, null, null, "192.0.2.1")));
+
+        RoutingRuleTable sessionOnly = RoutingRuleTable.compile(List.of(rule(internal, "internal")));
+        assertEquals(RoutingRuleTable.NO_MATCH, sessionOnly.predict(request(null, null, null, null, null, "192.0.2.1")));
+    }
+
+    private static RoutingRequest request(String clientType,
+                                          String language,
+                                          String username,
+                                          UUID uuid,
+                                          String certificateSubject,
+                                          String sourceAddress) {
+        return new RoutingRequest(clientType, null, null, null)
+                .withClientDetails(language, username, uuid, certificateSubject, sourceAddress);
+    }
+
+    private static HyproxConfig.RuleConfig rule(HyproxConfig.MatchConfig match, String pool) {
+        HyproxConfig.RuleConfig rule = new HyproxConfig.RuleConfig();
+        rule.match = match;
+        rule.pool = pool;
+        return rule;
+    }
+}
@@ -1,13 +1,20 @@
 package net.spookly.hyprox.routing;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import net.spookly.hyprox.config.HyproxConfig;
 import net.spookly.hyprox.registry.BackendRegistry;
@@ -79,12 +86,36 @@ class RoutingServiceTest {
         );
         registry.register(backend);
         registry.drain("dyn-1", "orch-1", 30);
+        service.awaitRebuild();
 
         List<BackendTarget> candidates = service.listBackends("lobby", false);
         assertEquals(1, candidates.size());
         assertEquals("lobby-1", candidates.get(0).id());
     }
 
+    @Test
+    void findsBackendsByIdAcrossPoolsAndHonorsDraining() {
+        HyproxConfig config = baseConfig();
+        config.routing.pools.put("game", pool("weighted", backend("game-1")));
+        BackendRegistry registry = BackendRegistry.fromConfig(config);
+        RoutingService service = new RoutingService(config, registry, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        assertEquals("game", service.findBackendById("game-1", false).pool());
+        assertNull(service.findBackendById("dyn-1", true));
+
+        Instant now = Instant.now();
+        registry.register(new RegisteredBackend(
+                "dyn-1", "game", "10.0.0.60", 9000, 1, 10, List.of(), "orch-1", now, now.plusSeconds(30), false));
+        service.awaitRebuild();
+        assertEquals("dyn-1", service.findBackendById("dyn-1", false).id());
+
+        registry.drain("dyn-1", "orch-1", 30);
+        service.awaitRebuild();
+        assertNull(service.findBackendById("dyn-1", false));
+        assertNotNull(service.findBackendById("dyn-1", true));
+        assertNull(service.findBackendById("  ", true));
+    }
+
     @Test
     void rejectsWhenPoolAtCapacity() {
         HyproxConfig config = baseConfig();
@@ -164,6 +195,377 @@ class RoutingServiceTest {
         assertEquals("lobby-2", result.backend().id());
     }
 
+    @Test
+    void predictsSameBackendAsRoutingWithoutReserving() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.PoolConfig pool = pool("weighted", backend("lobby-1"), backend("lobby-2"), backend("lobby-3"));
+        pool.backends.forEach(backend -> backend.maxPlayers = 1);
+        config.routing.pools.put("lobby", pool);
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        BackendTarget predicted = service.predict(new RoutingRequest(null, null, "client-key", null));
+        BackendTarget repeated = service.predict(new RoutingRequest(null, null, "client-key", null));
+        RoutingResult routed = service.route(new RoutingRequest("game", null, "client-key", null));
+
+        assertNotNull(predicted);
+        assertEquals(predicted.id(), repeated.id());
+        assertNotNull(routed.backend());
+        assertEquals(routed.backend().id(), predicted.id());
+    }
+
+    @Test
+    void skipsPredictionWhenRulesNeedConnectDetails() {
+        HyproxConfig config = baseConfig();
+        config.routing.rules = List.of(rule("editor", null, "edit"));
+        config.routing.pools.put("edit", pool("weighted", backend("edit-1")));
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        assertNull(service.predict(new RoutingRequest(null, null, "client-key", null)));
+    }
+
+    @Test
+    void skipsPredictionForRoundRobinOrMissingKey() {
+        HyproxConfig config = baseConfig();
+        config.routing.pools.put("lobby", pool("weighted", backend("lobby-1"), backend("lobby-2")));
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+        assertNull(service.predict(new RoutingRequest(null, null, null, null)));
+        assertNotNull(service.predict(new RoutingRequest(null, null, "client-key", null)));
+
+        config.routing.pools.put("lobby", pool("round_robin", backend("lobby-1"), backend("lobby-2")));
+        service.refresh();
+        assertNull(service.predict(new RoutingRequest(null, null, "client-key", null)));
+    }
+
+    @Test
+    void skipsExcludedBackendsAndReferralTargets() {
+        HyproxConfig config = baseConfig();
+        config.routing.pools.put("lobby", pool("round_robin", backend("lobby-1"), backend("lobby-2")));
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        RoutingRequest request = new RoutingRequest("game", null, null, "lobby-1").excluding("lobby-1");
+        RoutingResult first = service.route(request);
+        RoutingResult second = service.route(request);
+        RoutingResult none = service.route(request.excluding("lobby-2"));
+
+        assertEquals("lobby-2", first.backend().id());
+        assertEquals("lobby-2", second.backend().id());
+        assertNull(none.backend());
+        assertEquals("no_backends", none.reason());
+    }
+
+    @Test
+    void leastConnectionsBalancesByLoadRelativeToCapacity() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.BackendConfig small = backend("lobby-small");
+        small.maxPlayers = 2;
+        HyproxConfig.BackendConfig large = backend("lobby-large");
+        large.maxPlayers = 6;
+        config.routing.pools.put("lobby", pool("least_connections", small, large));
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        int smallCount = 0;
+        for (int i = 0; i < 8; i++) {
+            RoutingResult result = service.route(new RoutingRequest("game", null, "client-" + i, null));
+            assertNotNull(result.backend());
+            if (result.backend().id().equals("lobby-small")) {
+                smallCount++;
+            }
+        }
+
+        assertEquals(2, smallCount);
+        assertEquals("pool_full", service.route(new RoutingRequest("game", null, null, null)).reason());
+    }
+
+    @Test
+    void leastConnectionsCountsUncappedBackends() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.BackendConfig first = backend("lobby-1");
+        first.maxPlayers = null;
+        HyproxConfig.BackendConfig second = backend("lobby-2");
+        second.maxPlayers = null;
+        config.routing.pools.put("lobby", pool("least_connections", first, second));
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        RoutingResult a = service.route(new RoutingRequest("game", null, null, null));
+        RoutingResult b = service.route(new RoutingRequest("game", null, null, null));
+        a.reservation().release();
+        RoutingResult c = service.route(new RoutingRequest("game", null, null, null));
+
+        assertNotEquals(a.backend().id(), b.backend().id());
+        assertEquals(a.backend().id(), c.backend().id());
+    }
+
+    @Test
+    void powerOfTwoChoicesPrefersTheLessLoadedSample() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.BackendConfig busy = backend("lobby-busy");
+        busy.maxPlayers = 100;
+        HyproxConfig.BackendConfig idle = backend("lobby-idle");
+        idle.maxPlayers = 100;
+        config.routing.pools.put("lobby", pool("p2c", busy, idle));
+        BackendCapacityTracker capacityTracker = new BackendCapacityTracker();
+        RoutingService service = new RoutingService(config, null, capacityTracker, new BackendHealthTracker());
+        BackendTarget busyTarget = service.findBackendById("lobby-busy", false);
+        for (int i = 0; i < 50; i++) {
+            capacityTracker.tryReserve(busyTarget);
+        }
+
+        int idleCount = 0;
+        for (int i = 0; i < 40; i++) {
+            RoutingResult result = service.route(new RoutingRequest("game", null, null, null));
+            if (result.backend().id().equals("lobby-idle")) {
+                idleCount++;
+            }
+        }
+
+        assertEquals(40, idleCount);
+        assertNull(service.predict(new RoutingRequest(null, null, "client-key", null)));
+    }
+
+    @Test
+    void latencyWeightedShiftsTrafficAwayFromSlowBackends() {
+        HyproxConfig config = baseConfig();
+        config.routing.pools.put("lobby", pool("latency_weighted", backend("lobby-fast"), backend("lobby-slow")));
+        BackendLatencyTracker latencyTracker = new BackendLatencyTracker();
+        RoutingService service = new RoutingService(
+                config, null, new BackendCapacityTracker(), new BackendHealthTracker(), latencyTracker);
+        for (int i = 0; i < 20; i++) {
+            service.recordConnectLatency(service.findBackendById("lobby-fast", false), 5_000_000);
+            service.recordConnectLatency(service.findBackendById("lobby-slow", false), 100_000_000);
+        }
+
+        int fastCount = 0;
+        for (int i = 0; i < 1000; i++) {
+            RoutingResult result = service.route(new RoutingRequest("game", null, "client-" + i, null));
+            if (result.backend().id().equals("lobby-fast")) {
+                fastCount++;
+            }
+            result.reservation().release();
+        }
+
+        assertTrue(fastCount > 900, "fast " + fastCount);
+    }
+
+    @Test
+    void maglevPoolsRouteConsistentlyAndKeepKeysWhenABackendLeaves() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.PoolConfig shards = pool("weighted");
+        shards.hashing = "maglev";
+        for (int i = 0; i < 40; i++) {
+            HyproxConfig.BackendConfig backend = backend("shard-" + i);
+            backend.maxPlayers = null;
+            shards.backends.add(backend);
+        }
+        config.routing.pools.put("lobby", shards);
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+        assertNotNull(service.snapshot().pool("lobby").maglev());
+
+        String[] before = new String[500];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = service.route(new RoutingRequest("game", null, "client-" + i, null)).backend().id();
+            assertEquals(before[i], service.route(new RoutingRequest("game", null, "client-" + i, null)).backend().id());
+        }
+        RoutingRequest excluded = new RoutingRequest("game", null, "client-0", null).excluding(before[0]);
+        assertNotEquals(before[0], service.route(excluded).backend().id());
+
+        shards.backends.remove(0);
+        service.refresh();
+        RoutingSnapshot.Pool rebuilt = service.snapshot().pool("lobby");
+        RoutingSnapshot.MaglevView inherited = rebuilt.maglev();
+        int moved = 0;
+        for (int i = 0; i < before.length; i++) {
+            String after = service.route(new RoutingRequest("game", null, "client-" + i, null)).backend().id();
+            assertNotEquals("shard-0", after);
+            if (!before[i].equals("shard-0") && !before[i].equals(after)) {
+                moved++;
+            }
+        }
+        if (!inherited.complete() && rebuilt.maglev() == inherited) {
+            // Still on the remapped previous table: only the departed backend's keys may move.
+            assertEquals(0, moved);
+        }
+
+        service.snapshot().pool("lobby").maglevBuilt().join();
+        moved = 0;
+        for (int i = 0; i < before.length; i++) {
+            String after = service.route(new RoutingRequest("game", null, "client-" + i, null)).backend().id();
+            if (!before[i].equals("shard-0") && !before[i].equals(after)) {
+                moved++;
+            }
+        }
+        assertTrue(moved < 25, "moved " + moved);
+    }
+
+    @Test
+    void boundedLoadSpreadsAHotSelectionKey() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.PoolConfig lobby = pool("weighted");
+        lobby.boundedLoad = 0.25;
+        for (int i = 0; i < 4; i++) {
+            HyproxConfig.BackendConfig backend = backend("lobby-" + i);
+            backend.maxPlayers = null;
+            lobby.backends.add(backend);
+        }
+        config.routing.pools.put("lobby", lobby);
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        String preferred = service.predict(new RoutingRequest(null, null, "203.0.113.7", null)).id();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            RoutingResult result = service.route(new RoutingRequest("game", null, "203.0.113.7", null));
+            counts.merge(result.backend().id(), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count <= 32, "count " + count);
+        }
+        assertTrue(counts.get(preferred) >= 25);
+    }
+
+    @Test
+    void boundedLoadKeepsAffinityWhileLoadIsEven() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.PoolConfig lobby = pool("weighted", backend("lobby-1"), backend("lobby-2"), backend("lobby-3"));
+        lobby.boundedLoad = 0.25;
+        config.routing.pools.put("lobby", lobby);
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        for (int i = 0; i < 30; i++) {
+            RoutingRequest request = new RoutingRequest("game", null, "client-" + i, null);
+            String predicted = service.predict(request).id();
+            RoutingResult result = service.route(request);
+            assertEquals(predicted, result.backend().id());
+            result.reservation().release();
+        }
+    }
+
+    @Test
+    void boundedLoadOfATagFilteredRuleCountsOnlyItsBackends() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.RuleConfig rule = rule("game", null, "lobby");
+        rule.requireTags = List.of("eu");
+        config.routing.rules = List.of(rule);
+        HyproxConfig.PoolConfig lobby = pool("weighted");
+        lobby.boundedLoad = 0.25;
+        for (int i = 0; i < 4; i++) {
+            lobby.backends.add(tagged("eu-" + i, "eu"));
+        }
+        for (int i = 0; i < 12; i++) {
+            lobby.backends.add(tagged("us-" + i, "us"));
+        }
+        config.routing.pools.put("lobby", lobby);
+        BackendCapacityTracker capacityTracker = new BackendCapacityTracker();
+        RoutingService service = new RoutingService(config, null, capacityTracker, new BackendHealthTracker());
+        for (int i = 0; i < 200; i++) {
+            capacityTracker.tryReserve(backendTarget("us-" + (i % 12)));
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            RoutingResult result = service.route(new RoutingRequest("game", null, "203.0.113.7", null));
+            counts.merge(result.backend().id(), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count <= 32, "count " + count);
+        }
+    }
+
+    @Test
+    void tagFiltersRestrictRuleTargets() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.RuleConfig rule = rule("game", null, "lobby");
+        rule.requireTags = List.of("EU");
+        rule.excludeTags = List.of("maintenance");
+        config.routing.rules = List.of(rule);
+        config.routing.pools.put("lobby", pool("round_robin",
+                tagged("eu-1", "eu"), tagged("eu-2", "eu", "maintenance"), tagged("us-1", "us")));
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        for (int i = 0; i < 6; i++) {
+            assertEquals("eu-1", service.route(new RoutingRequest("game", null, null, null)).backend().id());
+        }
+        Map<String, Integer> unfiltered = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            unfiltered.merge(service.route(new RoutingRequest("editor", null, null, null)).backend().id(), 1, Integer::sum);
+        }
+        assertEquals(3, unfiltered.size());
+    }
+
+    @Test
+    void canarySplitSendsAStableShareOfPlayersToTaggedBackends() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.RuleConfig rule = rule("game", null, "lobby");
+        HyproxConfig.SplitConfig canary = new HyproxConfig.SplitConfig();
+        canary.tags = List.of("canary");
+        canary.percent = 5;
+        rule.splits = List.of(canary);
+        config.routing.rules = List.of(rule);
+        config.routing.pools.put("lobby", pool("weighted",
+                tagged("stable-1", "stable"), tagged("stable-2", "stable"), tagged("canary-1", "canary")));
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        int canaries = 0;
+        for (int i = 0; i < 4000; i++) {
+            UUID uuid = new UUID(i * 0x9e3779b97f4a7c15L, i);
+            RoutingRequest request = new RoutingRequest("game", null, "client-" + i, null)
+                    .withClientDetails(null, null, uuid, null, null);
+            String backend = service.route(request).backend().id();
+            boolean expected = RoutingRuleTable.bucket(uuid) < 5;
+            assertEquals(expected, backend.equals("canary-1"), "player " + i);
+            assertEquals(backend, service.route(request).backend().id());
+            if (expected) {
+                canaries++;
+            }
+        }
+        assertTrue(canaries > 120 && canaries < 280, "canaries " + canaries);
+        assertNull(service.predict(new RoutingRequest("game", null, "client-1", null)));
+    }
+
+    @Test
+    void emptySplitGroupFallsBackToRemainingBackends() {
+        HyproxConfig config = baseConfig();
+        HyproxConfig.RuleConfig rule = rule("game", null, "lobby");
+        HyproxConfig.SplitConfig canary = new HyproxConfig.SplitConfig();
+        canary.tags = List.of("canary");
+        canary.percent = 100;
+        rule.splits = List.of(canary);
+        config.routing.rules = List.of(rule);
+        config.routing.pools.put("lobby", pool("round_robin", tagged("stable-1", "stable")));
+        RoutingService service = new RoutingService(config, null, new BackendCapacityTracker(), new BackendHealthTracker());
+
+        assertEquals("stable-1", service.route(new RoutingRequest("game", null, null, null)).backend().id());
+    }
+
+    @Test
+    void registryChangesOnlyRebuildTheAffectedPool() {
+        HyproxConfig config = baseConfig();
+        config.routing.pools.put("game", pool("weighted"));
+        BackendRegistry registry = BackendRegistry.fromConfig(config);
+        RoutingService service = new RoutingService(config, registry, new BackendCapacityTracker(), new BackendHealthTracker());
+        RoutingSnapshot.Pool lobby = service.snapshot().pool("lobby");
+        RoutingSnapshot.Pool game = service.snapshot().pool("game");
+        RoutingRuleTable rules = service.snapshot().rules();
+
+        Instant now = Instant.now();
+        registry.register(new RegisteredBackend(
+                "game-1", "GAME", "10.0.0.5", 9000, 1, null, List.of(), "orch-1", now, now, false));
+        service.awaitRebuild();
+
+        assertSame(lobby, service.snapshot().pool("lobby"));
+        assertSame(rules, service.snapshot().rules());
+        assertNotSame(game, service.snapshot().pool("game"));
+        assertEquals("game-1", service.listBackends("game", false).get(0).id());
+        assertEquals("lobby", service.findBackendById("lobby-1", false).pool());
+        assertEquals("game-1", service.findBackendById("game-1", false).id());
+
+        service.refresh();
+        assertNotSame(lobby, service.snapshot().pool("lobby"));
+        assertNotSame(rules, service.snapshot().rules());
+    }
+
     private HyproxConfig baseConfig() {
         HyproxConfig config = new HyproxConfig();
         config.routing = new HyproxConfig.RoutingConfig();
@@ -203,6 +605,13 @@ class RoutingServiceTest {
         return backend;
     }
 
+    private HyproxConfig.BackendConfig tagged(String id, String... tags) {
+        HyproxConfig.BackendConfig backend = backend(id);
+        backend.maxPlayers = null;
+        backend.tags = List.of(tags);
+        return backend;
+    }
+
     private BackendTarget backendTarget(String id) {
         return new BackendTarget(
                 id,